@@ -0,0 +1,69 @@
+package org.example.logs.benchmark;
+
+import org.example.App;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 基准测试使用的应用上下文，不启动web容器，日志写入临时目录
+ * <p>
+ * 控制台日志级别调整为warn，采集线程中逐行打印的info日志不计入测试结果
+ *
+ * @author 李昆城
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * 启动应用
+     *
+     * @param directory  日志持久化目录
+     * @param properties 额外的配置，例如 log.params.format=binary
+     * @return 应用上下文
+     */
+    static ConfigurableApplicationContext start(Path directory, String... properties) {
+        return new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties("spring.profiles.active=prod",
+                        "logging.level.org.example=warn",
+                        "log.params.path=" + directory.toAbsolutePath())
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * 关闭应用，写完剩余的日志之后删除临时目录
+     *
+     * @param context   应用上下文
+     * @param directory 日志持久化目录
+     */
+    static void stop(ConfigurableApplicationContext context, Path directory) throws IOException {
+        context.close();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
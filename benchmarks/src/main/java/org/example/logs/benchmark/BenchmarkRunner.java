@@ -0,0 +1,26 @@
+package org.example.logs.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口，参数与 JMH 命令行相同，默认加上GC分析，输出每次操作的分配字节数和分配速率
+ * <pre>
+ * java -jar target/benchmarks.jar LogWriteBenchmark -p writer=requestLog
+ * </pre>
+ *
+ * @author 李昆城
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
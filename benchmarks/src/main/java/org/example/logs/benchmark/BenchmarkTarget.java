@@ -0,0 +1,22 @@
+package org.example.logs.benchmark;
+
+import org.example.logs.ShowParam;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基准测试的目标方法，位于启动类的扫描范围内，随应用一起被代理
+ *
+ * @author 李昆城
+ */
+@Component
+public class BenchmarkTarget {
+
+    @ShowParam
+    public String advised(String userName, String password) {
+        return userName + "-" + password;
+    }
+
+    public String plain(String userName, String password) {
+        return userName + "-" + password;
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.logs.benchmark;
+
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.LogEventPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志事件发布吞吐量，交给 {@link org.example.logs.observice.LogPipeline} 的编码线程，
+ * 或者经过spring事件广播到 {@link org.example.logs.observice.LogListener}，再交给配置的写入实现
+ *
+ * @author 李昆城
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogEventPublisherBenchmark {
+
+    /**
+     * 写入实现
+     */
+    @Param({"requestLog", "mappedSegmentLog"})
+    public String writer;
+
+    /**
+     * 记录编码格式
+     */
+    @Param({"text", "binary"})
+    public String format;
+
+    /**
+     * 日志事件分发方式
+     */
+    @Param({"pipeline", "spring"})
+    public String eventDispatch;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private LogEventPublisher logEventPublisher;
+    private LogEvent event;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("logs-benchmark");
+        context = BenchmarkContext.start(directory,
+                "log.params.writer=" + writer,
+                "log.params.format=" + format,
+                "log.params.eventDispatch=" + eventDispatch);
+        logEventPublisher = context.getBean(LogEventPublisher.class);
+        long now = System.currentTimeMillis();
+        event = new LogEvent(this)
+                .targetAddress(BenchmarkTarget.class.getName() + ".advised")
+                .param("{\"password\":\"password\",\"userName\":\"userName\"}")
+                .result("\"userName-password\"")
+                .errorMsg("")
+                .errorLocation("")
+                .startTime(now)
+                .endTime(now + 1)
+                .persistenceAddress("");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkContext.stop(context, directory);
+    }
+
+    @Benchmark
+    public void publishEvent() {
+        logEventPublisher.publishEvent(event);
+    }
+}
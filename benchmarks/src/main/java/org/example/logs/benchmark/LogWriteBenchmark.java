@@ -0,0 +1,104 @@
+package org.example.logs.benchmark;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.logwrite.BaseLogWrite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入实现的吞吐量，按线程数、参数大小、写入实现和编码格式组合
+ *
+ * @author 李昆城
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogWriteBenchmark {
+
+    /**
+     * 写入实现
+     */
+    @Param({"requestLog", "mappedSegmentLog"})
+    public String writer;
+
+    /**
+     * 记录编码格式
+     */
+    @Param({"text", "binary"})
+    public String format;
+
+    /**
+     * 参数信息的字符数
+     */
+    @Param({"64", "1024", "16384"})
+    public int payloadSize;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private BaseLogWrite logWrite;
+    private LogEvent event;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("logs-benchmark");
+        context = BenchmarkContext.start(directory,
+                "log.params.writer=" + writer,
+                "log.params.format=" + format);
+        logWrite = context.getBean(writer, BaseLogWrite.class);
+        long now = System.currentTimeMillis();
+        event = new LogEvent(this)
+                .targetAddress(BenchmarkTarget.class.getName() + ".advised")
+                .param(StringUtils.repeat('p', payloadSize))
+                .result("\"userName-password\"")
+                .errorMsg("")
+                .errorLocation("")
+                .startTime(now)
+                .endTime(now + 1)
+                .persistenceAddress("");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkContext.stop(context, directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void write1() {
+        logWrite.write(event, event.getPersistenceAddress());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void write4() {
+        logWrite.write(event, event.getPersistenceAddress());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void write16() {
+        logWrite.write(event, event.getPersistenceAddress());
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.logs.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 切面开销：直接调用、经过代理但没有增强的调用、加上 {@link org.example.logs.ShowParam} 的调用
+ * <p>
+ * 结果只包含调用线程上的开销，采集线程和写入线程的开销通过队列满时的阻塞或丢弃体现出来
+ *
+ * @author 李昆城
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShowParamBenchmark {
+
+    /**
+     * 采集队列满了之后的处理策略
+     */
+    @Param({"block", "drop_newest", "sample"})
+    public String overflowPolicy;
+
+    /**
+     * 采集线程的等待策略
+     */
+    @Param({"sleeping", "blocking"})
+    public String waitStrategy;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    /**
+     * 没有被代理的对象
+     */
+    private BenchmarkTarget target;
+    /**
+     * 容器中被代理的对象
+     */
+    private BenchmarkTarget proxy;
+
+    private String userName;
+    private String password;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("logs-benchmark");
+        context = BenchmarkContext.start(directory,
+                "log.params.collectorOverflowPolicy=" + overflowPolicy,
+                "log.params.collectorWaitStrategy=" + waitStrategy);
+        target = new BenchmarkTarget();
+        proxy = context.getBean(BenchmarkTarget.class);
+        userName = "userName";
+        password = "password";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkContext.stop(context, directory);
+    }
+
+    @Benchmark
+    public String direct() {
+        return target.plain(userName, password);
+    }
+
+    @Benchmark
+    public String proxiedUnadvised() {
+        return proxy.plain(userName, password);
+    }
+
+    @Benchmark
+    public String advised() {
+        return proxy.advised(userName, password);
+    }
+}
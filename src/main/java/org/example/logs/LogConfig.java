@@ -9,6 +9,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -31,6 +34,13 @@ public class LogConfig {
      */
     private Map<LogConfigKey, String> params;
 
+    /**
+     * 采集配置的运行时覆盖，类名或者完整方法地址 -> 逗号分隔的 名称=值，例如
+     * log.capture[org.example.logs.TestController.test01]=enabled=false,param=false，
+     * 可以覆盖enabled、param、result、timestamp、dataPersistence、sampleRate、path
+     */
+    private Map<String, String> capture;
+
     @PostConstruct
     public void init() {
         boolean defaultPath = false;
@@ -62,6 +72,83 @@ public class LogConfig {
         params.put(LogConfigKey.path, defaultPath);
     }
 
+    /**
+     * 获取配置值
+     *
+     * @param key          配置key
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public String get(LogConfigKey key, String defaultValue) {
+        String value = Objects.isNull(params) ? null : params.get(key);
+        return Objects.isNull(value) || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * 获取int类型的配置值
+     *
+     * @param key          配置key
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public int getInt(LogConfigKey key, int defaultValue) {
+        String value = get(key, null);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * 获取long类型的配置值
+     *
+     * @param key          配置key
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public long getLong(LogConfigKey key, long defaultValue) {
+        String value = get(key, null);
+        return Objects.isNull(value) ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * 获取boolean类型的配置值
+     *
+     * @param key          配置key
+     * @param defaultValue 未配置时的默认值
+     * @return 配置值
+     */
+    public boolean getBoolean(LogConfigKey key, boolean defaultValue) {
+        String value = get(key, null);
+        return Objects.isNull(value) ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * 判断地址是否在持久化地址（log.params.path）之下，用于校验从管理端点传入的地址
+     *
+     * @param path 地址
+     * @return true：在持久化地址之下或者就是持久化地址
+     */
+    public boolean isUnderPath(String path) {
+        return isUnder(path, get(LogConfigKey.path, null));
+    }
+
+    /**
+     * 判断地址是否在根目录之下，先规范化去掉 .. 再比较
+     *
+     * @param path 地址
+     * @param root 根目录
+     * @return true：在根目录之下或者就是根目录
+     */
+    public static boolean isUnder(String path, String root) {
+        if (Objects.isNull(path) || Objects.isNull(root)) {
+            return false;
+        }
+        try {
+            Path normalizedRoot = Paths.get(root).toAbsolutePath().normalize();
+            return Paths.get(path).toAbsolutePath().normalize().startsWith(normalizedRoot);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
     /**
      * 日志配置key值
      *
@@ -71,7 +158,167 @@ public class LogConfig {
         /**
          * 持久化地址
          */
-        path
+        path,
+        /**
+         * 采集队列容量，会向上取整为2的幂，默认8192
+         */
+        collectorBufferSize,
+        /**
+         * 采集线程数量，默认2
+         */
+        collectorThreads,
+        /**
+         * 采集队列等待策略：busy_spin、yielding、sleeping、blocking，默认sleeping
+         */
+        collectorWaitStrategy,
+        /**
+         * 采集队列溢出策略：block、drop_newest、drop_oldest、sample，默认block
+         */
+        collectorOverflowPolicy,
+        /**
+         * sample溢出策略下的采样比例，超过水位线之后每N个保留1个，默认10
+         */
+        collectorSampleRate,
+        /**
+         * 每个写入分片的队列容量，满了之后阻塞编码线程，默认65536
+         */
+        writerQueueSize,
+        /**
+         * 写入分片数量，按文件地址分片，每个分片一个写入线程，默认CPU核数和4中较小的值
+         */
+        writerShards,
+        /**
+         * 写入队列积压时是否把已经编码好的记录溢出到本地文件，默认false
+         */
+        writerSpill,
+        /**
+         * 单个写入分片的队列超过该数量开始溢出，默认队列容量的3/4
+         */
+        writerSpillWatermark,
+        /**
+         * 所有写入队列中记录的总大小（MB）超过该值开始溢出，默认64
+         */
+        writerSpillMemory,
+        /**
+         * 溢出文件目录，默认为持久化地址下的.spill目录
+         */
+        writerSpillPath,
+        /**
+         * 达到该数量立即批量写入，默认256
+         */
+        writerBatchSize,
+        /**
+         * 批量写入的最长间隔（毫秒），默认200
+         */
+        writerFlushInterval,
+        /**
+         * 最多同时打开的日志文件数量，由所有写入分片平分，默认64
+         */
+        writerMaxOpenFiles,
+        /**
+         * 使用的日志写入实现（bean名称）：requestLog、mappedSegmentLog、rollupLog，默认requestLog
+         */
+        writer,
+        /**
+         * mappedSegmentLog每个分段的大小（MB），默认64
+         */
+        mappedSegmentSize,
+        /**
+         * 日志记录格式：text、binary，默认text。binary格式使用LogDecoder还原
+         */
+        format,
+        /**
+         * 日志文件超过该大小（MB）滚动，默认0不按大小滚动
+         */
+        rollingMaxSize,
+        /**
+         * 日志文件按时间窗口（分钟）滚动，例如60为每小时滚动，默认0不按时间滚动
+         */
+        rollingWindow,
+        /**
+         * 是否在后台使用gzip压缩滚动出来的文件，默认true
+         */
+        rollingCompress,
+        /**
+         * 参数、返回值序列化之后的最大字节数，超过之后截断，默认8192，0表示不限制
+         */
+        serializeMaxBytes,
+        /**
+         * 参数、返回值中的集合、数组、map最多序列化的元素数量，默认100，0表示不限制
+         */
+        serializeMaxElements,
+        /**
+         * 记录缓冲区池每一级（1KB、4KB、16KB、64KB）最多保留的空闲缓冲区数量，默认128
+         */
+        bufferPoolSize,
+        /**
+         * 方法执行时间直方图的统计窗口（秒），每个窗口结束之后重新统计，默认60
+         */
+        latencyWindow,
+        /**
+         * 日志事件分发方式：pipeline（编码线程异步处理）、spring（spring事件，在发布线程中处理），默认pipeline
+         */
+        eventDispatch,
+        /**
+         * 编码阶段的队列容量，满了之后阻塞采集线程，默认8192
+         */
+        encoderQueueSize,
+        /**
+         * 编码线程数量，默认1
+         */
+        encoderThreads,
+        /**
+         * 编码线程每次最多取出的数量，默认64
+         */
+        encoderBatchSize,
+        /**
+         * 全局持久化级别：async、interval、batch、sync，可以在注解上按方法覆盖，默认async
+         */
+        durability,
+        /**
+         * interval级别fsync的间隔（毫秒），默认1000
+         */
+        durabilityInterval,
+        /**
+         * sync级别调用线程等待写入磁盘的最长时间（毫秒），超时之后不再等待，默认5000
+         */
+        durabilitySyncTimeout,
+        /**
+         * 关闭时等待各个阶段处理完剩余日志的最长时间（毫秒），默认10000
+         */
+        shutdownTimeout,
+        /**
+         * 是否在写入请求日志的同时写入索引文件，默认true
+         */
+        index,
+        /**
+         * 每隔多少条记录写入一条时间索引，默认64
+         */
+        indexInterval,
+        /**
+         * 需要索引的参数名称，逗号分隔，默认不索引参数
+         */
+        indexParams,
+        /**
+         * 实时日志环形缓冲区容量，会向上取整为2的幂，0为不开启，默认4096
+         */
+        tailCapacity,
+        /**
+         * 实时日志最多同时订阅的数量，默认8
+         */
+        tailMaxSubscribers,
+        /**
+         * 实时日志订阅的超时时间（毫秒），0为不超时，默认1800000
+         */
+        tailTimeout,
+        /**
+         * rollupLog汇总的时间段长度（秒），默认60
+         */
+        rollupInterval,
+        /**
+         * 是否记录嵌套调用的调用链（trace.txt，只有json文本格式），默认true
+         */
+        span
     }
 
 
@@ -1,5 +1,8 @@
 package org.example.logs;
 
+import org.example.logs.observice.logwrite.Durability;
+import org.example.logs.plan.CaptureFilter;
+
 import java.lang.annotation.*;
 
 /**
@@ -47,4 +50,53 @@ public @interface ShowParam {
      */
     boolean timestamp() default true;
 
+    /**
+     * 采样比例，0到1之间，例如0.01表示采集1%的调用，每N次采集1次可以写为1.0/N
+     *
+     * @return 默认1，全部采集
+     */
+    double sampleRate() default 1;
+
+    /**
+     * 每秒最多采集的次数，超过之后直接执行方法，不再采集
+     *
+     * @return 默认0，不限制
+     */
+    int maxPerSecond() default 0;
+
+    /**
+     * 持久化级别，SYNC时等待写入磁盘之后方法调用才返回
+     *
+     * @return 默认使用全局配置 log.params.durability
+     */
+    Durability durability() default Durability.INHERIT;
+
+    /**
+     * 方法执行完成之后按执行时间和是否发生异常过滤，没有采集的调用不打印、不持久化，只计入方法统计
+     *
+     * @return 默认ALL，全部采集
+     */
+    CaptureFilter capture() default CaptureFilter.ALL;
+
+    /**
+     * SLOW、SLOW_OR_ERROR的执行时间门槛（毫秒）
+     *
+     * @return 默认0，使用SLOW、SLOW_OR_ERROR时必须大于0
+     */
+    long slowThreshold() default 0;
+
+    /**
+     * TOP_N每个时间窗口采集最慢的调用数量
+     *
+     * @return 默认10
+     */
+    int topN() default 10;
+
+    /**
+     * TOP_N的时间窗口（秒）
+     *
+     * @return 默认60
+     */
+    long topWindow() default 60;
+
 }
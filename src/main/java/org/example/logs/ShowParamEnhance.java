@@ -1,25 +1,36 @@
 package org.example.logs;
 
-import com.alibaba.fastjson.JSON;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.example.logs.async.AsyncReturns;
+import org.example.logs.collect.CaptureCollector;
+import org.example.logs.collect.CaptureEvent;
+import org.example.logs.metrics.LogMetrics;
 import org.example.logs.observice.LogEvent;
 import org.example.logs.observice.LogEventPublisher;
+import org.example.logs.observice.logwrite.Durability;
+import org.example.logs.plan.ArgumentKind;
+import org.example.logs.plan.CaptureOverrideRegistry;
+import org.example.logs.plan.CapturePlan;
+import org.example.logs.plan.CapturePlanRegistry;
+import org.example.logs.serialize.BoundedJsonSerializer;
+import org.example.logs.span.SpanTracker;
+import org.example.logs.stats.LatencyRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.lang.reflect.Method;
+import javax.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 参数打印增强aop
@@ -31,45 +42,49 @@ import java.util.concurrent.*;
 @Component
 public class ShowParamEnhance {
 
+    private final LogEventPublisher logEventPublisher;
+    private final CapturePlanRegistry capturePlanRegistry;
+    private final CaptureCollector captureCollector;
+    private final LogMetrics logMetrics;
+    private final BoundedJsonSerializer boundedJsonSerializer;
+    private final LatencyRegistry latencyRegistry;
+    private final AsyncReturns asyncReturns;
+    private final SpanTracker spanTracker;
+    private final CaptureOverrideRegistry captureOverrideRegistry;
     /**
-     * 线程名称后缀
+     * 全局持久化级别
      */
-    private static int threadInitNumber;
-
+    private final Durability durability;
     /**
-     * 获取线程后缀名称
-     *
-     * @return 线程后缀
+     * sync级别等待写入磁盘的最长时间（毫秒）
      */
-    private static synchronized int nextThreadNum() {
-        return threadInitNumber++;
-    }
+    private final long syncTimeout;
 
-    /**
-     * 核心线程数量
-     */
-    int corePoolSize = 2;
-    /**
-     * 最大线程数量
-     */
-    int maximumPoolSize = 4;
-    /**
-     * 空闲存活时间
-     */
-    long keepAliveTime = 0;
+    @Autowired
+    public ShowParamEnhance(LogEventPublisher logEventPublisher, CapturePlanRegistry capturePlanRegistry,
+                            CaptureCollector captureCollector, LogMetrics logMetrics,
+                            BoundedJsonSerializer boundedJsonSerializer, LatencyRegistry latencyRegistry,
+                            LogConfig logConfig, AsyncReturns asyncReturns, SpanTracker spanTracker,
+                            CaptureOverrideRegistry captureOverrideRegistry) {
+        this.logEventPublisher = logEventPublisher;
+        this.capturePlanRegistry = capturePlanRegistry;
+        this.captureCollector = captureCollector;
+        this.logMetrics = logMetrics;
+        this.boundedJsonSerializer = boundedJsonSerializer;
+        this.latencyRegistry = latencyRegistry;
+        this.asyncReturns = asyncReturns;
+        this.spanTracker = spanTracker;
+        this.captureOverrideRegistry = captureOverrideRegistry;
+        this.durability = Durability.of(logConfig.get(LogConfig.LogConfigKey.durability, "async")).orElse(Durability.ASYNC);
+        this.syncTimeout = Math.max(0, logConfig.getLong(LogConfig.LogConfigKey.durabilitySyncTimeout, 5000));
+    }
 
     /**
-     * 执行日志收集的线程池
+     * 启动采集线程
      */
-    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(corePoolSize, maximumPoolSize,
-            keepAliveTime, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
-            r -> new Thread(new ThreadGroup("showParamThreadGroup"), r, "show_param:" + nextThreadNum()));
-
-    private final LogEventPublisher logEventPublisher;
-
-    @Autowired
-    public ShowParamEnhance(LogEventPublisher logEventPublisher) {
-        this.logEventPublisher = logEventPublisher;
+    @PostConstruct
+    public void init() {
+        captureCollector.start(this::enhance);
     }
 
     /**
@@ -88,104 +103,135 @@ public class ShowParamEnhance {
      */
     @Around("section()")
     public Object around(ProceedingJoinPoint point) throws Throwable {
+        //启动时已经构建好的采集计划，方法上面的注解优先级大于类上面的注解，再应用运行时的覆盖配置
+        CapturePlan plan = captureOverrideRegistry.resolve(
+                capturePlanRegistry.find(point.getTarget().getClass(), ((MethodSignature) point.getSignature()).getMethod()));
+        //关闭采集、没有命中采样或者超过每秒次数限制，只执行方法
+        if (Objects.isNull(plan) || !plan.isEnabled() || !plan.sample()) {
+            return point.proceed();
+        }
+        //开始时间用于记录，执行时间使用纳秒计时
         long startTime = System.currentTimeMillis();
-        Throwable throwable = null;
-        //目标方法执行结果
-        Object proceed = null;
+        long startNanos = System.nanoTime();
+        Object[] args = point.getArgs();
+        //嵌套调用的调用链
+        Object span = spanTracker.enter(plan, startTime, startNanos);
+        long durationNanos = -1;
+        boolean error = false;
+        boolean async = false;
+        boolean captured = true;
         try {
-            proceed = point.proceed();
-        } catch (Throwable t) {
-            throwable = t;
-            throw t;
+            //目标方法执行结果
+            Object proceed;
+            try {
+                proceed = point.proceed();
+            } catch (Throwable t) {
+                durationNanos = System.nanoTime() - startNanos;
+                error = true;
+                captured = finish(plan, args, null, t, startTime, durationNanos, true);
+                throw t;
+            }
+            durationNanos = System.nanoTime() - startNanos;
+            if (Objects.nonNull(proceed) && asyncReturns.isAsync(proceed)) {
+                //异步返回值在异步工作完成时记录，不阻塞完成的线程，调用链中只记录到方法返回为止
+                async = true;
+                return asyncReturns.attach(proceed, startTime, startNanos,
+                        (result, throwable, start, nanos) -> finish(plan, args, result, throwable, start, nanos, false));
+            }
+            captured = finish(plan, args, proceed, null, startTime, durationNanos, true);
+            return proceed;
         } finally {
-            long endTime = System.currentTimeMillis();
-            //新开一个线程执行收参数收集信息
-            threadPoolExecutor.execute(enhance(point, proceed, throwable, startTime, endTime));
+            //记录发生错误时也要退出，避免线程中残留调用链
+            spanTracker.exit(span, durationNanos < 0 ? System.nanoTime() - startNanos : durationNanos, error, async, captured);
         }
-        return proceed;
     }
 
     /**
-     * 获取类上面的注解
+     * 方法执行完成，按照过滤方式和持久化级别交给采集线程或者在当前线程中收集信息
      *
-     * @return 注解对象`
+     * @param plan          采集计划
+     * @param args          参数列表
+     * @param result        执行结果
+     * @param throwable     异常
+     * @param startTime     开始时间
+     * @param durationNanos 执行时间（纳秒）
+     * @param blocking      是否可以等待写入磁盘，异步完成的回调中不等待
+     * @return 是否通过了采集过滤
      */
-    private ShowParam findAnnotationByClass(Class<?> targetClass) {
-        //获取类上面的注解
-        return targetClass.getAnnotation(ShowParam.class);
+    private boolean finish(CapturePlan plan, Object[] args, Object result, Throwable throwable, long startTime,
+                        long durationNanos, boolean blocking) {
+        boolean error = Objects.nonNull(throwable);
+        if (!plan.capture(durationNanos, error)) {
+            //不需要采集的调用只计入方法统计，不持有参数和返回值
+            logMetrics.method(plan, error, durationNanos);
+            latencyRegistry.record(plan, durationNanos, error);
+            return false;
+        }
+        if (blocking && plan.getDurability().orElse(durability) == Durability.SYNC && plan.isDataPersistence()) {
+            //sync级别在调用线程中收集信息，等待写入磁盘之后再返回
+            awaitPersisted(enhance(CaptureEvent.of(plan, args, result, throwable, startTime, durationNanos)));
+        } else {
+            //交给采集线程收集信息，不持有代理对象
+            captureCollector.publish(plan, args, result, throwable, startTime, durationNanos);
+        }
+        return true;
     }
 
     /**
-     * 获取到方法上面的注解
+     * 等待日志写入磁盘，超时或者写入失败只记录错误，不影响方法的返回
      *
-     * @param targetClass    被代理的目标对象
-     * @param methodName     执行的方法名称
-     * @param parameterTypes 执行的参数列表
-     * @return 方法上面的注解
-     * @throws NoSuchMethodException 没有获取到该方法
+     * @param logEvent 日志事件
      */
-    private ShowParam findAnnotationByMethod(Class<?> targetClass, String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
-        Method method = Objects.nonNull(parameterTypes) && parameterTypes.length >= 1 ? targetClass.getMethod(methodName, parameterTypes) :
-                targetClass.getMethod(methodName);
-        return method.getAnnotation(ShowParam.class);
+    private void awaitPersisted(LogEvent logEvent) {
+        if (Objects.isNull(logEvent) || Objects.isNull(logEvent.getPersisted())) {
+            return;
+        }
+        try {
+            logEvent.getPersisted().get(syncTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("{} 等待日志写入磁盘超时（{}毫秒）", logEvent.getTargetAddress(), syncTimeout);
+        } catch (ExecutionException e) {
+            log.error("{} 日志写入磁盘失败：{}", logEvent.getTargetAddress(), e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * 获取需要执行的注解
+     * 打印参数
      *
-     * @param targetClass    目标代理对象class
-     * @param methodName     需要执行的方法名称
-     * @param parameterTypes 需要执行的方法参数类型列表
-     * @return 需要执行的注解
-     * @throws NoSuchMethodException 没找到方法对象
+     * @param plan 采集计划
+     * @param args 参数列表
+     * @return 需要打印的参数信息
      */
-    private ShowParam findAnnotation(Class<?> targetClass, String methodName, Class<?>... parameterTypes) throws NoSuchMethodException {
-        //查询方法上面的注解
-        ShowParam annotation = findAnnotationByMethod(targetClass, methodName, parameterTypes);
-        //如果该方法上面没注解，则在类上面获取注解，方法上面的注解优先局大于类上面的注解
-        return Objects.isNull(annotation) ? findAnnotationByClass(targetClass) : annotation;
+    private String showParam(CapturePlan plan, Object[] args) {
+        return boundedJsonSerializer.toJson(paramMap(plan, args));
     }
 
     /**
-     * 打印参数
+     * 参数名称 -> 参数值，特殊类型的参数使用占位符
      *
-     * @param signature 代理方法
-     * @param args      参数列表
-     * @return 需要打印的参数信息
+     * @param plan 采集计划
+     * @param args 参数列表
+     * @return 参数信息
      */
-    private String showParam(MethodSignature signature, Object[] args) {
-        if (Objects.isNull(args) || args.length <= 0) {
-            return "";
-        }
-        String[] parameterNames = signature.getParameterNames();
+    private Map<String, Object> paramMap(CapturePlan plan, Object[] args) {
         Map<String, Object> params = new HashMap<>(args.length);
         for (int i = 0; i < args.length; i++) {
             //参数名称
-            String parameterName = parameterNames[i];
-            //判断是否为常用的特殊类型
-            if (args[i] instanceof HttpServletRequest) {
-                params.put(parameterName, "request");
-                continue;
-            }
-            if (args[i] instanceof HttpServletResponse) {
-                params.put(parameterName, "response");
-                continue;
-            }
-            if (args[i] instanceof MultipartFile) {
-                params.put(parameterName, "multipartFile");
-                continue;
+            String parameterName = plan.parameterName(i);
+            //启动时已经根据声明类型确定了特殊类型，只有声明类型过于宽泛时才需要运行时判断
+            ArgumentKind kind = plan.argumentKind(i);
+            if (kind == ArgumentKind.DYNAMIC) {
+                kind = ArgumentKind.ofValue(args[i]);
             }
-            Object value;
-            try {
-                value = args[i];
-            } catch (Exception e) {
-                params.put(parameterName, e.getMessage());
+            if (kind != ArgumentKind.VALUE) {
+                params.put(parameterName, kind.getPlaceholder());
                 continue;
             }
-            params.put(parameterName, value);
+            params.put(parameterName, boundedJsonSerializer.limitElements(args[i]));
         }
-        return JSON.toJSONString(params);
-
+        return params;
     }
 
     /**
@@ -219,73 +265,88 @@ public class ShowParamEnhance {
 
 
     /**
-     * 开启另外一个线程进行方法日志收集
+     * 采集线程中进行方法日志收集
      *
-     * @param point     代理对象
-     * @param resultObj 返回值 可以为null
-     * @param throwable 异常信息 可以为null
-     * @param startTime 开始执行时间
-     * @param endTime   截止执行时间
+     * @param event 采集队列中的一次方法调用
+     * @return 发布的日志事件，不需要持久化时为null
      */
-    public Runnable enhance(ProceedingJoinPoint point, Object resultObj, Throwable throwable, Long startTime, Long endTime) {
-        return () -> {
-            Object target = point.getTarget();
-            Class<?> targetClass = target.getClass();
-            //获取到方法签名对象
-            MethodSignature signature = (MethodSignature) point.getSignature();
-            //执行的方法名称
-            String methodName = signature.getName();
-            //该方法的所有参数列表
-            Class<?>[] parameterTypes = signature.getParameterTypes();
-            //如果该方法上面没注解，则在类上面获取注解，方法上面的注解优先局大于类上面的注解
-            ShowParam annotation;
-            try {
-                annotation = findAnnotation(targetClass, methodName, parameterTypes);
-            } catch (NoSuchMethodException e) {
-                log.error("无法获取到目标方法");
-                return;
-            }
-            //执行方法的完整方法地址
-            String fullMethodPath = targetClass.getName() + "." + methodName;
-            Object[] args = point.getArgs();
-            //打印内容的头部和尾部
-            log.info("{} 方法开始执行...", fullMethodPath);
-            //参数信息
-            String paramString = Objects.isNull(args) || args.length < 1 ? "" : showParam(signature, args);
-            if (annotation.param()) {
-                log.info("参数信息：{}", paramString);
-            }
-            String resultString = "";
-            String errorMsg = "";
-            String errorLocation = "";
-            //如果执行方法发生了错误
-            if (Objects.nonNull(throwable)) {
-                //错误消息
-                errorMsg = throwable.getMessage();
-                //错误位置
-                errorLocation = errorLocation(throwable);
-                log.info("错误消息：{}", errorMsg);
-                log.info("部分错误位置：{}", errorLocation);
-            } else if (Objects.nonNull(resultObj)) {
-                //返回值
-                resultString = JSON.toJSONString(resultObj);
-                //打印执行结果
-                if (annotation.result()) {
-                    log.info("执行结果：{}", resultString);
-                }
-            }
-            log.info("{} 方法执行结束...", fullMethodPath);
-            //打印执行时间
-            showTime(annotation.timestamp(), startTime, endTime);
-            //如果不需要持久化，则返回
-            if (!annotation.dataPersistence()) {
-                return;
+    public LogEvent enhance(CaptureEvent event) {
+        CapturePlan plan = event.getPlan();
+        Object resultObj = event.getResult();
+        Throwable throwable = event.getThrowable();
+        long startTime = event.getStartTime();
+        long endTime = event.getEndTime();
+        //执行方法的完整方法地址
+        String fullMethodPath = plan.getFullMethodPath();
+        Object[] args = event.getArgs();
+        //方法调用次数和执行时间
+        logMetrics.method(plan, Objects.nonNull(throwable), event.getDurationNanos());
+        latencyRegistry.record(plan, event.getDurationNanos(), Objects.nonNull(throwable));
+        //打印内容的头部和尾部
+        log.info("{} 方法开始执行...", fullMethodPath);
+        //只有打印或者持久化时才需要序列化
+        boolean printInfo = log.isInfoEnabled();
+        boolean persistence = plan.isDataPersistence();
+        //参数信息，打印时序列化为字符串并统计耗时，只持久化时由编码格式直接序列化到记录缓冲区
+        long serializeNanos = 0;
+        String paramString = "";
+        Object paramValue = null;
+        if (Objects.nonNull(args) && args.length > 0) {
+            if (plan.isParam() && printInfo) {
+                long serializeStart = System.nanoTime();
+                paramString = showParam(plan, args);
+                serializeNanos = System.nanoTime() - serializeStart;
+            } else if (persistence) {
+                paramString = null;
+                paramValue = paramMap(plan, args);
             }
-            //进行持久化操作
-            LogEvent logEvent = new LogEvent(annotation).targetAddress(fullMethodPath).param(paramString)
-                    .result(resultString).startTime(startTime).endTime(endTime).errorMsg(errorMsg).errorLocation(errorLocation)
-                    .persistenceAddress(annotation.path());
-            logEventPublisher.publishEvent(logEvent);
-        };
+        }
+        if (plan.isParam()) {
+            log.info("参数信息：{}", paramString);
+        }
+        String resultString = "";
+        Object resultValue = null;
+        String errorMsg = "";
+        String errorLocation = "";
+        //如果执行方法发生了错误
+        if (Objects.nonNull(throwable)) {
+            //错误消息
+            errorMsg = throwable.getMessage();
+            //错误位置
+            errorLocation = errorLocation(throwable);
+            log.info("错误消息：{}", errorMsg);
+            log.info("部分错误位置：{}", errorLocation);
+        } else if (Objects.nonNull(resultObj) && plan.isResult() && printInfo) {
+            //返回值
+            long serializeStart = System.nanoTime();
+            resultString = boundedJsonSerializer.toJson(resultObj);
+            serializeNanos += System.nanoTime() - serializeStart;
+            //打印执行结果
+            log.info("执行结果：{}", resultString);
+        } else if (Objects.nonNull(resultObj) && persistence) {
+            resultString = null;
+            resultValue = resultObj;
+        }
+        if (serializeNanos > 0) {
+            logMetrics.serialization(serializeNanos);
+        }
+        log.info("{} 方法执行结束...", fullMethodPath);
+        //打印执行时间
+        showTime(plan.isTimestamp(), startTime, endTime);
+        //如果不需要持久化，则返回
+        if (!persistence) {
+            return null;
+        }
+        //进行持久化操作，sync级别需要等待写入磁盘
+        Durability eventDurability = plan.getDurability().orElse(durability);
+        LogEvent logEvent = new LogEvent(plan).targetAddress(fullMethodPath).param(paramString).paramValue(paramValue)
+                .result(resultString).resultValue(resultValue).startTime(startTime).endTime(endTime)
+                .durationNanos(event.getDurationNanos())
+                .errorMsg(errorMsg).errorLocation(errorLocation).persistenceAddress(plan.getPath())
+                .durability(eventDurability)
+                .persisted(eventDurability == Durability.SYNC ? new CompletableFuture<>() : null);
+        logEventPublisher.publishEvent(logEvent);
+        return logEvent;
     }
 }
+
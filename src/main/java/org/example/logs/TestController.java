@@ -1,8 +1,12 @@
 package org.example.logs;
 
+import org.example.logs.observice.logwrite.Durability;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 测试控制层
  *
@@ -41,5 +45,24 @@ public class TestController {
         return "有参数，全部不展示";
     }
 
+    @GetMapping("/test05")
+    @ShowParam
+    public List<String> test05(int size) {
+        List<String> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add("第" + i + "行");
+        }
+        return rows;
+    }
+
+    /**
+     * 审计类接口，日志写入磁盘之后才返回
+     */
+    @GetMapping("/test06")
+    @ShowParam(durability = Durability.SYNC)
+    public String test06(String userName) {
+        return "审计" + userName;
+    }
+
 
 }
@@ -1,5 +1,7 @@
 package org.example.logs;
 
+import org.example.logs.plan.CaptureFilter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -7,6 +9,13 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class TestController2 {
 
+    private final TestService testService;
+
+    @Autowired
+    public TestController2(TestService testService) {
+        this.testService = testService;
+    }
+
     @GetMapping("/test2/test")
     public String test(String userName, String password) {
         return "测试类注解" + userName + "-" + password;
@@ -18,4 +27,32 @@ public class TestController2 {
         return "测试类注解" + userName + "-" + password;
     }
 
+    @ShowParam(sampleRate = 0.1, maxPerSecond = 5)
+    @GetMapping("/test2/test02")
+    public String test02(String userName, String password) {
+        return "测试采样" + userName + "-" + password;
+    }
+
+    @ShowParam(capture = CaptureFilter.SLOW_OR_ERROR, slowThreshold = 100)
+    @GetMapping("/test2/test03")
+    public String test03(long sleep) throws InterruptedException {
+        if (sleep < 0) {
+            throw new IllegalArgumentException("sleep不能小于0");
+        }
+        Thread.sleep(sleep);
+        return "慢调用" + sleep;
+    }
+
+    @GetMapping("/test2/nested")
+    public String nested(String userName) throws InterruptedException {
+        return testService.query(userName) + "," + testService.save(userName);
+    }
+
+    @ShowParam(capture = CaptureFilter.TOP_N, topN = 5, topWindow = 10)
+    @GetMapping("/test2/test04")
+    public String test04(long sleep) throws InterruptedException {
+        Thread.sleep(sleep);
+        return "最慢调用" + sleep;
+    }
+
 }
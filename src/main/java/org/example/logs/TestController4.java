@@ -0,0 +1,56 @@
+package org.example.logs;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试异步返回值，执行时间为异步工作完成的时间
+ *
+ * @author 李昆城
+ */
+@ShowParam
+@RestController
+public class TestController4 {
+
+    @GetMapping("/test4/future")
+    public CompletableFuture<String> future(long sleep) {
+        return CompletableFuture.supplyAsync(() -> {
+            sleep(sleep);
+            if (sleep < 0) {
+                throw new IllegalArgumentException("sleep不能小于0");
+            }
+            return "异步结果" + sleep;
+        });
+    }
+
+    @GetMapping("/test4/deferred")
+    public DeferredResult<String> deferred(long sleep) {
+        DeferredResult<String> result = new DeferredResult<>();
+        CompletableFuture.runAsync(() -> {
+            sleep(sleep);
+            result.setResult("延迟结果" + sleep);
+        });
+        return result;
+    }
+
+    @GetMapping("/test4/callable")
+    public Callable<String> callable(long sleep) {
+        return () -> {
+            sleep(sleep);
+            return "callable结果" + sleep;
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
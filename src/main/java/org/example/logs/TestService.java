@@ -0,0 +1,37 @@
+package org.example.logs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试嵌套调用，类上面的注解对所有方法生效
+ *
+ * @author 李昆城
+ */
+@ShowParam
+@Service
+public class TestService {
+
+    /**
+     * 代理之后的自身，直接调用this上的方法不经过切面，不会记录为子调用
+     */
+    private final TestService self;
+
+    @Autowired
+    public TestService(@Lazy TestService self) {
+        this.self = self;
+    }
+
+    public String query(String userName) throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(20);
+        return "查询" + userName;
+    }
+
+    public String save(String userName) throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(10);
+        return "保存" + self.query(userName);
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.logs.async;
+
+/**
+ * 异步返回值完成时的回调
+ *
+ * @author 李昆城
+ */
+@FunctionalInterface
+public interface AsyncCompletion {
+
+    /**
+     * 异步执行完成
+     *
+     * @param result        异步结果，发生异常时为null
+     * @param throwable     异常，正常完成时为null
+     * @param startTime     开始时间
+     * @param durationNanos 执行时间（纳秒）
+     */
+    void complete(Object result, Throwable throwable, long startTime, long durationNanos);
+}
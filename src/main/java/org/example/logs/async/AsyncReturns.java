@@ -0,0 +1,201 @@
+package org.example.logs.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 异步返回值的完成回调，方法返回之后异步工作才真正完成，执行时间、结果和异常在完成时记录，不阻塞任何线程
+ * <ul>
+ * <li>CompletionStage（CompletableFuture）、ListenableFuture：注册完成回调</li>
+ * <li>DeferredResult、Callable、WebAsyncTask：由spring mvc的异步拦截器（{@link AsyncWebInterceptor}）在产生结果时回调</li>
+ * <li>Mono、Flux：存在reactor时通过反射用defer包装，每次订阅单独挂上doOn回调、从订阅开始计时，返回包装之后的对象</li>
+ * </ul>
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class AsyncReturns {
+
+    private static final String MONO = "reactor.core.publisher.Mono";
+    private static final String FLUX = "reactor.core.publisher.Flux";
+
+    /**
+     * 等待spring mvc回调的DeferredResult、Callable，弱引用，没有交给spring mvc的对象被回收之后自动删除
+     */
+    private final Map<Object, PendingCompletion> pending = Collections.synchronizedMap(new WeakHashMap<>());
+    private final ReactorHooks mono;
+    private final ReactorHooks flux;
+
+    public AsyncReturns() {
+        ClassLoader classLoader = AsyncReturns.class.getClassLoader();
+        this.mono = ReactorHooks.of(MONO, "doOnSuccess", classLoader);
+        this.flux = ReactorHooks.of(FLUX, "doOnComplete", classLoader);
+    }
+
+    /**
+     * 是否为异步返回值
+     *
+     * @param value 方法返回值
+     * @return true：需要在完成时记录
+     */
+    public boolean isAsync(Object value) {
+        return value instanceof CompletionStage || value instanceof ListenableFuture || value instanceof DeferredResult
+                || value instanceof Callable || value instanceof WebAsyncTask
+                || Objects.nonNull(mono) && mono.type.isInstance(value) || Objects.nonNull(flux) && flux.type.isInstance(value);
+    }
+
+    /**
+     * 注册完成回调
+     *
+     * @param value      方法返回值，{@link #isAsync(Object)}为true
+     * @param startTime  方法开始时间
+     * @param startNanos 方法开始计时
+     * @param completion 完成回调
+     * @return 方法需要返回的对象，reactor类型为挂上回调之后的对象，其他类型为原对象
+     */
+    public Object attach(Object value, long startTime, long startNanos, AsyncCompletion completion) {
+        //Mono.just、Mono.error等实现了Callable，必须先判断reactor类型
+        if (Objects.nonNull(mono) && mono.type.isInstance(value)) {
+            return mono.attach(value, false, completion);
+        } else if (Objects.nonNull(flux) && flux.type.isInstance(value)) {
+            return flux.attach(value, true, completion);
+        }
+        PendingCompletion callback = new PendingCompletion(startTime, startNanos, completion);
+        if (value instanceof CompletionStage) {
+            ((CompletionStage<?>) value).whenComplete((result, throwable) -> callback.complete(result, unwrap(throwable)));
+        } else if (value instanceof ListenableFuture) {
+            ((ListenableFuture<?>) value).addCallback(result -> callback.complete(result, null),
+                    throwable -> callback.complete(null, unwrap(throwable)));
+        } else if (value instanceof DeferredResult || value instanceof Callable) {
+            pending.put(value, callback);
+        } else if (value instanceof WebAsyncTask) {
+            pending.put(((WebAsyncTask<?>) value).getCallable(), callback);
+        }
+        return value;
+    }
+
+    /**
+     * spring mvc产生异步结果时调用
+     *
+     * @param key       DeferredResult或者Callable
+     * @param result    异步结果，异常也作为结果
+     */
+    void complete(Object key, Object result) {
+        PendingCompletion callback = pending.remove(key);
+        if (Objects.nonNull(callback)) {
+            if (result instanceof Throwable) {
+                callback.complete(null, (Throwable) result);
+            } else {
+                callback.complete(result, null);
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        if ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && Objects.nonNull(throwable.getCause())) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * 通过反射调用reactor的defer和doOn方法，不依赖reactor
+     */
+    private static final class ReactorHooks {
+        private final Class<?> type;
+        /**
+         * 静态方法defer(Supplier)，每次订阅调用一次Supplier
+         */
+        private final Method defer;
+        private final Method doOnNext;
+        private final Method doOnError;
+        private final Method doOnCancel;
+        /**
+         * Mono为doOnSuccess(Consumer)，Flux为doOnComplete(Runnable)
+         */
+        private final Method doOnTerminate;
+
+        private ReactorHooks(Class<?> type, String terminate) throws NoSuchMethodException {
+            this.type = type;
+            this.defer = type.getMethod("defer", Supplier.class);
+            this.doOnNext = type.getMethod("doOnNext", Consumer.class);
+            this.doOnError = type.getMethod("doOnError", Consumer.class);
+            this.doOnCancel = type.getMethod("doOnCancel", Runnable.class);
+            this.doOnTerminate = "doOnSuccess".equals(terminate) ? type.getMethod(terminate, Consumer.class) : type.getMethod(terminate, Runnable.class);
+        }
+
+        /**
+         * @return 不存在reactor时为null
+         */
+        private static ReactorHooks of(String className, String terminate, ClassLoader classLoader) {
+            if (!ClassUtils.isPresent(className, classLoader)) {
+                return null;
+            }
+            try {
+                return new ReactorHooks(ClassUtils.forName(className, classLoader), terminate);
+            } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+                log.warn("不支持的reactor版本，{} 返回值按同步方法记录：{}", className, e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * 用defer包装，同时存在的多个订阅各自计时、计数，互不覆盖
+         */
+        private Object attach(Object publisher, boolean many, AsyncCompletion completion) {
+            Supplier<Object> perSubscription = () -> hook(publisher, many, completion);
+            try {
+                return defer.invoke(null, perSubscription);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                log.error("挂上reactor回调发生错误：{}", e.getMessage());
+                return publisher;
+            }
+        }
+
+        /**
+         * 一次订阅的回调，从订阅开始计时，Mono的结果为元素，Flux的结果为元素数量
+         */
+        private Object hook(Object publisher, boolean many, AsyncCompletion completion) {
+            PendingCompletion callback = new PendingCompletion(System.currentTimeMillis(), System.nanoTime(), completion);
+            Consumer<Throwable> onError = throwable -> callback.complete(null, throwable);
+            Runnable onCancel = () -> callback.complete(null, new CancellationException("订阅已取消"));
+            try {
+                Object result = doOnError.invoke(publisher, onError);
+                result = doOnCancel.invoke(result, onCancel);
+                if (many) {
+                    AtomicLong count = new AtomicLong();
+                    Consumer<Object> onNext = value -> count.incrementAndGet();
+                    result = doOnNext.invoke(result, onNext);
+                    Runnable onComplete = () -> callback.complete("Flux(" + count.get() + ")", null);
+                    return doOnTerminate.invoke(result, onComplete);
+                }
+                Consumer<Object> onSuccess = value -> callback.complete(value, null);
+                return doOnTerminate.invoke(result, onSuccess);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                log.error("挂上reactor回调发生错误：{}", e.getMessage());
+                return publisher;
+            }
+        }
+    }
+}
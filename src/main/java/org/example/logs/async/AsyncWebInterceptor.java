@@ -0,0 +1,57 @@
+package org.example.logs.async;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * spring mvc异步请求产生结果时通知{@link AsyncReturns}，DeferredResult的回调只能设置一个，不能直接占用
+ * <p>
+ * 超时、发生错误时结果为对应的异常；请求结束时还没有结果（例如客户端断开）按取消记录
+ *
+ * @author 李昆城
+ */
+@Component
+public class AsyncWebInterceptor implements WebMvcConfigurer, DeferredResultProcessingInterceptor, CallableProcessingInterceptor {
+
+    private final AsyncReturns asyncReturns;
+
+    @Autowired
+    public AsyncWebInterceptor(AsyncReturns asyncReturns) {
+        this.asyncReturns = asyncReturns;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerDeferredResultInterceptors(this);
+        configurer.registerCallableInterceptors(this);
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, DeferredResult<T> deferredResult, Object concurrentResult) {
+        asyncReturns.complete(deferredResult, concurrentResult);
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        asyncReturns.complete(deferredResult, new CancellationException("请求结束时没有结果"));
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        asyncReturns.complete(task, concurrentResult);
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        asyncReturns.complete(task, new CancellationException("请求结束时没有结果"));
+    }
+}
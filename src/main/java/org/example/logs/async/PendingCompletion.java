@@ -0,0 +1,34 @@
+package org.example.logs.async;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次等待完成的异步调用，保证回调只执行一次
+ *
+ * @author 李昆城
+ */
+final class PendingCompletion {
+
+    private final long startTime;
+    private final long startNanos;
+    private final AsyncCompletion completion;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    PendingCompletion(long startTime, long startNanos, AsyncCompletion completion) {
+        this.startTime = startTime;
+        this.startNanos = startNanos;
+        this.completion = completion;
+    }
+
+    /**
+     * 异步执行完成，执行时间从开始计时到现在
+     *
+     * @param result    异步结果
+     * @param throwable 异常
+     */
+    void complete(Object result, Throwable throwable) {
+        if (completed.compareAndSet(false, true)) {
+            completion.complete(result, throwable, startTime, System.nanoTime() - startNanos);
+        }
+    }
+}
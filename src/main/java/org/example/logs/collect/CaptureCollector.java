@@ -0,0 +1,373 @@
+package org.example.logs.collect;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.plan.CapturePlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 日志采集器，使用预分配的环形队列代替无界的线程池队列
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class CaptureCollector {
+
+    /**
+     * 线程名称后缀
+     */
+    private static int threadInitNumber;
+
+    /**
+     * 获取线程后缀名称
+     *
+     * @return 线程后缀
+     */
+    private static synchronized int nextThreadNum() {
+        return threadInitNumber++;
+    }
+
+    /**
+     * 连续等待次数的上限，等待策略只关心前几百次
+     */
+    private static final int MAX_IDLE_COUNTER = 1024;
+
+    /**
+     * 采集队列
+     */
+    private final RingBuffer<CaptureEvent> ringBuffer;
+    /**
+     * 溢出策略
+     */
+    private final OverflowPolicy overflowPolicy;
+    /**
+     * 消费者等待数据的策略
+     */
+    private final WaitStrategy consumerWait;
+    /**
+     * 生产者等待空闲槽位的策略
+     */
+    private final WaitStrategy producerWait;
+    /**
+     * 采样比例
+     */
+    private final int sampleRate;
+    /**
+     * 采样的水位线，超过之后开始采样
+     */
+    private final int sampleWatermark;
+    /**
+     * 采样计数
+     */
+    private final AtomicLong sampleCounter = new AtomicLong();
+    /**
+     * 进入队列的数量
+     */
+    private final LongAdder publishedCount = new LongAdder();
+    /**
+     * 被丢弃的数量
+     */
+    private final LongAdder droppedCount = new LongAdder();
+    /**
+     * 正在处理数据的采集线程数量
+     */
+    private final AtomicInteger activeCount = new AtomicInteger();
+    /**
+     * 已经通过接收检查、还没有发布完成的生产者数量，关闭时采集线程等它们发布完成之后才退出
+     */
+    private final AtomicInteger publishing = new AtomicInteger();
+    /**
+     * 采集线程数量
+     */
+    private final int threads;
+    /**
+     * 采集线程
+     */
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * 关闭时等待处理完剩余数据的最长时间（纳秒）
+     */
+    private final long shutdownTimeoutNanos;
+
+    private volatile boolean running;
+    /**
+     * 是否接收新的数据，关闭时先停止接收，处理完剩余的数据之后再停止采集线程
+     */
+    private volatile boolean accepting;
+
+    @Autowired
+    public CaptureCollector(LogConfig logConfig) {
+        String waitStrategy = logConfig.get(LogConfig.LogConfigKey.collectorWaitStrategy, "sleeping");
+        this.ringBuffer = new RingBuffer<>(logConfig.getInt(LogConfig.LogConfigKey.collectorBufferSize, 8192), CaptureEvent::new);
+        this.overflowPolicy = OverflowPolicy.of(logConfig.get(LogConfig.LogConfigKey.collectorOverflowPolicy, "block"));
+        this.consumerWait = WaitStrategy.of(waitStrategy);
+        this.producerWait = WaitStrategy.of(waitStrategy);
+        this.sampleRate = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.collectorSampleRate, 10));
+        this.sampleWatermark = ringBuffer.capacity() - ringBuffer.capacity() / 4;
+        this.threads = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.collectorThreads, 2));
+        this.shutdownTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, logConfig.getLong(LogConfig.LogConfigKey.shutdownTimeout, 10000)));
+        log.info("日志采集队列容量：{}，采集线程：{}，等待策略：{}，溢出策略：{}",
+                ringBuffer.capacity(), threads, waitStrategy, overflowPolicy);
+    }
+
+    /**
+     * 启动采集线程
+     *
+     * @param handler 采集数据的处理者
+     */
+    public synchronized void start(Consumer<CaptureEvent> handler) {
+        if (running) {
+            return;
+        }
+        running = true;
+        accepting = true;
+        ThreadGroup threadGroup = new ThreadGroup("showParamThreadGroup");
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(threadGroup, () -> consume(handler), "show_param:" + nextThreadNum());
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 停止采集线程
+     */
+    @PreDestroy
+    public void stop() {
+        drain(System.nanoTime() + shutdownTimeoutNanos);
+    }
+
+    /**
+     * 不再接收新的数据，等待采集线程处理完队列中剩余的数据，超过截止时间之后直接停止
+     *
+     * @param deadline 截止时间（{@link System#nanoTime()}）
+     */
+    public synchronized void drain(long deadline) {
+        accepting = false;
+        consumerWait.signalAll();
+        producerWait.signalAll();
+        try {
+            for (Thread worker : workers) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+        //停止接收之后正在发布的生产者不会再阻塞，等它们发布完成，剩余的数据计入丢弃
+        while (publishing.get() > 0) {
+            Thread.yield();
+        }
+        long discarded = 0;
+        long sequence;
+        while ((sequence = ringBuffer.tryTake()) >= 0) {
+            ringBuffer.get(sequence).clear();
+            ringBuffer.release(sequence);
+            discarded++;
+        }
+        if (discarded > 0) {
+            droppedCount.add(discarded);
+            log.warn("采集线程在关闭超时之前没有处理完，丢弃剩余：{}", discarded);
+        }
+    }
+
+    /**
+     * 发布一次方法调用，不会分配新的对象
+     *
+     * @param plan          采集计划
+     * @param args          参数列表
+     * @param result        返回值 可以为null
+     * @param throwable     异常信息 可以为null
+     * @param startTime     开始执行时间
+     * @param durationNanos 执行时间（纳秒）
+     * @return true：发布成功 false：被溢出策略丢弃
+     */
+    public boolean publish(CapturePlan plan, Object[] args, Object result, Throwable throwable, long startTime, long durationNanos) {
+        //先登记再检查是否接收，关闭时要么这里看到不再接收，要么采集线程看到正在发布
+        publishing.incrementAndGet();
+        try {
+            long sequence = accepting ? claim() : -1;
+            if (sequence < 0) {
+                droppedCount.increment();
+                return false;
+            }
+            ringBuffer.get(sequence).fill(plan, args, result, throwable, startTime, durationNanos);
+            ringBuffer.publish(sequence);
+            publishedCount.increment();
+        } finally {
+            publishing.decrementAndGet();
+        }
+        consumerWait.signalAll();
+        return true;
+    }
+
+    /**
+     * 按照溢出策略申请槽位
+     *
+     * @return 槽位序号，被丢弃返回-1
+     */
+    private long claim() {
+        if (overflowPolicy == OverflowPolicy.SAMPLE && ringBuffer.size() >= sampleWatermark
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            return -1;
+        }
+        int counter = 0;
+        while (true) {
+            long sequence = ringBuffer.tryClaim();
+            if (sequence >= 0) {
+                return sequence;
+            }
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    //队列已满时需要的正是最旧的槽位，它正在被采集线程处理时丢弃队列中的数据也腾不出位置，丢弃新的数据
+                    if (ringBuffer.size() < ringBuffer.capacity()) {
+                        return -1;
+                    }
+                    //丢弃最旧的一条，再重新申请
+                    discardOldest();
+                    break;
+                case BLOCK:
+                    //关闭之后不再阻塞调用线程
+                    if (!accepting) {
+                        return -1;
+                    }
+                    try {
+                        producerWait.idle(counter);
+                        counter = Math.min(counter + 1, MAX_IDLE_COUNTER);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return -1;
+                    }
+                    break;
+                default:
+                    return -1;
+            }
+        }
+    }
+
+    /**
+     * 丢弃队列中最旧的一条数据
+     */
+    private void discardOldest() {
+        long oldest = ringBuffer.tryTake();
+        if (oldest < 0) {
+            //最旧的槽位还在写入或者正在被消费
+            Thread.yield();
+            return;
+        }
+        ringBuffer.get(oldest).clear();
+        ringBuffer.release(oldest);
+        droppedCount.increment();
+    }
+
+    /**
+     * 采集线程循环读取队列
+     *
+     * @param handler 采集数据的处理者
+     */
+    private void consume(Consumer<CaptureEvent> handler) {
+        int counter = 0;
+        while (running) {
+            //在读取队列之前检查，没有正在发布的生产者时读取不到说明队列已经处理完
+            boolean closed = !accepting && publishing.get() == 0;
+            long sequence = ringBuffer.tryTake();
+            if (sequence < 0) {
+                if (closed) {
+                    break;
+                }
+                try {
+                    consumerWait.idle(counter);
+                    counter = Math.min(counter + 1, MAX_IDLE_COUNTER);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                continue;
+            }
+            counter = 0;
+            CaptureEvent event = ringBuffer.get(sequence);
+            activeCount.incrementAndGet();
+            try {
+                handler.accept(event);
+            } catch (Exception e) {
+                log.error("日志采集发生错误：{}", e.getMessage(), e);
+            } finally {
+                activeCount.decrementAndGet();
+                event.clear();
+                ringBuffer.release(sequence);
+                producerWait.signalAll();
+            }
+        }
+    }
+
+    /**
+     * 进入队列的数量
+     *
+     * @return 数量
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * 被溢出策略丢弃的数量
+     *
+     * @return 丢弃数量
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 队列中等待采集的数量
+     *
+     * @return 数量
+     */
+    public int getQueueSize() {
+        return ringBuffer.size();
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return 容量
+     */
+    public int getCapacity() {
+        return ringBuffer.capacity();
+    }
+
+    /**
+     * 采集线程数量
+     *
+     * @return 数量
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 正在处理数据的采集线程数量
+     *
+     * @return 数量
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.logs.collect;
+
+import lombok.Getter;
+import org.example.logs.plan.CapturePlan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 采集队列中的槽位对象，创建队列时一次性分配，之后重复使用
+ *
+ * @author 李昆城
+ */
+@Getter
+public class CaptureEvent {
+
+    /**
+     * 采集计划
+     */
+    private CapturePlan plan;
+    /**
+     * 参数列表
+     */
+    private Object[] args;
+    /**
+     * 返回值 可以为null
+     */
+    private Object result;
+    /**
+     * 异常信息 可以为null
+     */
+    private Throwable throwable;
+    /**
+     * 开始执行时间
+     */
+    private long startTime;
+    /**
+     * 截止执行时间
+     */
+    private long endTime;
+    /**
+     * 执行时间（纳秒）
+     */
+    private long durationNanos;
+
+    /**
+     * 不经过采集队列，在调用线程中直接处理时使用
+     *
+     * @param plan          采集计划
+     * @param args          参数列表
+     * @param result        返回值 可以为null
+     * @param throwable     异常信息 可以为null
+     * @param startTime     开始执行时间
+     * @param durationNanos 执行时间（纳秒）
+     * @return 本次调用的数据
+     */
+    public static CaptureEvent of(CapturePlan plan, Object[] args, Object result, Throwable throwable, long startTime, long durationNanos) {
+        CaptureEvent event = new CaptureEvent();
+        event.fill(plan, args, result, throwable, startTime, durationNanos);
+        return event;
+    }
+
+    /**
+     * 写入本次调用的数据
+     */
+    void fill(CapturePlan plan, Object[] args, Object result, Throwable throwable, long startTime, long durationNanos) {
+        this.plan = plan;
+        this.args = args;
+        this.result = result;
+        this.throwable = throwable;
+        this.startTime = startTime;
+        this.endTime = startTime + TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * 清空引用，避免槽位长时间持有请求对象
+     */
+    void clear() {
+        this.plan = null;
+        this.args = null;
+        this.result = null;
+        this.throwable = null;
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.logs.collect;
+
+/**
+ * 采集队列已满时的处理策略
+ *
+ * @author 李昆城
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 阻塞调用线程，直到有空闲槽位，不丢失任何数据
+     */
+    BLOCK,
+    /**
+     * 丢弃新的数据
+     */
+    DROP_NEWEST,
+    /**
+     * 丢弃队列中最旧的数据，保留新的数据；最旧的数据正在被处理时丢弃新的数据
+     */
+    DROP_OLDEST,
+    /**
+     * 队列超过水位线之后按照比例采样，队列满了丢弃新的数据
+     */
+    SAMPLE;
+
+    /**
+     * 根据名称获取策略
+     *
+     * @param name 策略名称，不区分大小写
+     * @return 溢出策略
+     */
+    public static OverflowPolicy of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
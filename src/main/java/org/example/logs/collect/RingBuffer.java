@@ -0,0 +1,148 @@
+package org.example.logs.collect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 有界、无锁的多生产者多消费者环形队列，槽位对象在创建时一次性分配并重复使用
+ * <p>
+ * 每个槽位维护一个序号：序号等于写入位置时表示可写，等于写入位置+1时表示可读，
+ * 消费完成后序号推进一圈（+容量）再次变为可写。生产者和消费者都只通过CAS竞争各自的位置。
+ *
+ * @param <E> 槽位对象类型
+ * @author 李昆城
+ */
+public class RingBuffer<E> {
+
+    /**
+     * 槽位对象
+     */
+    private final Object[] entries;
+    /**
+     * 槽位序号
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * 容量-1，用于取模
+     */
+    private final int mask;
+    /**
+     * 下一个写入位置
+     */
+    private final AtomicLong producerPosition = new AtomicLong();
+    /**
+     * 下一个读取位置
+     */
+    private final AtomicLong consumerPosition = new AtomicLong();
+
+    /**
+     * 创建环形队列
+     *
+     * @param capacity 容量，会向上取整为2的幂
+     * @param factory  槽位对象工厂
+     */
+    public RingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("环形队列容量不能小于2：" + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.entries = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 尝试申请一个可写的槽位
+     *
+     * @return 槽位序号，队列已满返回-1
+     */
+    public long tryClaim() {
+        while (true) {
+            long position = producerPosition.get();
+            long difference = sequences.get(index(position)) - position;
+            if (difference == 0) {
+                if (producerPosition.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (difference < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 发布已写入的槽位，发布之后消费者才能读取
+     *
+     * @param sequence 槽位序号
+     */
+    public void publish(long sequence) {
+        sequences.lazySet(index(sequence), sequence + 1);
+    }
+
+    /**
+     * 尝试申请一个可读的槽位
+     *
+     * @return 槽位序号，没有可读的槽位返回-1
+     */
+    public long tryTake() {
+        while (true) {
+            long position = consumerPosition.get();
+            long difference = sequences.get(index(position)) - (position + 1);
+            if (difference == 0) {
+                if (consumerPosition.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (difference < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 归还已读取的槽位，归还之后生产者才能再次写入
+     *
+     * @param sequence 槽位序号
+     */
+    public void release(long sequence) {
+        sequences.lazySet(index(sequence), sequence + mask + 1);
+    }
+
+    /**
+     * 获取槽位对象
+     *
+     * @param sequence 槽位序号
+     * @return 槽位对象
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[index(sequence)];
+    }
+
+    /**
+     * 当前已申请但是还未被读取的数量，并发情况下只是一个近似值
+     *
+     * @return 队列中的数量
+     */
+    public int size() {
+        long size = producerPosition.get() - consumerPosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.logs.collect;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 环形队列的等待策略，消费者没有数据可读、或者生产者没有槽位可写时使用
+ *
+ * @author 李昆城
+ */
+public interface WaitStrategy {
+
+    /**
+     * 没有进展时等待一次
+     *
+     * @param counter 连续等待的次数，从0开始
+     * @throws InterruptedException 等待时被中断
+     */
+    void idle(int counter) throws InterruptedException;
+
+    /**
+     * 有新的进展，唤醒正在等待的线程
+     */
+    void signalAll();
+
+    /**
+     * 根据名称创建等待策略
+     *
+     * @param name 策略名称，不区分大小写
+     * @return 等待策略
+     */
+    static WaitStrategy of(String name) {
+        return Type.valueOf(name.trim().toUpperCase().replace('-', '_')).create();
+    }
+
+    /**
+     * 等待策略类型
+     */
+    enum Type {
+        /**
+         * 一直自旋，延迟最低，会占满一个cpu
+         */
+        BUSY_SPIN,
+        /**
+         * 自旋一段时间之后让出cpu
+         */
+        YIELDING,
+        /**
+         * 自旋、让出cpu、最后短暂休眠，延迟和cpu占用比较均衡
+         */
+        SLEEPING,
+        /**
+         * 使用锁和条件等待，cpu占用最低
+         */
+        BLOCKING;
+
+        public WaitStrategy create() {
+            switch (this) {
+                case BUSY_SPIN:
+                    return new BusySpin();
+                case YIELDING:
+                    return new Yielding();
+                case SLEEPING:
+                    return new Sleeping();
+                default:
+                    return new Blocking();
+            }
+        }
+    }
+
+    /**
+     * 一直自旋
+     */
+    class BusySpin implements WaitStrategy {
+        @Override
+        public void idle(int counter) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    /**
+     * 自旋一百次之后让出cpu
+     */
+    class Yielding implements WaitStrategy {
+        @Override
+        public void idle(int counter) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter > 100) {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    /**
+     * 自旋一百次，让出cpu一百次，之后每次休眠100微秒
+     */
+    class Sleeping implements WaitStrategy {
+        @Override
+        public void idle(int counter) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter > 200) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            } else if (counter > 100) {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    /**
+     * 锁和条件等待，只有存在等待线程时唤醒方才需要加锁
+     */
+    class Blocking implements WaitStrategy {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void idle(int counter) throws InterruptedException {
+            waiters.incrementAndGet();
+            lock.lock();
+            try {
+                //限时等待，避免在唤醒之后才进入等待而丢失信号
+                notEmpty.await(1, TimeUnit.MILLISECONDS);
+            } finally {
+                lock.unlock();
+                waiters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.logs.index;
+
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * 一条记录的索引信息，写入线程按照记录在文件中的偏移量写入索引文件
+ *
+ * @author 李昆城
+ */
+@Getter
+public final class IndexEntry {
+
+    /**
+     * 完整方法地址
+     */
+    private final String method;
+    /**
+     * 开始时间
+     */
+    private final long startTime;
+    /**
+     * 需要索引的参数，参数名称和参数值交替排列，没有时为null
+     */
+    private final String[] params;
+
+    public IndexEntry(String method, long startTime, String[] params) {
+        this.method = method;
+        this.startTime = startTime;
+        this.params = params;
+    }
+
+    /**
+     * 编码为一行文本，溢出到文件时和记录一起保存
+     *
+     * @return 制表符分隔的文本
+     */
+    public String encode() {
+        StringBuilder text = new StringBuilder(64).append(startTime).append('\t').append(method);
+        if (Objects.nonNull(params)) {
+            for (String param : params) {
+                text.append('\t').append(param);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 从{@link #encode()}的结果还原
+     *
+     * @param text 制表符分隔的文本
+     * @return 索引信息
+     */
+    public static IndexEntry decode(String text) {
+        String[] fields = text.split("\t", -1);
+        String[] params = null;
+        if (fields.length > 2) {
+            params = new String[fields.length - 2];
+            System.arraycopy(fields, 2, params, 0, params.length);
+        }
+        return new IndexEntry(fields[1], Long.parseLong(fields[0]), params);
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.logs.index;
+
+import com.alibaba.fastjson.JSON;
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.LogConfig;
+import org.example.logs.observice.LogEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 日志文件的稀疏索引，写入线程写入记录的同时在同目录的 {文件名}.idx 中追加索引，每行一条，制表符分隔：
+ * <pre>
+ * T 开始时间 偏移量                每隔 log.params.indexInterval 条记录一条，按时间查询时定位扫描范围
+ * M 偏移量 开始时间 方法地址        每条记录一条，按方法查询时直接定位
+ * P 偏移量 开始时间 参数名称 参数值  log.params.indexParams 中的参数，按参数查询时直接定位
+ * </pre>
+ * 偏移量为记录在日志文件中的开始位置，滚动时索引文件随日志文件一起改名
+ *
+ * @author 李昆城
+ */
+@Component
+public class LogIndexer {
+
+    /**
+     * 索引文件后缀
+     */
+    public static final String SUFFIX = ".idx";
+    /**
+     * 索引中参数值的最大长度
+     */
+    private static final int MAX_VALUE_LENGTH = 128;
+
+    /**
+     * 是否写入索引
+     */
+    private final boolean enabled;
+    /**
+     * 时间索引的间隔
+     */
+    private final int interval;
+    /**
+     * 需要索引的参数名称
+     */
+    private final String[] params;
+
+    @Autowired
+    public LogIndexer(LogConfig logConfig) {
+        this.enabled = logConfig.getBoolean(LogConfig.LogConfigKey.index, true);
+        this.interval = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.indexInterval, 64));
+        this.params = Arrays.stream(logConfig.get(LogConfig.LogConfigKey.indexParams, "").split(","))
+                .map(String::trim).filter(StringUtils::isNotEmpty).toArray(String[]::new);
+    }
+
+    /**
+     * 提取一条日志的索引信息
+     *
+     * @param event 日志事件，可以为null
+     * @return 索引信息，没有开启索引时为null
+     */
+    public IndexEntry entry(LogEvent event) {
+        if (!enabled || Objects.isNull(event) || Objects.isNull(event.getStartTime())) {
+            return null;
+        }
+        return new IndexEntry(clean(event.getTargetAddress()), event.getStartTime(), params(event));
+    }
+
+    /**
+     * 追加一条记录的索引
+     *
+     * @param lines        索引内容
+     * @param entry        索引信息
+     * @param offset       记录在文件中的偏移量
+     * @param recordNumber 记录在本次打开文件之后的序号
+     */
+    public void append(StringBuilder lines, IndexEntry entry, long offset, long recordNumber) {
+        long startTime = entry.getStartTime();
+        if (recordNumber % interval == 0) {
+            lines.append("T\t").append(startTime).append('\t').append(offset).append('\n');
+        }
+        lines.append("M\t").append(offset).append('\t').append(startTime).append('\t').append(entry.getMethod()).append('\n');
+        String[] values = entry.getParams();
+        if (Objects.nonNull(values)) {
+            for (int i = 0; i + 1 < values.length; i += 2) {
+                lines.append("P\t").append(offset).append('\t').append(startTime).append('\t')
+                        .append(values[i]).append('\t').append(values[i + 1]).append('\n');
+            }
+        }
+    }
+
+    /**
+     * 提取需要索引的参数，尚未序列化的参数直接读取，已经序列化的参数解析json
+     */
+    private String[] params(LogEvent event) {
+        if (params.length == 0) {
+            return null;
+        }
+        Map<?, ?> values = null;
+        if (event.getParamValue() instanceof Map) {
+            values = (Map<?, ?>) event.getParamValue();
+        } else if (StringUtils.startsWith(event.getParam(), "{")) {
+            try {
+                values = JSON.parseObject(event.getParam());
+            } catch (RuntimeException e) {
+                //截断的参数不是完整的json
+                values = null;
+            }
+        }
+        if (Objects.isNull(values)) {
+            return null;
+        }
+        String[] result = new String[params.length * 2];
+        int size = 0;
+        for (String param : params) {
+            Object value = values.get(param);
+            if (Objects.nonNull(value)) {
+                result[size++] = param;
+                String text = value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                        ? String.valueOf(value) : JSON.toJSONString(value);
+                result[size++] = StringUtils.left(clean(text), MAX_VALUE_LENGTH);
+            }
+        }
+        return size == 0 ? null : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 去掉会破坏索引格式的制表符和换行符
+     */
+    private static String clean(String value) {
+        return Objects.isNull(value) ? "" : StringUtils.replaceChars(value, "\t\r\n", "   ");
+    }
+}
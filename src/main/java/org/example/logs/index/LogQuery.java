@@ -0,0 +1,72 @@
+package org.example.logs.index;
+
+import lombok.Getter;
+
+/**
+ * 日志查询条件，没有设置的条件不参与过滤
+ *
+ * @author 李昆城
+ */
+@Getter
+public class LogQuery {
+
+    /**
+     * 开始时间（包含），毫秒时间戳
+     */
+    private Long from;
+    /**
+     * 截止时间（包含），毫秒时间戳
+     */
+    private Long to;
+    /**
+     * 方法地址，完整地址或者以 .方法名 结尾
+     */
+    private String method;
+    /**
+     * 参数名称，需要在 log.params.indexParams 中
+     */
+    private String paramKey;
+    /**
+     * 参数值
+     */
+    private String paramValue;
+    /**
+     * 持久化地址，为空时使用默认地址
+     */
+    private String path;
+    /**
+     * 最多返回的数量
+     */
+    private Integer limit;
+
+    public LogQuery from(Long from) {
+        this.from = from;
+        return this;
+    }
+
+    public LogQuery to(Long to) {
+        this.to = to;
+        return this;
+    }
+
+    public LogQuery method(String method) {
+        this.method = method;
+        return this;
+    }
+
+    public LogQuery param(String key, String value) {
+        this.paramKey = key;
+        this.paramValue = value;
+        return this;
+    }
+
+    public LogQuery path(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public LogQuery limit(Integer limit) {
+        this.limit = limit;
+        return this;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.logs.index;
+
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.utils.DateUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询已经持久化的日志
+ * <pre>
+ * GET /actuator/logquery?from=&to=&method=&key=&value=&path=&limit=
+ * </pre>
+ * 时间可以是毫秒时间戳或者 yyyy-MM-dd HH:mm:ss，默认查询最近一小时；
+ * method为完整方法地址或者方法名；key、value按 log.params.indexParams 中的参数查询；
+ * path只能是日志的持久化地址或者它的子目录，其他地址返回400。
+ * 查询结果包含调用参数，默认不暴露，需要加入 management.endpoints.web.exposure.include，
+ * 并且放在鉴权或者单独的管理端口之后
+ *
+ * @author 李昆城
+ */
+@Component
+@Endpoint(id = "logquery")
+public class LogQueryEndpoint {
+
+    private final LogQueryService logQueryService;
+
+    @Autowired
+    public LogQueryEndpoint(LogQueryService logQueryService) {
+        this.logQueryService = logQueryService;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> query(@Nullable String from, @Nullable String to, @Nullable String method,
+                                           @Nullable String key, @Nullable String value, @Nullable String path,
+                                           @Nullable Integer limit) {
+        try {
+            return logQueryService.query(new LogQuery().from(time(from)).to(time(to)).method(method)
+                    .param(key, value).path(path).limit(limit));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    private static Long time(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        if (StringUtils.isNumeric(value)) {
+            return Long.parseLong(value);
+        }
+        return DateUtils.stringToDate(value, DateUtils.NOW).getTime();
+    }
+}
@@ -0,0 +1,259 @@
+package org.example.logs.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.LogConfig;
+import org.example.logs.observice.codec.MethodDictionary;
+import org.example.logs.observice.logwrite.impl.RequestLog;
+import org.example.logs.plan.CapturePlanRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 根据索引查询已经持久化的日志
+ * <p>
+ * 按方法或者参数查询时，直接读取索引命中的记录；只按时间查询时，用时间索引找到扫描的开始位置，
+ * 顺序读取到超出截止时间为止。没有索引的文件（关闭索引之前写入的文件）不会被查询。
+ * 查询地址只能是持久化地址（log.params.path）或者注解上配置的持久化地址，以及它们的子目录
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class LogQueryService {
+
+    /**
+     * 默认查询最近一小时
+     */
+    private static final long DEFAULT_RANGE = 60 * 60 * 1000L;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    /**
+     * 记录按完成顺序写入，开始时间不严格递增，时间索引向前多扫描一段
+     */
+    private static final long TIME_SLACK = 60 * 1000L;
+
+    private final RequestLog requestLog;
+    private final LogConfig logConfig;
+    private final CapturePlanRegistry capturePlanRegistry;
+
+    @Autowired
+    public LogQueryService(RequestLog requestLog, LogConfig logConfig, CapturePlanRegistry capturePlanRegistry) {
+        this.requestLog = requestLog;
+        this.logConfig = logConfig;
+        this.capturePlanRegistry = capturePlanRegistry;
+    }
+
+    /**
+     * 查询日志
+     *
+     * @param query 查询条件
+     * @return 按文件顺序排列的记录，每条记录附带所在的文件（file）和偏移量（offset）
+     * @throws IllegalArgumentException 查询地址不在持久化地址之下
+     */
+    public List<Map<String, Object>> query(LogQuery query) {
+        checkPath(query.getPath());
+        long to = Objects.isNull(query.getTo()) ? System.currentTimeMillis() : query.getTo();
+        long from = Objects.isNull(query.getFrom()) ? to - DEFAULT_RANGE : query.getFrom();
+        int limit = Objects.isNull(query.getLimit()) || query.getLimit() <= 0 ? DEFAULT_LIMIT : Math.min(query.getLimit(), MAX_LIMIT);
+        List<Map<String, Object>> records = new ArrayList<>();
+        if (from > to) {
+            return records;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate last = Instant.ofEpochMilli(to).atZone(zone).toLocalDate();
+        for (LocalDate day = Instant.ofEpochMilli(from).atZone(zone).toLocalDate();
+             !day.isAfter(last) && records.size() < limit; day = day.plusDays(1)) {
+            Path directory = Paths.get(requestLog.directoryOf(query.getPath(), day));
+            for (Path index : indexFiles(directory)) {
+                if (records.size() >= limit) {
+                    break;
+                }
+                try {
+                    queryFile(directory, index, query, from, to, limit, records);
+                } catch (IOException e) {
+                    log.error("查询日志文件：{} 发生错误：{}", index, e.getMessage());
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 校验查询地址，为空时查询默认的持久化地址
+     *
+     * @param path 查询地址
+     */
+    private void checkPath(String path) {
+        if (StringUtils.isBlank(path) || logConfig.isUnderPath(path)) {
+            return;
+        }
+        for (String root : capturePlanRegistry.paths()) {
+            if (LogConfig.isUnder(path, root)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("查询地址不在日志持久化地址之下：" + path);
+    }
+
+    private void queryFile(Path directory, Path index, LogQuery query, long from, long to, int limit,
+                           List<Map<String, Object>> records) throws IOException {
+        String name = index.getFileName().toString();
+        Path file = directory.resolve(name.substring(0, name.length() - LogIndexer.SUFFIX.length()));
+        if (!Files.exists(file)) {
+            //滚动之后已经压缩
+            file = file.resolveSibling(file.getFileName() + ".gz");
+            if (!Files.exists(file)) {
+                return;
+            }
+        }
+        boolean binary = "binary".equals(requestLog.getLogCodec().name());
+        Map<Integer, String> methods = binary ? MethodDictionary.read(directory.resolve(MethodDictionary.FILE_NAME)) : null;
+        boolean filtered = StringUtils.isNotEmpty(query.getMethod()) || StringUtils.isNotEmpty(query.getParamKey());
+        try (RecordReader reader = new RecordReader(file, binary, methods)) {
+            if (filtered) {
+                for (long offset : offsets(index, query, from, to)) {
+                    if (records.size() >= limit) {
+                        return;
+                    }
+                    reader.seek(offset);
+                    add(records, reader.next(), file, offset);
+                }
+                return;
+            }
+            reader.seek(startOffset(index, from));
+            while (records.size() < limit) {
+                Map<String, Object> record = reader.next();
+                if (Objects.isNull(record)) {
+                    return;
+                }
+                Object startTime = record.get("startTime");
+                if (startTime instanceof Long) {
+                    long time = (Long) startTime;
+                    if (time > to + TIME_SLACK) {
+                        return;
+                    }
+                    if (time < from || time > to) {
+                        continue;
+                    }
+                }
+                add(records, record, file, reader.recordOffset());
+            }
+        }
+    }
+
+    private static void add(List<Map<String, Object>> records, Map<String, Object> record, Path file, long offset) {
+        if (Objects.isNull(record)) {
+            return;
+        }
+        record.put("file", file.toString());
+        record.put("offset", offset);
+        records.add(record);
+    }
+
+    /**
+     * 方法索引和参数索引命中的偏移量，两个条件都有时取交集
+     */
+    private static Set<Long> offsets(Path index, LogQuery query, long from, long to) throws IOException {
+        String method = query.getMethod();
+        String key = query.getParamKey();
+        boolean byMethod = StringUtils.isNotEmpty(method);
+        boolean byParam = StringUtils.isNotEmpty(key);
+        Set<Long> methodOffsets = new TreeSet<>();
+        Set<Long> paramOffsets = new TreeSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = StringUtils.splitPreserveAllTokens(line, '\t');
+                boolean methodLine = byMethod && columns.length >= 4 && "M".equals(columns[0]);
+                boolean paramLine = byParam && columns.length >= 5 && "P".equals(columns[0]);
+                if (!methodLine && !paramLine) {
+                    continue;
+                }
+                long offset;
+                long startTime;
+                try {
+                    offset = Long.parseLong(columns[1]);
+                    startTime = Long.parseLong(columns[2]);
+                } catch (NumberFormatException e) {
+                    //写入一半的行
+                    continue;
+                }
+                if (startTime < from || startTime > to) {
+                    continue;
+                }
+                if (methodLine && (method.equals(columns[3]) || columns[3].endsWith("." + method))) {
+                    methodOffsets.add(offset);
+                } else if (paramLine && key.equals(columns[3])
+                        && (Objects.isNull(query.getParamValue()) || query.getParamValue().equals(columns[4]))) {
+                    paramOffsets.add(offset);
+                }
+            }
+        }
+        if (byMethod && byParam) {
+            methodOffsets.retainAll(paramOffsets);
+            return methodOffsets;
+        }
+        return byMethod ? methodOffsets : paramOffsets;
+    }
+
+    /**
+     * 时间索引中开始时间早于 from - TIME_SLACK 的最后一个位置
+     */
+    private static long startOffset(Path index, long from) throws IOException {
+        long start = 0;
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("T\t")) {
+                    continue;
+                }
+                String[] columns = StringUtils.splitPreserveAllTokens(line, '\t');
+                try {
+                    if (columns.length >= 3 && Long.parseLong(columns[1]) < from - TIME_SLACK) {
+                        start = Long.parseLong(columns[2]);
+                    }
+                } catch (NumberFormatException e) {
+                    //写入一半的行
+                    log.debug("时间索引：{} 中存在无效的行：{}", index, line);
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 目录中的索引文件，按文件名排序，滚动之后的文件在前
+     */
+    private static List<Path> indexFiles(Path directory) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + LogIndexer.SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.error("读取目录：{} 发生错误：{}", directory, e.getMessage());
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
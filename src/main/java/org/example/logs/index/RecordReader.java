@@ -0,0 +1,261 @@
+package org.example.logs.index;
+
+import org.example.logs.observice.codec.LogDecoder;
+import org.example.logs.observice.codec.TextLogCodec;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 从索引给出的偏移量开始读取日志记录，支持文本和二进制格式，滚动压缩的文件只能向后跳过
+ *
+ * @author 李昆城
+ */
+class RecordReader implements Closeable {
+
+    /**
+     * 文本格式每一行的标签 -> 字段名称
+     */
+    private static final String[][] LABELS = {
+            {"目标方法：", "targetAddress"},
+            {"参数信息：", "param"},
+            {"返回值：", "result"},
+            {"错误消息：", "errorMsg"},
+            {"部分错误地址：", "errorLocation"},
+            {"执行时间（毫秒）：", "runTime"}
+    };
+
+    private final Path file;
+    private final boolean binary;
+    private final boolean compressed;
+    /**
+     * 二进制格式的方法字典
+     */
+    private final Map<Integer, String> methods;
+    private FileChannel channel;
+    private CountingInputStream in;
+    /**
+     * 上一次读取的记录的开始位置
+     */
+    private long recordOffset;
+
+    /**
+     * @param file    日志文件
+     * @param binary  是否为二进制格式
+     * @param methods 二进制格式的方法字典
+     */
+    RecordReader(Path file, boolean binary, Map<Integer, String> methods) {
+        this.file = file;
+        this.binary = binary;
+        this.compressed = file.getFileName().toString().endsWith(".gz");
+        this.methods = methods;
+    }
+
+    /**
+     * 定位到记录开始的位置
+     *
+     * @param offset 偏移量
+     * @throws IOException 读取失败
+     */
+    void seek(long offset) throws IOException {
+        if (Objects.nonNull(in) && offset == in.position) {
+            return;
+        }
+        if (!compressed) {
+            if (Objects.isNull(channel)) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            channel.position(offset);
+            in = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024), offset);
+            return;
+        }
+        //压缩文件只能从头解压
+        if (Objects.isNull(in) || offset < in.position) {
+            close();
+            in = new CountingInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 64 * 1024), 64 * 1024), 0);
+        }
+        while (in.position < offset) {
+            if (in.skip(offset - in.position) <= 0 && in.read() < 0) {
+                throw new IOException(file + " 偏移量超出文件长度：" + offset);
+            }
+        }
+    }
+
+    /**
+     * 上一次读取的记录的开始位置，文本格式跳过了记录之间的空行
+     *
+     * @return 偏移量
+     */
+    long recordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * 读取当前位置的一条记录
+     *
+     * @return 字段名称 -> 字段值，没有更多记录时为null
+     * @throws IOException 读取失败
+     */
+    Map<String, Object> next() throws IOException {
+        if (Objects.isNull(in)) {
+            seek(0);
+        }
+        return binary ? nextBinary() : nextText();
+    }
+
+    private Map<String, Object> nextBinary() throws IOException {
+        recordOffset = in.position;
+        ByteBuffer body = LogDecoder.readBody(in);
+        return Objects.isNull(body) ? null : LogDecoder.readRecord(body, methods);
+    }
+
+    private Map<String, Object> nextText() throws IOException {
+        String line;
+        do {
+            recordOffset = in.position;
+            line = readLine();
+            if (Objects.isNull(line)) {
+                return null;
+            }
+        } while (!TextLogCodec.START.equals(line));
+        Map<String, Object> record = new LinkedHashMap<>(16);
+        String field = null;
+        String timeLine = null;
+        while (Objects.nonNull(line = readLine()) && !TextLogCodec.END.equals(line)) {
+            String label = label(line);
+            if (Objects.nonNull(label)) {
+                field = label;
+                record.put(field, line.substring(labelOf(field).length()));
+            } else if (Objects.isNull(field) || "runTime".equals(field)) {
+                //开始时间在所有标签之前，截止时间在执行时间之后
+                timeLine = line;
+                record.put(Objects.isNull(field) ? "startTime" : "endTime", time(timeLine));
+            } else {
+                //错误消息等字段中的换行
+                record.put(field, record.get(field) + "\n" + line);
+            }
+        }
+        Object runTime = record.get("runTime");
+        if (Objects.nonNull(runTime)) {
+            record.put("runTime", Long.parseLong(String.valueOf(runTime).trim()));
+        }
+        return record;
+    }
+
+    /**
+     * 时间行的时间戳，格式为 yyyy-MM-dd HH:mm:ss  时间戳
+     */
+    private static Long time(String line) {
+        try {
+            return Long.parseLong(line.substring(line.lastIndexOf(' ') + 1).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String label(String line) {
+        for (String[] label : LABELS) {
+            if (line.startsWith(label[0])) {
+                return label[1];
+            }
+        }
+        return null;
+    }
+
+    private static String labelOf(String field) {
+        for (String[] label : LABELS) {
+            if (label[1].equals(field)) {
+                return label[0];
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 按UTF-8读取一行，去掉行尾的换行符
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            line.write(b);
+        }
+        if (b < 0 && line.size() == 0) {
+            return null;
+        }
+        String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (Objects.nonNull(in)) {
+            in.close();
+            in = null;
+        }
+        if (Objects.nonNull(channel)) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * 记录已经读取的位置
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long position;
+
+        private CountingInputStream(InputStream in, long position) {
+            super(in);
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        /**
+         * 文件通道由外部关闭，重新定位时不能关闭
+         */
+        @Override
+        public void close() {
+        }
+    }
+}
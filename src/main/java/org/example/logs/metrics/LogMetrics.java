@@ -0,0 +1,209 @@
+package org.example.logs.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.logs.collect.CaptureCollector;
+import org.example.logs.observice.logwrite.SpillFile;
+import org.example.logs.span.SpanRecorder;
+import org.example.logs.tail.LiveTail;
+import org.example.logs.plan.CapturePlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志收集链路的监控指标，通过actuator的 /actuator/metrics 查看
+ * <ul>
+ * <li>log.collector.queue.size / log.collector.queue.capacity：采集队列的堆积数量和容量</li>
+ * <li>log.collector.threads / log.collector.threads.active：采集线程数量和正在处理的线程数量</li>
+ * <li>log.events.published / log.events.dropped：进入采集队列和被溢出策略丢弃的数量</li>
+ * <li>log.events.persisted：写入文件的数量，按写入实现区分（sink）</li>
+ * <li>log.events.spilled / log.writer.spill.size：溢出到文件的数量、溢出文件中没有读回的字节数</li>
+ * <li>log.serialization：打印参数、返回值时序列化的耗时，只持久化时序列化计入log.write</li>
+ * <li>log.write / log.flush：编码并交给写入实现的耗时、批量写入文件的耗时，按写入实现区分（sink）</li>
+ * <li>log.encoder.queue.size / log.writer.queue.size：等待编码、等待批量写入的数量，批量写入按分片区分（shard）</li>
+ * <li>log.tail.subscribers / log.tail.skipped：实时日志的订阅数量、订阅者落后而跳过的数量</li>
+ * <li>log.span.queue.size / log.span.dropped：等待写入的调用链数量、队列满了丢弃的调用链数量</li>
+ * <li>log.method：每个方法的调用次数和执行时间，按是否发生异常区分（outcome）</li>
+ * </ul>
+ *
+ * @author 李昆城
+ */
+@Component
+public class LogMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 序列化耗时
+     */
+    private final Timer serializationTimer;
+    /**
+     * 方法地址 -> 正常返回的执行时间
+     */
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+    /**
+     * 方法地址 -> 发生异常的执行时间
+     */
+    private final Map<String, Timer> errorTimers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LogMetrics(MeterRegistry meterRegistry, CaptureCollector captureCollector) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("log.collector.queue.size", captureCollector, CaptureCollector::getQueueSize)
+                .description("采集队列中等待处理的数量").register(meterRegistry);
+        Gauge.builder("log.collector.queue.capacity", captureCollector, CaptureCollector::getCapacity)
+                .description("采集队列容量").register(meterRegistry);
+        Gauge.builder("log.collector.threads", captureCollector, CaptureCollector::getThreads)
+                .description("采集线程数量").register(meterRegistry);
+        Gauge.builder("log.collector.threads.active", captureCollector, CaptureCollector::getActiveCount)
+                .description("正在处理数据的采集线程数量").register(meterRegistry);
+        FunctionCounter.builder("log.events.published", captureCollector, CaptureCollector::getPublishedCount)
+                .description("进入采集队列的数量").register(meterRegistry);
+        FunctionCounter.builder("log.events.dropped", captureCollector, CaptureCollector::getDroppedCount)
+                .description("被溢出策略丢弃的数量").register(meterRegistry);
+        this.serializationTimer = Timer.builder("log.serialization")
+                .description("参数、返回值序列化耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次序列化耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void serialization(long nanos) {
+        serializationTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次方法调用
+     *
+     * @param plan          采集计划
+     * @param error         是否发生异常
+     * @param durationNanos 执行时间（纳秒）
+     */
+    public void method(CapturePlan plan, boolean error, long durationNanos) {
+        Map<String, Timer> timers = error ? errorTimers : successTimers;
+        String method = plan.getFullMethodPath();
+        Timer timer = timers.get(method);
+        if (Objects.isNull(timer)) {
+            timer = timers.computeIfAbsent(method, key -> Timer.builder("log.method")
+                    .description("方法调用次数和执行时间")
+                    .tag("method", key)
+                    .tag("outcome", error ? "error" : "success")
+                    .register(meterRegistry));
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 写入实现的编码和提交耗时
+     *
+     * @param sink 写入实现的名称
+     * @return 计时器
+     */
+    public Timer writeTimer(String sink) {
+        return Timer.builder("log.write")
+                .description("编码并交给写入实现的耗时")
+                .tag("sink", sink)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * 写入实现批量写入文件的耗时
+     *
+     * @param sink 写入实现的名称
+     * @return 计时器
+     */
+    public Timer flushTimer(String sink) {
+        return Timer.builder("log.flush")
+                .description("批量写入文件的耗时")
+                .tag("sink", sink)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * 写入文件的数量
+     *
+     * @param sink 写入实现的名称
+     * @return 计数器
+     */
+    public Counter persistedCounter(String sink) {
+        return Counter.builder("log.events.persisted")
+                .description("写入文件的数量")
+                .tag("sink", sink)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 溢出到文件的数量
+     *
+     * @param sink 写入实现的名称
+     * @return 计数器
+     */
+    public Counter spilledCounter(String sink) {
+        return Counter.builder("log.events.spilled")
+                .description("写入队列积压时溢出到文件的数量")
+                .tag("sink", sink)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 监控溢出文件中没有读回的字节数
+     *
+     * @param spillFile 溢出文件
+     * @param shard     分片
+     */
+    public void spill(SpillFile spillFile, String shard) {
+        Gauge.builder("log.writer.spill.size", spillFile, SpillFile::size)
+                .description("溢出文件中没有读回的字节数").baseUnit("bytes").tag("shard", shard).register(meterRegistry);
+    }
+
+    /**
+     * 监控实时日志
+     *
+     * @param liveTail 实时日志
+     */
+    public void tail(LiveTail liveTail) {
+        Gauge.builder("log.tail.subscribers", liveTail, LiveTail::getSubscriberCount)
+                .description("实时日志的订阅数量").register(meterRegistry);
+        FunctionCounter.builder("log.tail.skipped", liveTail, LiveTail::getSkippedCount)
+                .description("实时日志订阅者落后而跳过的数量").register(meterRegistry);
+    }
+
+    /**
+     * 监控调用链记录
+     *
+     * @param spanRecorder 调用链记录
+     * @param queue        等待写入的调用链
+     */
+    public void span(SpanRecorder spanRecorder, Collection<?> queue) {
+        queue("log.span.queue.size", queue);
+        FunctionCounter.builder("log.span.dropped", spanRecorder, SpanRecorder::getDroppedCount)
+                .description("调用链队列满了丢弃的数量").register(meterRegistry);
+    }
+
+    /**
+     * 监控流水线中一个队列的堆积数量
+     *
+     * @param name  指标名称
+     * @param queue 队列
+     * @param tags  标签，键值交替
+     */
+    public void queue(String name, Collection<?> queue, String... tags) {
+        Gauge.builder(name, queue, Collection::size)
+                .description("队列中等待处理的数量").tags(tags).register(meterRegistry);
+    }
+}
@@ -1,8 +1,11 @@
 package org.example.logs.observice;
 
 import lombok.Setter;
+import org.example.logs.observice.logwrite.Durability;
 import org.springframework.context.ApplicationEvent;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 持久化日志参数传递对象
  *
@@ -35,10 +38,18 @@ public class LogEvent extends ApplicationEvent {
      * 参数信息
      */
     private String param;
+    /**
+     * 尚未序列化的参数信息，param为null时由编码格式直接序列化到记录缓冲区
+     */
+    private Object paramValue;
     /**
      * 日志返回值
      */
     private String result;
+    /**
+     * 尚未序列化的返回值，result为null时由编码格式直接序列化到记录缓冲区
+     */
+    private Object resultValue;
     /**
      * 错误消息
      */
@@ -55,11 +66,25 @@ public class LogEvent extends ApplicationEvent {
      * 截止时间
      */
     private Long endTime;
+    /**
+     * 测量的执行时间（纳秒），开始和截止时间只精确到毫秒
+     */
+    private Long durationNanos;
     /**
      * 持久化地址，不传递则使用默认值
      */
     private String persistenceAddress;
 
+    /**
+     * 持久化级别，为null时使用全局配置
+     */
+    private Durability durability;
+
+    /**
+     * 写入磁盘之后完成，只有SYNC级别需要等待，其他级别为null
+     */
+    private CompletableFuture<Void> persisted;
+
 
     public LogEvent targetAddress(String targetAddress) {
         this.setTargetAddress(targetAddress);
@@ -71,11 +96,21 @@ public class LogEvent extends ApplicationEvent {
         return this;
     }
 
+    public LogEvent paramValue(Object paramValue) {
+        this.setParamValue(paramValue);
+        return this;
+    }
+
     public LogEvent result(String result) {
         this.setResult(result);
         return this;
     }
 
+    public LogEvent resultValue(Object resultValue) {
+        this.setResultValue(resultValue);
+        return this;
+    }
+
     public LogEvent errorMsg(String errorMsg) {
         this.setErrorMsg(errorMsg);
         return this;
@@ -96,35 +131,58 @@ public class LogEvent extends ApplicationEvent {
         return this;
     }
 
+    public LogEvent durationNanos(Long durationNanos) {
+        this.setDurationNanos(durationNanos);
+        return this;
+    }
+
     public LogEvent persistenceAddress(String persistenceAddress) {
         this.setPersistenceAddress(persistenceAddress);
         return this;
     }
 
 
+    public LogEvent durability(Durability durability) {
+        this.setDurability(durability);
+        return this;
+    }
+
+    public LogEvent persisted(CompletableFuture<Void> persisted) {
+        this.setPersisted(persisted);
+        return this;
+    }
+
     @Override
     public Object getSource() {
         return source;
     }
 
     public String getTargetAddress() {
-        return "目标方法："+targetAddress;
+        return targetAddress;
     }
 
     public String getParam() {
-        return "参数信息："+param;
+        return param;
+    }
+
+    public Object getParamValue() {
+        return paramValue;
     }
 
     public String getResult() {
-        return "返回值："+result;
+        return result;
+    }
+
+    public Object getResultValue() {
+        return resultValue;
     }
 
     public String getErrorMsg() {
-        return "错误消息："+errorMsg;
+        return errorMsg;
     }
 
     public String getErrorLocation() {
-        return "部分错误地址："+errorLocation;
+        return errorLocation;
     }
 
     public Long getStartTime() {
@@ -135,7 +193,19 @@ public class LogEvent extends ApplicationEvent {
         return endTime;
     }
 
+    public Long getDurationNanos() {
+        return durationNanos;
+    }
+
     public String getPersistenceAddress() {
         return persistenceAddress;
     }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public CompletableFuture<Void> getPersisted() {
+        return persisted;
+    }
 }
@@ -1,16 +1,17 @@
 package org.example.logs.observice;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.stereotype.Component;
 
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * 日志收集器
+ * 日志收集器，默认交给{@link LogPipeline}异步编码和持久化，
+ * log.params.eventDispatch=spring 时通过spring事件发布，由{@link LogListener}在发布线程中写入
  *
  * @author 李昆城
  */
@@ -18,12 +19,22 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 @Component
 public class LogEventPublisher implements ApplicationEventPublisherAware {
 
-
+    private final LogPipeline logPipeline;
     /**
-     * 任务列表，无锁的线程安全并发队列
+     * 是否通过spring事件发布
      */
-    private final Queue<LogEvent> taskList = new ConcurrentLinkedQueue<>();
+    private final boolean springEvents;
 
+    @Autowired
+    public LogEventPublisher(LogPipeline logPipeline, LogConfig logConfig) {
+        this.logPipeline = logPipeline;
+        String dispatch = logConfig.get(LogConfig.LogConfigKey.eventDispatch, "pipeline");
+        if (!"pipeline".equals(dispatch) && !"spring".equals(dispatch)) {
+            throw new IllegalStateException("不存在的日志事件分发方式：" + dispatch + "，可选：pipeline、spring");
+        }
+        this.springEvents = "spring".equals(dispatch);
+        log.info("日志事件分发方式：{}", dispatch);
+    }
 
     /**
      * 设置当前的事件发布器
@@ -41,25 +52,19 @@ public class LogEventPublisher implements ApplicationEventPublisherAware {
     private ApplicationEventPublisher applicationEventPublisher;
 
     /**
-     * 新开一个线程发布一个配送任务
+     * 发布一个持久化任务
      *
-     * @param logEvent 配送任务参数对象
+     * @param logEvent 持久化任务参数对象
      */
     public void publishEvent(LogEvent logEvent) {
         if (Objects.isNull(logEvent)) {
             return;
         }
-        //添加一个任务，如果添加成功，则返回true，否则队列已满
-        boolean offer = taskList.offer(logEvent);
-        if (!offer) {
-            log.warn("队列已满，该任务无法添加持久化任务");
-        }
-        //获取到最旧的一个任务
-        LogEvent task = taskList.poll();
-        //如果不是空，则推送一个任务。
-        if (Objects.nonNull(task)) {
+        if (springEvents) {
             applicationEventPublisher.publishEvent(logEvent);
+            return;
         }
+        logPipeline.submit(logEvent);
     }
 
 }
@@ -1,17 +1,13 @@
 package org.example.logs.observice;
 
 import lombok.extern.slf4j.Slf4j;
-import org.example.logs.observice.logwrite.impl.RequestLog;
-import org.example.logs.utils.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
-import java.util.Date;
-
 
 /**
- * 日志任务实现监听者
+ * 日志任务实现监听者，兼容通过spring事件发布的{@link LogEvent}，在发布线程中编码并写入
  *
  * @author 李昆城
  */
@@ -19,11 +15,11 @@ import java.util.Date;
 @Component
 public class LogListener implements ApplicationListener<LogEvent> {
 
-    private final RequestLog requestLog;
+    private final LogPipeline logPipeline;
 
     @Autowired
-    public LogListener(RequestLog requestLog) {
-        this.requestLog = requestLog;
+    public LogListener(LogPipeline logPipeline) {
+        this.logPipeline = logPipeline;
     }
 
     /**
@@ -33,24 +29,8 @@ public class LogListener implements ApplicationListener<LogEvent> {
      */
     @Override
     public void onApplicationEvent(LogEvent event) {
-        String targetAddress = event.getTargetAddress();
-        String param = event.getParam();
-        String result = event.getResult();
-        String errorMsg = event.getErrorMsg();
-        String errorLocation = event.getErrorLocation();
-        Long startTime = event.getStartTime();
-        Long endTime = event.getEndTime();
-        String persistenceAddress = event.getPersistenceAddress();
-        //开始时间、截止时间
-        String start = DateUtils.dateToString(new Date(startTime), DateUtils.NOW) + "  " + startTime;
-        String end = DateUtils.dateToString(new Date(endTime), DateUtils.NOW) + "  " + endTime;
-        //运行时间
-        long runTime = endTime - startTime;
-        String runTimeString = "执行时间（毫秒）：" + runTime;
-        //持久化消息
-        String[] msg = new String[]{start, targetAddress, param, result, errorMsg, errorLocation, runTimeString, end};
-        //纪录请求日志
-        requestLog.write(msg, persistenceAddress);
+        //纪录请求日志，按照配置的格式编码
+        logPipeline.write(event);
     }
 
 
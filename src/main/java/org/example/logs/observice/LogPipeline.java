@@ -0,0 +1,198 @@
+package org.example.logs.observice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.logwrite.LogWrite;
+import org.example.logs.tail.LiveTail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志处理流水线的编码阶段
+ * <p>
+ * 采集阶段（{@link org.example.logs.collect.CaptureCollector}）产生的日志事件放入有界队列，
+ * 编码线程批量取出，编码之后交给持久化阶段（写入实现自己的写入线程）。每个阶段有自己的线程和配置，
+ * 队列满了会阻塞采集线程，最终由采集队列的溢出策略处理。编码之前同时放入实时日志（{@link LiveTail}）
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class LogPipeline {
+
+    /**
+     * 线程名称后缀
+     */
+    private static int threadInitNumber;
+
+    /**
+     * 获取线程后缀名称
+     *
+     * @return 线程后缀
+     */
+    private static synchronized int nextThreadNum() {
+        return threadInitNumber++;
+    }
+
+    /**
+     * 使用的写入实现
+     */
+    private final LogWrite logWrite;
+    /**
+     * 实时日志
+     */
+    private final LiveTail liveTail;
+    /**
+     * 等待编码的日志事件
+     */
+    private final BlockingQueue<LogEvent> queue;
+    /**
+     * 编码线程数量
+     */
+    private final int threads;
+    /**
+     * 每次最多取出的数量
+     */
+    private final int batchSize;
+    /**
+     * 编码线程
+     */
+    private final List<Thread> encoders = new ArrayList<>();
+    /**
+     * 关闭时等待编码完剩余事件的最长时间（纳秒）
+     */
+    private final long shutdownTimeoutNanos;
+
+    private volatile boolean running;
+
+    @Autowired
+    public LogPipeline(Map<String, LogWrite> logWrites, LogConfig logConfig, LogMetrics logMetrics,
+                       LiveTail liveTail) {
+        String writer = logConfig.get(LogConfig.LogConfigKey.writer, "requestLog");
+        this.logWrite = logWrites.get(writer);
+        if (Objects.isNull(logWrite)) {
+            throw new IllegalStateException("不存在的日志写入实现：" + writer + "，可选：" + logWrites.keySet());
+        }
+        this.liveTail = liveTail;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.encoderQueueSize, 8192)));
+        this.threads = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.encoderThreads, 1));
+        this.batchSize = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.encoderBatchSize, 64));
+        this.shutdownTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, logConfig.getLong(LogConfig.LogConfigKey.shutdownTimeout, 10000)));
+        logMetrics.queue("log.encoder.queue.size", queue);
+        log.info("日志写入实现：{}，编码线程：{}", writer, threads);
+    }
+
+    /**
+     * 启动编码线程
+     */
+    @PostConstruct
+    public synchronized void start() {
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            Thread encoder = new Thread(this::run, "log_encode:" + nextThreadNum());
+            encoder.setDaemon(true);
+            encoder.start();
+            encoders.add(encoder);
+        }
+    }
+
+    /**
+     * 停止编码线程，编码完队列中剩余的事件之后退出
+     */
+    @PreDestroy
+    public void stop() {
+        drain(System.nanoTime() + shutdownTimeoutNanos);
+    }
+
+    /**
+     * 之后提交的事件在调用线程中写入，等待编码线程处理完队列中剩余的事件，最多等到截止时间，
+     * 最后把写入实现内存中的内容交给持久化阶段
+     *
+     * @param deadline 截止时间（{@link System#nanoTime()}）
+     */
+    public synchronized void drain(long deadline) {
+        running = false;
+        try {
+            for (Thread encoder : encoders) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(encoder, remaining);
+                }
+                if (encoder.isAlive()) {
+                    log.warn("日志编码线程：{} 在关闭超时之前没有处理完，剩余：{}", encoder.getName(), queue.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        encoders.clear();
+        logWrite.flush();
+    }
+
+    /**
+     * 提交一个日志事件，队列满了会阻塞调用线程；流水线已经停止时直接在调用线程中写入
+     *
+     * @param event 日志事件
+     */
+    public void submit(LogEvent event) {
+        if (!running) {
+            write(event);
+            return;
+        }
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("提交日志编码任务被中断：{}", event.getTargetAddress());
+        }
+    }
+
+    /**
+     * 在调用线程中编码并交给写入实现
+     *
+     * @param event 日志事件
+     */
+    public void write(LogEvent event) {
+        liveTail.offer(event);
+        logWrite.write(event, event.getPersistenceAddress());
+    }
+
+    /**
+     * 编码线程循环，每次批量取出
+     */
+    private void run() {
+        List<LogEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LogEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            for (LogEvent event : batch) {
+                try {
+                    write(event);
+                } catch (RuntimeException e) {
+                    log.error("日志编码发生错误：{}", e.getMessage(), e);
+                }
+            }
+            batch.clear();
+        }
+    }
+}
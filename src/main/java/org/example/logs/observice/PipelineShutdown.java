@@ -0,0 +1,86 @@
+package org.example.logs.observice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.collect.CaptureCollector;
+import org.example.logs.observice.logwrite.GroupCommitWriter;
+import org.example.logs.observice.logwrite.impl.RollupLog;
+import org.example.logs.span.SpanRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 关闭spring容器时按照采集、编码、汇总和调用链、写入的顺序排空流水线，所有阶段共用一个截止时间
+ * <p>
+ * 在销毁bean之前执行，各个阶段自己的{@link javax.annotation.PreDestroy}方法之后不会再有剩余的数据
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class PipelineShutdown implements SmartLifecycle {
+
+    private final CaptureCollector captureCollector;
+    private final LogPipeline logPipeline;
+    private final GroupCommitWriter groupCommitWriter;
+    private final RollupLog rollupLog;
+    private final SpanRecorder spanRecorder;
+    /**
+     * 排空流水线的最长时间（纳秒）
+     */
+    private final long shutdownTimeoutNanos;
+
+    private volatile boolean running;
+
+    @Autowired
+    public PipelineShutdown(CaptureCollector captureCollector, LogPipeline logPipeline,
+                            GroupCommitWriter groupCommitWriter, RollupLog rollupLog, SpanRecorder spanRecorder,
+                            LogConfig logConfig) {
+        this.captureCollector = captureCollector;
+        this.logPipeline = logPipeline;
+        this.groupCommitWriter = groupCommitWriter;
+        this.rollupLog = rollupLog;
+        this.spanRecorder = spanRecorder;
+        this.shutdownTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, logConfig.getLong(LogConfig.LogConfigKey.shutdownTimeout, 10000)));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * 依次排空采集队列、编码队列，写出汇总日志最后的时间段和剩余的调用链，最后排空写入队列
+     */
+    @Override
+    public void stop() {
+        long start = System.nanoTime();
+        long deadline = start + shutdownTimeoutNanos;
+        captureCollector.drain(deadline);
+        logPipeline.drain(deadline);
+        //汇总日志和调用链通过批量提交写入器写出，写入线程停止之后提交的内容会被丢弃
+        rollupLog.drain();
+        spanRecorder.drain(deadline);
+        groupCommitWriter.drain(deadline);
+        running = false;
+        log.info("日志流水线已经排空，用时（毫秒）：{}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 最先停止，在其他生命周期组件和bean销毁之前排空
+     *
+     * @return 阶段
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+}
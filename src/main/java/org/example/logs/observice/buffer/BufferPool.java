@@ -0,0 +1,88 @@
+package org.example.logs.observice.buffer;
+
+import org.example.logs.LogConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 记录缓冲区池，按1KB、4KB、16KB、64KB分级复用，超过64KB的记录单独分配，不回收
+ * <p>
+ * 编码器从池中取出缓冲区，写入器写完之后归还
+ *
+ * @author 李昆城
+ */
+@Component
+public class BufferPool {
+
+    /**
+     * 各级缓冲区的容量
+     */
+    private static final int[] SIZES = {1024, 4 * 1024, 16 * 1024, 64 * 1024};
+
+    /**
+     * 各级空闲的缓冲区
+     */
+    private final BlockingQueue<ByteBuffer>[] pools;
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public BufferPool(LogConfig logConfig) {
+        int poolSize = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.bufferPoolSize, 128));
+        this.pools = new BlockingQueue[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            pools[i] = new ArrayBlockingQueue<>(poolSize);
+        }
+    }
+
+    /**
+     * 取出一个缓冲区
+     *
+     * @param minCapacity 最小容量
+     * @return 已经清空的缓冲区，容量不小于minCapacity
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int level = level(minCapacity);
+        if (level < 0) {
+            return ByteBuffer.allocate(minCapacity);
+        }
+        ByteBuffer buffer = pools[level].poll();
+        return Objects.nonNull(buffer) ? buffer : ByteBuffer.allocate(SIZES[level]);
+    }
+
+    /**
+     * 归还缓冲区，池满了或者不是池中规格的缓冲区直接丢弃
+     *
+     * @param buffer 缓冲区
+     */
+    public void release(ByteBuffer buffer) {
+        if (Objects.isNull(buffer) || buffer.isDirect() || buffer.isReadOnly()) {
+            return;
+        }
+        for (int i = 0; i < SIZES.length; i++) {
+            if (buffer.capacity() == SIZES[i]) {
+                buffer.clear();
+                pools[i].offer(buffer);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 能容纳指定容量的最小级别
+     *
+     * @return 级别，超过最大级别返回-1
+     */
+    private static int level(int capacity) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (capacity <= SIZES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,286 @@
+package org.example.logs.observice.buffer;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 把一条记录直接写入池中的缓冲区，容量不够时换成更大一级的缓冲区
+ * <p>
+ * 字符串按UTF-8逐个字符编码写入，不产生中间的字符串和字节数组
+ *
+ * @author 李昆城
+ */
+public final class RecordOutput extends OutputStream {
+
+    private final BufferPool bufferPool;
+    private ByteBuffer buffer;
+    /**
+     * 未配对的高位代理字符
+     */
+    private char highSurrogate;
+
+    public RecordOutput(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        this.buffer = bufferPool.acquire(1024);
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) {
+        ensure(len);
+        buffer.put(bytes, off, len);
+    }
+
+    /**
+     * 按UTF-8写入字符串，与{@link #utf8Length(CharSequence)}的结果一致
+     *
+     * @param value 字符串，null不写入
+     */
+    public void writeUtf8(CharSequence value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            writeUtf8(value.charAt(i));
+        }
+        endUtf8();
+    }
+
+    /**
+     * 按UTF-8写入一个字符，代理对在低位字符到达时一起写入。
+     * 与{@link String#getBytes(java.nio.charset.Charset)}相同，不成对的代理字符写为问号
+     *
+     * @param c 字符
+     * @return 写入的字节数
+     */
+    public int writeUtf8(char c) {
+        int written = 0;
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ensure(4);
+                buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+                return 4;
+            }
+            //高位代理字符后面不是低位代理字符
+            written = putByte((byte) '?');
+        }
+        if (c < 0x80) {
+            return written + putByte((byte) c);
+        }
+        if (c < 0x800) {
+            ensure(2);
+            buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            return written + 2;
+        }
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return written;
+        }
+        if (Character.isLowSurrogate(c)) {
+            //前面没有高位代理字符
+            return written + putByte((byte) '?');
+        }
+        ensure(3);
+        buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        return written + 3;
+    }
+
+    /**
+     * 结束逐个字符写入的一段字符串，末尾未配对的高位代理字符写为问号，避免与下一段字符串的第一个字符配对
+     *
+     * @return 写入的字节数
+     */
+    public int endUtf8() {
+        if (highSurrogate == 0) {
+            return 0;
+        }
+        highSurrogate = 0;
+        return putByte((byte) '?');
+    }
+
+    private int putByte(byte b) {
+        ensure(1);
+        buffer.put(b);
+        return 1;
+    }
+
+    /**
+     * 字符串按UTF-8编码之后的字节数，代理对4个字节，不成对的代理字符写为问号，1个字节
+     *
+     * @param value 字符串
+     * @return 字节数
+     */
+    public static int utf8Length(CharSequence value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 写入十进制数字
+     *
+     * @param value 数字
+     */
+    public void writeDecimal(long value) {
+        if (value < 0) {
+            write('-');
+            if (value == Long.MIN_VALUE) {
+                writeUtf8("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        ensure(19);
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * 写入无符号varint
+     *
+     * @param value 数值
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * 在指定位置写入固定宽度的varint，宽度大于实际需要时高位补0，解码结果不变
+     *
+     * @param index 位置
+     * @param value 数值
+     * @param width 宽度
+     */
+    public void putVarLong(int index, long value, int width) {
+        for (int i = 0; i < width - 1; i++) {
+            buffer.put(index + i, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(index + width - 1, (byte) value);
+    }
+
+    /**
+     * varint编码之后的字节数
+     *
+     * @param value 数值
+     * @return 字节数
+     */
+    public static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * 跳过一段空间，之后再回填
+     *
+     * @param length 长度
+     * @return 跳过之前的位置
+     */
+    public int skip(int length) {
+        ensure(length);
+        int position = buffer.position();
+        buffer.position(position + length);
+        return position;
+    }
+
+    /**
+     * 把from之后已经写入的内容向后移动，空出回填的空间
+     *
+     * @param from     开始位置
+     * @param distance 移动距离
+     */
+    public void shift(int from, int distance) {
+        ensure(distance);
+        int position = buffer.position();
+        byte[] array = buffer.array();
+        System.arraycopy(array, buffer.arrayOffset() + from, array, buffer.arrayOffset() + from + distance, position - from);
+        buffer.position(position + distance);
+    }
+
+    /**
+     * 当前位置
+     *
+     * @return 已经写入的字节数
+     */
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * 完成写入
+     *
+     * @param start 记录开始的位置
+     * @return 从start到当前位置的缓冲区，写入之后需要归还到{@link BufferPool}
+     */
+    public ByteBuffer finish(int start) {
+        buffer.limit(buffer.position());
+        buffer.position(start);
+        ByteBuffer result = buffer;
+        buffer = null;
+        return result;
+    }
+
+    /**
+     * 放弃写入，归还缓冲区
+     */
+    public void release() {
+        bufferPool.release(buffer);
+        buffer = null;
+    }
+
+    /**
+     * 确保还有指定的剩余空间
+     */
+    private void ensure(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        ByteBuffer larger = bufferPool.acquire(Math.max(buffer.capacity() * 2, buffer.position() + length));
+        buffer.flip();
+        larger.put(buffer);
+        bufferPool.release(buffer);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,226 @@
+package org.example.logs.observice.codec;
+
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.buffer.BufferPool;
+import org.example.logs.observice.buffer.RecordOutput;
+import org.example.logs.serialize.BoundedJsonSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 紧凑的二进制格式
+ * <pre>
+ * 记录   = varint(记录体长度) 记录体
+ * 记录体 = 版本(1字节) varint(方法编号) varint(开始时间) varint(执行时间) 标记(1字节)
+ *          字符串(参数) 字符串(返回值) [字符串(错误消息) 字符串(错误位置)]
+ * 字符串 = varint(字节长度+1，0表示null) utf8字节
+ * </pre>
+ * varint可能带有补0的高位字节（直接序列化到缓冲区时预留的长度），解码结果不变
+ * 方法名称保存在同目录的{@link MethodDictionary}中，记录里只保存编号。使用{@link LogDecoder}还原为文本或者json
+ *
+ * @author 李昆城
+ */
+@Component
+public class BinaryLogCodec implements LogCodec {
+
+    /**
+     * 记录格式版本
+     */
+    public static final int VERSION = 1;
+    /**
+     * 标记：发生了错误
+     */
+    public static final int FLAG_ERROR = 1;
+
+    /**
+     * 记录长度varint的最大宽度，最大支持 2^35 字节
+     */
+    private static final int MAX_LENGTH_WIDTH = 5;
+    /**
+     * 最多缓存的方法字典数量，每天、每个持久化地址各有一个目录
+     */
+    static final int MAX_DICTIONARIES = 256;
+
+    private final BufferPool bufferPool;
+    private final BoundedJsonSerializer boundedJsonSerializer;
+
+    /**
+     * 日志目录 -> 方法名称字典，按照最近最少使用淘汰，跨天之后不再写入的目录会被淘汰
+     */
+    private final LinkedHashMap<String, MethodDictionary> dictionaries = new LinkedHashMap<String, MethodDictionary>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MethodDictionary> eldest) {
+            if (size() > MAX_DICTIONARIES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    @Autowired
+    public BinaryLogCodec(BufferPool bufferPool, BoundedJsonSerializer boundedJsonSerializer) {
+        this.bufferPool = bufferPool;
+        this.boundedJsonSerializer = boundedJsonSerializer;
+    }
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public String fileName() {
+        return "log.bin";
+    }
+
+    @Override
+    public ByteBuffer encode(LogEvent event, String directory) {
+        int methodId;
+        try {
+            methodId = methodId(directory, event.getTargetAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入方法字典失败：" + directory, e);
+        }
+        boolean error = Objects.nonNull(event.getErrorMsg()) && !event.getErrorMsg().isEmpty()
+                || Objects.nonNull(event.getErrorLocation()) && !event.getErrorLocation().isEmpty();
+        RecordOutput output = new RecordOutput(bufferPool);
+        try {
+            //先空出记录长度的最大宽度，写完记录体之后在其前面回填
+            int lengthAt = output.skip(MAX_LENGTH_WIDTH);
+            output.write(VERSION);
+            output.writeVarLong(methodId);
+            output.writeVarLong(event.getStartTime());
+            output.writeVarLong(zigZag(event.getEndTime() - event.getStartTime()));
+            output.write(error ? FLAG_ERROR : 0);
+            writeJson(output, event.getParam(), event.getParamValue());
+            writeJson(output, event.getResult(), event.getResultValue());
+            if (error) {
+                writeString(output, event.getErrorMsg());
+                writeString(output, event.getErrorLocation());
+            }
+            int bodyLength = output.position() - lengthAt - MAX_LENGTH_WIDTH;
+            int width = RecordOutput.varLongSize(bodyLength);
+            int start = lengthAt + MAX_LENGTH_WIDTH - width;
+            output.putVarLong(start, bodyLength, width);
+            return output.finish(start);
+        } catch (RuntimeException e) {
+            output.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 获取方法名称在目录字典中的编号，字典已经被淘汰时重新加载
+     */
+    private int methodId(String directory, String name) throws IOException {
+        while (true) {
+            MethodDictionary dictionary;
+            synchronized (dictionaries) {
+                dictionary = dictionaries.computeIfAbsent(directory, MethodDictionary::new);
+            }
+            int id = dictionary.idOf(name);
+            if (id >= 0) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * 写入json字符串，尚未序列化的对象直接序列化到缓冲区，长度先按2个字节预留，超过之后再移动
+     */
+    private void writeJson(RecordOutput output, String text, Object value) {
+        if (Objects.isNull(value)) {
+            writeString(output, text);
+            return;
+        }
+        int lengthAt = output.skip(2);
+        boundedJsonSerializer.writeJson(value, output);
+        long length = output.position() - lengthAt - 2 + 1L;
+        int width = RecordOutput.varLongSize(length);
+        if (width > 2) {
+            output.shift(lengthAt + 2, width - 2);
+        }
+        output.putVarLong(lengthAt, length, Math.max(2, width));
+    }
+
+    /**
+     * 写入字符串
+     */
+    static void writeString(RecordOutput output, String value) {
+        if (Objects.isNull(value)) {
+            output.writeVarLong(0);
+            return;
+        }
+        output.writeVarLong(RecordOutput.utf8Length(value) + 1L);
+        output.writeUtf8(value);
+    }
+
+    /**
+     * 读取无符号varint
+     *
+     * @return 读取到的值，流已经结束返回-1
+     */
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new IOException("记录不完整");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("无效的varint");
+    }
+
+    /**
+     * 从记录体中读取varint
+     */
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("无效的varint");
+    }
+
+    /**
+     * 从记录体中读取字符串
+     */
+    static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.logs.observice.codec;
+
+import org.example.logs.observice.LogEvent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 日志记录编码格式
+ *
+ * @author 李昆城
+ */
+public interface LogCodec {
+
+    /**
+     * 格式名称，对应配置 log.params.format
+     *
+     * @return 格式名称
+     */
+    String name();
+
+    /**
+     * 日志文件名称
+     *
+     * @return 文件名称，例如log.txt
+     */
+    String fileName();
+
+    /**
+     * 将一次方法调用编码为一条完整的记录
+     *
+     * @param event     日志事件
+     * @param directory 记录所在的目录，需要目录级别状态（例如字典）的格式使用
+     * @return 记录内容，从{@link org.example.logs.observice.buffer.BufferPool}中取出，写入之后归还
+     */
+    ByteBuffer encode(LogEvent event, String directory);
+}
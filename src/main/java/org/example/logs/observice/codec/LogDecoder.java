@@ -0,0 +1,181 @@
+package org.example.logs.observice.codec;
+
+import com.alibaba.fastjson.JSON;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 二进制日志解码工具，还原为与文本格式相同的内容，或者每行一个json对象
+ * <pre>
+ * java -cp logs.jar:依赖 org.example.logs.observice.codec.LogDecoder [--json] 文件或目录...
+ * </pre>
+ * 方法名称从文件所在目录的 log.dict 中读取，目录会按文件名顺序解码其中所有的 .bin 和滚动压缩的 .bin.gz 文件
+ *
+ * @author 李昆城
+ */
+public class LogDecoder {
+
+    /**
+     * 输出json
+     */
+    private final boolean json;
+    private final PrintStream out;
+
+    public LogDecoder(boolean json, PrintStream out) {
+        this.json = json;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean json = false;
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            if ("--json".equals(arg)) {
+                json = true;
+            } else {
+                files.addAll(listFiles(Paths.get(arg)));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("用法：LogDecoder [--json] 文件或目录...");
+            System.exit(1);
+        }
+        LogDecoder decoder = new LogDecoder(json, System.out);
+        for (Path file : files) {
+            decoder.decode(file);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * 解码一个文件
+     *
+     * @param file 二进制日志文件
+     * @throws IOException 读取失败
+     */
+    public void decode(Path file) throws IOException {
+        Path directory = Objects.isNull(file.getParent()) ? Paths.get(".") : file.getParent();
+        Map<Integer, String> methods = MethodDictionary.read(directory.resolve(MethodDictionary.FILE_NAME));
+        InputStream fileInput = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            fileInput = new GZIPInputStream(fileInput, 64 * 1024);
+        }
+        try (InputStream in = new BufferedInputStream(fileInput, 64 * 1024)) {
+            ByteBuffer body;
+            while (Objects.nonNull(body = readBody(in))) {
+                print(readRecord(body, methods));
+            }
+        } catch (IOException e) {
+            throw new IOException(file + " " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取下一条记录的记录体
+     *
+     * @param in 位于记录开始位置的输入流
+     * @return 记录体，没有更多记录时为null
+     * @throws IOException 读取失败或者记录不完整
+     */
+    public static ByteBuffer readBody(InputStream in) throws IOException {
+        long length = BinaryLogCodec.readVarLong(in);
+        //长度为0表示内存映射分段中未截断的空白部分
+        if (length <= 0) {
+            return null;
+        }
+        byte[] body = new byte[(int) length];
+        int read = 0;
+        while (read < body.length) {
+            int n = in.read(body, read, body.length - read);
+            if (n < 0) {
+                throw new IOException("最后一条记录不完整");
+            }
+            read += n;
+        }
+        return ByteBuffer.wrap(body);
+    }
+
+    /**
+     * 解析一条记录
+     *
+     * @param body    记录体
+     * @param methods 方法字典
+     * @return 字段名称 -> 字段值，与 --json 输出的字段相同
+     * @throws IOException 不支持的记录版本
+     */
+    public static Map<String, Object> readRecord(ByteBuffer body, Map<Integer, String> methods) throws IOException {
+        int version = body.get();
+        if (version != BinaryLogCodec.VERSION) {
+            throw new IOException("不支持的记录版本：" + version);
+        }
+        int methodId = (int) BinaryLogCodec.readVarLong(body);
+        String method = methods.getOrDefault(methodId, "#" + methodId);
+        long startTime = BinaryLogCodec.readVarLong(body);
+        long endTime = startTime + BinaryLogCodec.unZigZag(BinaryLogCodec.readVarLong(body));
+        int flags = body.get();
+        String param = BinaryLogCodec.readString(body);
+        String result = BinaryLogCodec.readString(body);
+        String errorMsg = "";
+        String errorLocation = "";
+        if ((flags & BinaryLogCodec.FLAG_ERROR) != 0) {
+            errorMsg = BinaryLogCodec.readString(body);
+            errorLocation = BinaryLogCodec.readString(body);
+        }
+        Map<String, Object> record = new LinkedHashMap<>(16);
+        record.put("targetAddress", method);
+        record.put("startTime", startTime);
+        record.put("endTime", endTime);
+        record.put("runTime", endTime - startTime);
+        record.put("param", param);
+        record.put("result", result);
+        record.put("errorMsg", errorMsg);
+        record.put("errorLocation", errorLocation);
+        return record;
+    }
+
+    /**
+     * 输出一条记录
+     */
+    private void print(Map<String, Object> record) {
+        if (json) {
+            out.println(JSON.toJSONString(record));
+        } else {
+            long startTime = (Long) record.get("startTime");
+            out.print(TextLogCodec.format((String) record.get("targetAddress"), (String) record.get("param"), (String) record.get("result"),
+                    (String) record.get("errorMsg"), (String) record.get("errorLocation"), startTime, (Long) record.get("endTime")));
+        }
+    }
+
+    /**
+     * 展开目录中的二进制日志文件
+     */
+    private static List<Path> listFiles(Path path) {
+        if (!Files.isDirectory(path)) {
+            return Arrays.asList(path);
+        }
+        File[] files = path.toFile().listFiles((dir, name) -> name.endsWith(".bin") || name.endsWith(".bin.gz"));
+        List<Path> result = new ArrayList<>();
+        if (Objects.nonNull(files)) {
+            Arrays.sort(files);
+            for (File file : files) {
+                result.add(file.toPath());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.logs.observice.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法名称字典，保存在日志目录下的 log.dict 文件中，每行一个：编号\t方法名称
+ * <p>
+ * 新的方法名称先写入字典文件，再写入使用它的记录，所以日志文件中引用的编号在字典中一定存在；
+ * 重启之后从字典文件恢复，编号保持不变
+ *
+ * @author 李昆城
+ */
+@Slf4j
+public class MethodDictionary {
+
+    /**
+     * 字典文件名称
+     */
+    public static final String FILE_NAME = "log.dict";
+
+    /**
+     * 字典文件
+     */
+    private final Path file;
+    /**
+     * 方法名称 -> 编号
+     */
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * 下一个编号
+     */
+    private int nextId;
+    /**
+     * 是否已经被淘汰，淘汰之后不再分配新的编号，避免和重新加载的字典分配出相同的编号
+     */
+    private boolean closed;
+
+    /**
+     * 加载目录下的字典，不存在则创建新的字典
+     *
+     * @param directory 日志目录
+     */
+    public MethodDictionary(String directory) {
+        this.file = Paths.get(directory, FILE_NAME);
+        read(file).forEach((id, name) -> {
+            ids.put(name, id);
+            nextId = Math.max(nextId, id + 1);
+        });
+    }
+
+    /**
+     * 获取方法名称的编号，不存在则分配新的编号并写入字典文件
+     *
+     * @param name 方法名称
+     * @return 编号，需要分配新的编号但是字典已经被淘汰时返回-1，调用方重新加载字典
+     * @throws IOException 写入字典文件失败
+     */
+    public int idOf(String name) throws IOException {
+        Integer id = ids.get(name);
+        if (Objects.nonNull(id)) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (Objects.nonNull(id)) {
+                return id;
+            }
+            if (closed) {
+                return -1;
+            }
+            id = nextId;
+            Files.createDirectories(file.getParent());
+            try (OutputStream outputStream = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                outputStream.write((id + "\t" + name + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            nextId++;
+            ids.put(name, id);
+            return id;
+        }
+    }
+
+    /**
+     * 淘汰字典，等待正在分配的编号写入字典文件之后返回
+     */
+    public synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * 读取字典文件
+     *
+     * @param file 字典文件
+     * @return 编号 -> 方法名称，文件不存在返回空的字典
+     */
+    public static Map<Integer, String> read(Path file) {
+        Map<Integer, String> names = new HashMap<>(64);
+        if (!Files.exists(file)) {
+            return names;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                try {
+                    names.put(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+                } catch (NumberFormatException e) {
+                    //写入一半的行
+                    log.warn("方法字典：{} 中存在无效的行：{}", file, line);
+                }
+            }
+        } catch (IOException e) {
+            log.error("读取方法字典：{} 发生错误：{}", file, e.getMessage());
+        }
+        return names;
+    }
+}
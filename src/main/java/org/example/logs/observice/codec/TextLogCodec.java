@@ -0,0 +1,170 @@
+package org.example.logs.observice.codec;
+
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.buffer.BufferPool;
+import org.example.logs.observice.buffer.RecordOutput;
+import org.example.logs.serialize.BoundedJsonSerializer;
+import org.example.logs.utils.DateUtils;
+import org.example.logs.utils.TimestampFormatter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 文本格式，每条记录由开始、结束标记包裹，每个字段一行，UTF-8编码
+ *
+ * @author 李昆城
+ */
+@Component
+public class TextLogCodec implements LogCodec {
+
+    /**
+     * 记录开始标记
+     */
+    public static final String START = "<----------Start---------->";
+    /**
+     * 记录结束标记
+     */
+    public static final String END = "<----------End------------>";
+    /**
+     * 换行符
+     */
+    public static final String LINE_SEPARATOR = System.lineSeparator();
+    /**
+     * 开始时间、截止时间的格式化，同一秒内复用格式化结果
+     */
+    private static final TimestampFormatter TIME_FORMATTER = TimestampFormatter.of(DateUtils.NOW);
+
+    private static final byte[] START_BYTES = bytes(START + LINE_SEPARATOR);
+    private static final byte[] END_BYTES = bytes(END + LINE_SEPARATOR + LINE_SEPARATOR);
+    private static final byte[] LINE_SEPARATOR_BYTES = bytes(LINE_SEPARATOR);
+    private static final byte[] TIME_SEPARATOR_BYTES = bytes("  ");
+    private static final byte[] TARGET_ADDRESS = bytes("目标方法：");
+    private static final byte[] PARAM = bytes("参数信息：");
+    private static final byte[] RESULT = bytes("返回值：");
+    private static final byte[] ERROR_MSG = bytes("错误消息：");
+    private static final byte[] ERROR_LOCATION = bytes("部分错误地址：");
+    private static final byte[] RUN_TIME = bytes("执行时间（毫秒）：");
+
+    private final BufferPool bufferPool;
+    private final BoundedJsonSerializer boundedJsonSerializer;
+
+    @Autowired
+    public TextLogCodec(BufferPool bufferPool, BoundedJsonSerializer boundedJsonSerializer) {
+        this.bufferPool = bufferPool;
+        this.boundedJsonSerializer = boundedJsonSerializer;
+    }
+
+    @Override
+    public String name() {
+        return "text";
+    }
+
+    @Override
+    public String fileName() {
+        return "log.txt";
+    }
+
+    @Override
+    public ByteBuffer encode(LogEvent event, String directory) {
+        //与format的输出相同，直接按UTF-8写入缓冲区
+        RecordOutput output = new RecordOutput(bufferPool);
+        try {
+            long startTime = event.getStartTime();
+            long endTime = event.getEndTime();
+            output.write(START_BYTES);
+            timeLine(output, startTime);
+            line(output, TARGET_ADDRESS, event.getTargetAddress());
+            output.write(PARAM);
+            json(output, event.getParam(), event.getParamValue());
+            output.write(LINE_SEPARATOR_BYTES);
+            output.write(RESULT);
+            json(output, event.getResult(), event.getResultValue());
+            output.write(LINE_SEPARATOR_BYTES);
+            line(output, ERROR_MSG, event.getErrorMsg());
+            line(output, ERROR_LOCATION, event.getErrorLocation());
+            output.write(RUN_TIME);
+            output.writeDecimal(endTime - startTime);
+            output.write(LINE_SEPARATOR_BYTES);
+            timeLine(output, endTime);
+            output.write(END_BYTES);
+            return output.finish(0);
+        } catch (RuntimeException e) {
+            output.release();
+            throw e;
+        }
+    }
+
+    private void json(RecordOutput output, String text, Object value) {
+        if (Objects.nonNull(value)) {
+            boundedJsonSerializer.writeJson(value, output);
+        } else {
+            output.writeUtf8(Objects.isNull(text) ? "null" : text);
+        }
+    }
+
+    private static void line(RecordOutput output, byte[] label, String value) {
+        output.write(label);
+        output.writeUtf8(Objects.isNull(value) ? "null" : value);
+        output.write(LINE_SEPARATOR_BYTES);
+    }
+
+    private static void timeLine(RecordOutput output, long time) {
+        output.writeUtf8(TIME_FORMATTER.format(time));
+        output.write(TIME_SEPARATOR_BYTES);
+        output.writeDecimal(time);
+        output.write(LINE_SEPARATOR_BYTES);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按照文本格式输出一条记录，解码工具也使用该方法还原文本
+     *
+     * @param targetAddress 目标方法
+     * @param param         参数信息
+     * @param result        返回值
+     * @param errorMsg      错误消息
+     * @param errorLocation 错误位置
+     * @param startTime     开始时间
+     * @param endTime       截止时间
+     * @return 一条完整的记录
+     */
+    public static String format(String targetAddress, String param, String result, String errorMsg, String errorLocation,
+                                long startTime, long endTime) {
+        String[] msg = new String[]{timeLine(startTime), "目标方法：" + targetAddress, "参数信息：" + param, "返回值：" + result,
+                "错误消息：" + errorMsg, "部分错误地址：" + errorLocation, "执行时间（毫秒）：" + (endTime - startTime), timeLine(endTime)};
+        return format(msg);
+    }
+
+    /**
+     * 按照文本格式输出一条记录
+     *
+     * @param msg 每行的内容
+     * @return 一条完整的记录
+     */
+    public static String format(String[] msg) {
+        StringBuilder content = new StringBuilder(256);
+        content.append(START).append(LINE_SEPARATOR);
+        for (String str : msg) {
+            content.append(str).append(LINE_SEPARATOR);
+        }
+        content.append(END).append(LINE_SEPARATOR).append(LINE_SEPARATOR);
+        return content.toString();
+    }
+
+    /**
+     * 开始时间、截止时间行
+     *
+     * @param time 时间戳
+     * @return yyyy-MM-dd HH:mm:ss 时间戳
+     */
+    private static String timeLine(long time) {
+        return TIME_FORMATTER.format(time) + "  " + time;
+    }
+}
@@ -1,102 +1,188 @@
 package org.example.logs.observice.logwrite;
 
-import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.codec.LogCodec;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.core.env.Environment;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 日志持久化抽象实现
+ * 日志持久化抽象实现，负责配置和文件地址的计算；逐条编码写入的实现继承{@link RecordLogWrite}
  *
  * @author 李昆城
  */
-@Slf4j
-public abstract class BaseLogWrite implements LogWrite {
+public abstract class BaseLogWrite implements LogWrite, BeanNameAware {
 
+    protected final LogConfig logConfig;
+    private final Environment environment;
+    /**
+     * 记录编码格式
+     */
+    protected final LogCodec logCodec;
+    protected final LogMetrics logMetrics;
+    /**
+     * 全局持久化级别，事件没有指定时使用
+     */
+    protected final Durability durability;
 
     /**
-     * 写入内容
+     * 写入实现的名称，即bean名称，作为监控指标的sink标签
+     */
+    protected String sink;
+
+    protected BaseLogWrite(LogConfig logConfig, Environment environment, List<LogCodec> logCodecs, LogMetrics logMetrics) {
+        this.logConfig = logConfig;
+        this.environment = environment;
+        this.logMetrics = logMetrics;
+        String format = logConfig.get(LogConfig.LogConfigKey.format, "text");
+        this.logCodec = logCodecs.stream().filter(codec -> codec.name().equals(format)).findFirst()
+                .orElseThrow(() -> new IllegalStateException("不存在的日志格式：" + format));
+        this.durability = Durability.of(logConfig.get(LogConfig.LogConfigKey.durability, "async")).orElse(Durability.ASYNC);
+    }
+
+    protected boolean prod;
+
+    /**
+     * 当天已经解析好的目录和文件地址，跨天时整体替换
+     */
+    private volatile DayPaths dayPaths;
+
+    @PostConstruct
+    public void init() {
+        String property = environment.getProperty("spring.profiles.active");
+        prod = "prod".equals(property);
+    }
+
+    @Override
+    public void setBeanName(String name) {
+        this.sink = name;
+    }
+
+    /**
+     * 获取文件的详细文件地址
      *
-     * @param msg  需要打印的消息数组
-     * @param file 文件
+     * @param path     目录地址
+     * @param fileName 文件名称
+     * @return 文件地址
      */
-    private void writeContent(String[] msg, File file) {
-        //如果没有内容，则直接返回
-        if (Objects.isNull(msg) || msg.length < 1) {
-            return;
-        }
-        BufferedWriter bufferedWriter = null;
-        FileWriter fileWriter;
-        try {
-            //是否追加写入。否则将先清文本再写入
-            fileWriter = new FileWriter(file, true);
-            bufferedWriter = new BufferedWriter(fileWriter);
-            bufferedWriter.write("<----------Start---------->");
-            //换行
-            bufferedWriter.newLine();
-            for (String str : msg) {
-                bufferedWriter.write(str);
-                bufferedWriter.newLine();
-            }
-            bufferedWriter.write("<----------End------------>");
-            bufferedWriter.newLine();
-            bufferedWriter.newLine();
-        } catch (IOException e) {
-            log.error("向日志中写入数据发生错误：{}", e.getMessage());
-        } finally {
-            try {
-                if (Objects.nonNull(bufferedWriter)) {
-                    bufferedWriter.flush();
-                    bufferedWriter.close();
-                }
-            } catch (IOException e) {
-                log.error("关闭输出流发生错误：{}", e.getMessage());
-            }
-        }
+    private String findFilePath(String path, String fileName, boolean prod) {
+        return prod ? path + "/" + fileName : path + "\\" + fileName;
+    }
+
+    /**
+     * 根据日期进行创建文件夹
+     */
+    public String dateFolder() {
+        return currentDay().folder;
     }
 
+    /**
+     * 某一天的日志目录，查询历史日志时使用
+     *
+     * @param persistenceAddress 持久化地址，为空时使用默认地址
+     * @param date               日期
+     * @return 目录地址
+     */
+    public String directoryOf(String persistenceAddress, LocalDate date) {
+        return directory(persistenceAddress, folder(date));
+    }
 
     /**
-     * 写入文件
+     * 记录编码格式
      *
-     * @param path     文件保存地址
-     * @param messages 内容信息
-     * @param prod     当前的环境 true：生产环境  false：非生产环境
-     * @throws IOException 可能发生异常
+     * @return 编码格式
      */
-    protected void baseWrite(String path, String[] messages, boolean prod) throws IOException {
-        //创建文件对象
-        File folderPath = new File(path);
-        //如果当前目录不存在，且创建失败则纪录错误日志
-        if (!folderPath.exists() && !folderPath.mkdirs()) {
-            log.error("创建日志收集目录：{} 失败", folderPath.getAbsolutePath());
-            return;
+    public LogCodec getLogCodec() {
+        return logCodec;
+    }
+
+    /**
+     * 日期目录，例如 2020/1/1
+     */
+    private String folder(LocalDate date) {
+        int year = date.getYear();
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        return prod ? year + "/" + month + "/" + day : year + "\\" + month + "\\" + day;
+    }
+
+    /**
+     * 持久化地址下的日期目录
+     */
+    private String directory(String persistenceAddress, String folder) {
+        persistenceAddress = StringUtils.isNoneBlank(persistenceAddress) ? persistenceAddress : logConfig.getParams().get(LogConfig.LogConfigKey.path);
+        return prod ? persistenceAddress + "/" + folder : persistenceAddress + "\\" + folder;
+    }
+
+    /**
+     * 获取当天的目录缓存，只有跨天之后的第一次调用才会重新计算
+     *
+     * @return 当天的目录缓存
+     */
+    DayPaths currentDay() {
+        DayPaths current = dayPaths;
+        if (Objects.isNull(current) || System.currentTimeMillis() >= current.nextRollover) {
+            current = new DayPaths(LocalDate.now());
+            dayPaths = current;
+        }
+        return current;
+    }
+
+    /**
+     * 某一天的目录以及各个持久化地址解析之后的目录和文件
+     */
+    final class DayPaths {
+
+        /**
+         * 日期目录，例如 2020/1/1
+         */
+        private final String folder;
+        /**
+         * 第二天0点的时间戳，超过之后需要重新计算
+         */
+        private final long nextRollover;
+        /**
+         * 持久化地址 -> 解析之后的目录和文件
+         */
+        private final Map<String, ResolvedPath> paths = new ConcurrentHashMap<>();
+
+        private DayPaths(LocalDate date) {
+            this.folder = folder(date);
+            this.nextRollover = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
         }
-        //添加后缀
-        path = findFilePath(path, prod);
-        File filePath = new File(path);
-        if (!filePath.exists() && !filePath.createNewFile()) {
-            log.error("创建日志收集文件：{} 失败：", folderPath.getAbsolutePath());
-            return;
+
+        ResolvedPath resolve(String persistenceAddress) {
+            String key = Objects.isNull(persistenceAddress) ? "" : persistenceAddress;
+            ResolvedPath resolvedPath = paths.get(key);
+            return Objects.nonNull(resolvedPath) ? resolvedPath : paths.computeIfAbsent(key, this::build);
         }
-        //将写入变为单线程。防止重复操作
-        synchronized (this) {
-            writeContent(messages, filePath);
+
+        private ResolvedPath build(String persistenceAddress) {
+            String directory = directory(persistenceAddress, folder);
+            return new ResolvedPath(directory, findFilePath(directory, logCodec.fileName(), prod));
         }
     }
 
-
     /**
-     * 获取文件的详细文件地址
-     *
-     * @param path 目录地址
-     * @return 文件地址
+     * 解析之后的目录和文件
      */
-    private String findFilePath(String path, boolean prod) {
-        return prod ? path + "/log.txt" : path + "\\log.txt";
+    static final class ResolvedPath {
+        final String directory;
+        final String file;
+
+        private ResolvedPath(String directory, String file) {
+            this.directory = directory;
+            this.file = file;
+        }
     }
 
 }
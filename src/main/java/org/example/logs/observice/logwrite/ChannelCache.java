@@ -0,0 +1,195 @@
+package org.example.logs.observice.logwrite;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 打开的文件通道缓存，按照最近最少使用淘汰，淘汰时关闭通道
+ * <p>
+ * 只允许写入线程访问，不做同步
+ *
+ * @author 李昆城
+ */
+@Slf4j
+public class ChannelCache {
+
+    /**
+     * 文件地址 -> 打开的文件，按照访问顺序排列
+     */
+    private final LinkedHashMap<String, OpenFile> channels;
+
+    /**
+     * @param maxOpenFiles 最多同时打开的文件数量
+     */
+    public ChannelCache(int maxOpenFiles) {
+        this.channels = new LinkedHashMap<String, OpenFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OpenFile> eldest) {
+                if (size() > maxOpenFiles) {
+                    eldest.getValue().closeQuietly();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取打开的文件，没有打开则以追加的方式打开，目录和文件只在打开时创建一次
+     *
+     * @param file 文件地址
+     * @return 打开的文件
+     * @throws IOException 打开文件失败
+     */
+    public OpenFile get(String file) throws IOException {
+        OpenFile openFile = channels.get(file);
+        if (Objects.nonNull(openFile) && openFile.channel.isOpen()) {
+            return openFile;
+        }
+        Path path = Paths.get(file);
+        Path parent = path.getParent();
+        if (Objects.nonNull(parent)) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        openFile = new OpenFile(path, channel, channel.size(), Files.getLastModifiedTime(path).toMillis());
+        channels.put(file, openFile);
+        return openFile;
+    }
+
+    /**
+     * 关闭并移除文件通道，一般在写入失败或者滚动之前调用
+     *
+     * @param file 文件地址
+     */
+    public void close(String file) {
+        OpenFile openFile = channels.remove(file);
+        if (Objects.nonNull(openFile)) {
+            openFile.closeQuietly();
+        }
+    }
+
+    /**
+     * 把所有写入之后还没有fsync的文件刷到磁盘
+     */
+    public void forceUnsynced() {
+        for (OpenFile openFile : channels.values()) {
+            if (!openFile.unsynced) {
+                continue;
+            }
+            try {
+                openFile.force();
+            } catch (IOException e) {
+                log.error("日志文件：{} 刷到磁盘发生错误：{}", openFile.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 关闭所有的文件通道
+     */
+    public void closeAll() {
+        channels.values().forEach(OpenFile::closeQuietly);
+        channels.clear();
+    }
+
+    /**
+     * 打开的日志文件
+     */
+    @Getter
+    public static final class OpenFile {
+
+        private final Path path;
+        private final FileChannel channel;
+        /**
+         * 当前文件大小
+         */
+        private long size;
+        /**
+         * 打开时文件最后修改的时间，新文件为当前时间
+         */
+        private final long openedAt;
+        /**
+         * 是否有写入之后还没有fsync的内容，关闭之前会先刷到磁盘
+         */
+        private boolean unsynced;
+        /**
+         * 本次打开之后写入的记录数量
+         */
+        private long records;
+
+        private OpenFile(Path path, FileChannel channel, long size, long openedAt) {
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+            this.openedAt = openedAt;
+        }
+
+        /**
+         * 聚集写入，直到全部写完
+         *
+         * @param buffers 待写入的内容
+         * @throws IOException 写入失败
+         */
+        public void write(ByteBuffer[] buffers) throws IOException {
+            int offset = 0;
+            while (offset < buffers.length) {
+                size += channel.write(buffers, offset, buffers.length - offset);
+                while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        }
+
+        /**
+         * 累加写入的记录数量
+         *
+         * @param count 本次写入的数量
+         * @return 累加之前的数量
+         */
+        public long addRecords(int count) {
+            long before = records;
+            records += count;
+            return before;
+        }
+
+        /**
+         * 把文件内容刷到磁盘
+         *
+         * @throws IOException 刷盘失败
+         */
+        public void force() throws IOException {
+            channel.force(false);
+            unsynced = false;
+        }
+
+        /**
+         * 标记有还没有fsync的内容，等待下一次定时刷盘
+         */
+        public void markUnsynced() {
+            unsynced = true;
+        }
+
+        private void closeQuietly() {
+            try {
+                if (unsynced && channel.isOpen()) {
+                    force();
+                }
+                channel.close();
+            } catch (IOException e) {
+                log.error("关闭日志文件：{} 发生错误：{}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.logs.observice.logwrite;
+
+/**
+ * 持久化级别，决定写入之后什么时候调用fsync，级别越高越安全、吞吐量越低
+ *
+ * @author 李昆城
+ */
+public enum Durability {
+
+    /**
+     * 使用全局配置 log.params.durability，只用于注解
+     */
+    INHERIT(0),
+    /**
+     * 从不fsync，由操作系统负责回写
+     */
+    ASYNC(1),
+    /**
+     * 每隔 log.params.durabilityInterval 毫秒fsync一次
+     */
+    INTERVAL(2),
+    /**
+     * 每次批量写入之后fsync
+     */
+    BATCH(3),
+    /**
+     * fsync之后方法调用才返回，适用于审计类接口
+     */
+    SYNC(4);
+
+    /**
+     * 写入溢出文件的编号，与声明顺序无关，已经使用的编号不能修改
+     */
+    private final int code;
+
+    Durability(int code) {
+        this.code = code;
+    }
+
+    /**
+     * 写入溢出文件的编号
+     *
+     * @return 编号
+     */
+    public int code() {
+        return code;
+    }
+
+    /**
+     * 根据编号获取持久化级别
+     *
+     * @param code 编号
+     * @return 持久化级别
+     * @throws IllegalArgumentException 未知的编号
+     */
+    public static Durability ofCode(int code) {
+        for (Durability durability : values()) {
+            if (durability.code == code) {
+                return durability;
+            }
+        }
+        throw new IllegalArgumentException("未知的持久化级别编号：" + code);
+    }
+
+    /**
+     * 根据名称获取持久化级别
+     *
+     * @param name 级别名称，不区分大小写
+     * @return 持久化级别
+     */
+    public static Durability of(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * 解析继承的级别
+     *
+     * @param global 全局配置的级别
+     * @return INHERIT返回全局级别，否则返回自身
+     */
+    public Durability orElse(Durability global) {
+        return this == INHERIT ? global : this;
+    }
+
+    /**
+     * 是否在每次写入之后fsync
+     *
+     * @return true：BATCH和SYNC
+     */
+    public boolean forceOnWrite() {
+        return this == BATCH || this == SYNC;
+    }
+}
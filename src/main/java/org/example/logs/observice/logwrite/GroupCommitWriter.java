@@ -0,0 +1,584 @@
+package org.example.logs.observice.logwrite;
+
+import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.example.logs.LogConfig;
+import org.example.logs.index.IndexEntry;
+import org.example.logs.index.LogIndexer;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.buffer.BufferPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量提交的日志写入器
+ * <p>
+ * 按文件地址分片，每个分片有自己的队列和写入线程，同一个文件的记录总是由同一个线程写入，
+ * 不同文件可以并行写入。写入线程批量取出待写入的记录，按文件分组之后一次聚集写入（gathering write），
+ * 达到批量大小或者超过刷新间隔才写入一次，文件通道保持打开，不再每条记录打开关闭一次文件。
+ * 每个文件按照这一批记录中最高的持久化级别fsync，有sync级别的记录时立即写入，不再等待凑满一批。
+ * <p>
+ * 开启溢出（log.params.writerSpill=true）之后，队列超过数量或者内存水位线时，已经编码好的记录追加到分片的溢出文件，
+ * 不再占用堆内存，之后提交的记录（包括等待写入完成的sync级别记录）也追加到溢出文件保证顺序，
+ * 写入线程处理完队列之后再从溢出文件中按顺序读回写入。追加溢出文件失败时，等待已经溢出的记录全部读回之后再放入队列，不会插队。
+ * <p>
+ * 写入记录之后由{@link LogIndexer}在同目录的索引文件中追加记录的偏移量
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class GroupCommitWriter {
+
+    /**
+     * 监控指标的sink标签，批量提交写入器服务于请求日志
+     */
+    private static final String SINK = "requestLog";
+
+    /**
+     * 写入分片
+     */
+    private final Shard[] shards;
+    /**
+     * 达到该数量立即写入
+     */
+    private final int batchSize;
+    /**
+     * 刷新间隔（纳秒），超过该时间立即写入
+     */
+    private final long flushIntervalNanos;
+    /**
+     * interval级别fsync的间隔（纳秒）
+     */
+    private final long syncIntervalNanos;
+    /**
+     * 日志文件滚动
+     */
+    private final LogRoller logRoller;
+    /**
+     * 批量写入文件的耗时
+     */
+    private final Timer flushTimer;
+    /**
+     * 写入文件的数量
+     */
+    private final Counter persistedCounter;
+    /**
+     * 写入之后归还记录缓冲区
+     */
+    private final BufferPool bufferPool;
+    /**
+     * 队列中记录的总字节数
+     */
+    private final AtomicLong queuedBytes = new AtomicLong();
+    /**
+     * 单个分片的队列超过该数量开始溢出
+     */
+    private final int spillWatermark;
+    /**
+     * 所有队列中记录的总字节数超过该值开始溢出
+     */
+    private final long spillMemoryBytes;
+    /**
+     * 溢出到文件的数量
+     */
+    private final Counter spilledCounter;
+    /**
+     * 索引文件
+     */
+    private final LogIndexer logIndexer;
+
+    /**
+     * 关闭时等待写完剩余记录的最长时间（纳秒）
+     */
+    private final long shutdownTimeoutNanos;
+
+    private volatile boolean running;
+
+    @Autowired
+    public GroupCommitWriter(LogConfig logConfig, LogRoller logRoller, LogMetrics logMetrics, BufferPool bufferPool,
+                             LogIndexer logIndexer) {
+        int shardCount = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.writerShards,
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+        int queueSize = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.writerQueueSize, 65536));
+        //打开文件的上限由所有分片平分
+        int maxOpenFiles = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.writerMaxOpenFiles, 64) / shardCount);
+        boolean spill = logConfig.getBoolean(LogConfig.LogConfigKey.writerSpill, false);
+        Path spillPath = Paths.get(logConfig.get(LogConfig.LogConfigKey.writerSpillPath,
+                Paths.get(logConfig.get(LogConfig.LogConfigKey.path, "."), ".spill").toString()));
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            SpillFile spillFile = spill ? openSpill(spillPath.resolve("shard-" + i + ".spill"), bufferPool) : null;
+            shards[i] = new Shard(i, queueSize, maxOpenFiles, spillFile);
+            logMetrics.queue("log.writer.queue.size", shards[i].queue, "shard", String.valueOf(i));
+            if (spill) {
+                logMetrics.spill(spillFile, String.valueOf(i));
+            }
+        }
+        this.spillWatermark = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.writerSpillWatermark, queueSize - queueSize / 4));
+        this.spillMemoryBytes = Math.max(1, logConfig.getLong(LogConfig.LogConfigKey.writerSpillMemory, 64)) * 1024 * 1024;
+        this.spilledCounter = logMetrics.spilledCounter(SINK);
+        this.batchSize = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.writerBatchSize, 256));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, logConfig.getLong(LogConfig.LogConfigKey.writerFlushInterval, 200)));
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, logConfig.getLong(LogConfig.LogConfigKey.durabilityInterval, 1000)));
+        this.shutdownTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, logConfig.getLong(LogConfig.LogConfigKey.shutdownTimeout, 10000)));
+        this.logRoller = logRoller;
+        this.flushTimer = logMetrics.flushTimer(SINK);
+        this.persistedCounter = logMetrics.persistedCounter(SINK);
+        this.bufferPool = bufferPool;
+        this.logIndexer = logIndexer;
+        log.info("日志写入分片数量：{}，溢出：{}", shardCount, spill ? spillPath : "关闭");
+    }
+
+    /**
+     * 打开分片的溢出文件
+     *
+     * @param path       溢出文件地址
+     * @param bufferPool 读回的记录使用池中的缓冲区
+     * @return 溢出文件
+     */
+    private static SpillFile openSpill(Path path, BufferPool bufferPool) {
+        try {
+            return new SpillFile(path, bufferPool);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法打开日志溢出文件：" + path, e);
+        }
+    }
+
+    /**
+     * 启动所有分片的写入线程
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * 停止写入线程，写完队列中剩余的记录之后关闭所有文件
+     */
+    @PreDestroy
+    public void stop() {
+        drain(System.nanoTime() + shutdownTimeoutNanos);
+    }
+
+    /**
+     * 不再接收新的记录，等待写入线程写完队列中剩余的记录，最多等到截止时间
+     *
+     * @param deadline 截止时间（{@link System#nanoTime()}）
+     */
+    public void drain(long deadline) {
+        running = false;
+        try {
+            for (Shard shard : shards) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(shard.thread, remaining);
+                }
+                if (shard.thread.isAlive()) {
+                    log.warn("日志写入线程：{} 在关闭超时之前没有写完，剩余：{}", shard.thread.getName(), shard.queue.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交一条待写入的记录，交给文件所在的分片，队列满了会阻塞调用线程
+     *
+     * @param file       文件地址
+     * @param content    记录内容
+     * @param durability 持久化级别
+     * @param persisted  按照持久化级别写入之后完成，可以为null
+     * @param index      索引信息，可以为null
+     */
+    public void submit(String file, ByteBuffer content, Durability durability, CompletableFuture<Void> persisted, IndexEntry index) {
+        if (!running) {
+            log.warn("日志写入线程已经停止，丢弃写入：{}", file);
+            bufferPool.release(content);
+            if (Objects.nonNull(persisted)) {
+                persisted.completeExceptionally(new IllegalStateException("日志写入线程已经停止"));
+            }
+            return;
+        }
+        Shard shard = shards[(file.hashCode() & Integer.MAX_VALUE) % shards.length];
+        int length = content.remaining();
+        try {
+            //溢出文件中有没有读回的记录时，之后的记录都要追加到溢出文件；没有积压时等待写入完成的记录不溢出
+            if (Objects.nonNull(shard.spill) && (shard.spill.isActive() || Objects.isNull(persisted)
+                    && (shard.queue.size() >= spillWatermark || queuedBytes.get() >= spillMemoryBytes))) {
+                if (shard.spill(file, content, durability, persisted, index)) {
+                    return;
+                }
+                if (!shard.awaitSpillDrained()) {
+                    log.warn("追加溢出文件失败并且写入线程已经停止，丢弃写入：{}", file);
+                    bufferPool.release(content);
+                    if (Objects.nonNull(persisted)) {
+                        persisted.completeExceptionally(new IllegalStateException("日志写入线程已经停止"));
+                    }
+                    return;
+                }
+            }
+            queuedBytes.addAndGet(length);
+            shard.queue.put(new PendingWrite(file, content, durability, persisted, index));
+        } catch (InterruptedException e) {
+            queuedBytes.addAndGet(-length);
+            Thread.currentThread().interrupt();
+            log.error("提交日志写入任务被中断：{}", file);
+        }
+    }
+
+    /**
+     * 一个写入分片，只由自己的写入线程访问打开的文件
+     */
+    private final class Shard {
+        /**
+         * 待写入的记录
+         */
+        private final BlockingQueue<PendingWrite> queue;
+        /**
+         * 打开的文件通道
+         */
+        private final ChannelCache channelCache;
+        /**
+         * 写入线程
+         */
+        private final Thread thread;
+        /**
+         * 溢出文件，没有开启溢出时为null
+         */
+        private final SpillFile spill;
+
+        private Shard(int index, int queueSize, int maxOpenFiles, SpillFile spill) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.spill = spill;
+            this.channelCache = new ChannelCache(maxOpenFiles);
+            this.thread = new Thread(this::run, "log_write:" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * 写入线程循环
+         */
+        private void run() {
+            List<PendingWrite> drained = new ArrayList<>(batchSize);
+            Map<String, FileBatch> pending = new LinkedHashMap<>();
+            int pendingCount = 0;
+            //是否有需要立即写入的sync级别记录
+            boolean pendingSync = false;
+            //是否有等待定时fsync的文件
+            boolean unsynced = false;
+            long lastFlush = System.nanoTime();
+            long lastSync = lastFlush;
+            try {
+                while (running || !queue.isEmpty()) {
+                    long now = System.nanoTime();
+                    long waitNanos = pendingCount == 0 ? flushIntervalNanos : flushIntervalNanos - (now - lastFlush);
+                    if (unsynced) {
+                        waitNanos = Math.min(waitNanos, syncIntervalNanos - (now - lastSync));
+                    }
+                    //有溢出的记录时不等待，队列处理完之后立即读回
+                    boolean replaying = Objects.nonNull(spill) && spill.isActive();
+                    PendingWrite first = pendingSync || replaying ? queue.poll() : queue.poll(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                    if (Objects.nonNull(first)) {
+                        drained.add(first);
+                        queue.drainTo(drained, Math.max(0, batchSize - pendingCount - 1));
+                        for (PendingWrite write : drained) {
+                            queuedBytes.addAndGet(-write.content.remaining());
+                            pending.computeIfAbsent(write.file, key -> new FileBatch()).add(write);
+                            pendingSync |= write.durability == Durability.SYNC;
+                        }
+                        pendingCount += drained.size();
+                        drained.clear();
+                    } else if (replaying) {
+                        pendingCount += replay(pending, Math.max(1, batchSize - pendingCount));
+                        //读回的sync级别记录同样立即写入
+                        pendingSync |= pending.values().stream().anyMatch(batch -> batch.durability == Durability.SYNC);
+                    }
+                    now = System.nanoTime();
+                    if (pendingCount >= batchSize || (pendingCount > 0 && (pendingSync || now - lastFlush >= flushIntervalNanos))) {
+                        unsynced |= flush(pending);
+                        pendingCount = 0;
+                        pendingSync = false;
+                        lastFlush = now;
+                    }
+                    if (unsynced && now - lastSync >= syncIntervalNanos) {
+                        channelCache.forceUnsynced();
+                        unsynced = false;
+                        lastSync = now;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                queue.drainTo(drained);
+                for (PendingWrite write : drained) {
+                    pending.computeIfAbsent(write.file, key -> new FileBatch()).add(write);
+                }
+                flush(pending);
+                //等待定时刷盘的文件在关闭之前刷到磁盘
+                channelCache.closeAll();
+                //没有读回的记录留到下次启动
+                if (Objects.nonNull(spill)) {
+                    spill.close();
+                }
+            }
+        }
+
+        /**
+         * 追加到溢出文件
+         *
+         * @param file       文件地址
+         * @param content    记录内容，追加之后归还
+         * @param durability 持久化级别
+         * @param persisted  按照持久化级别写入之后完成，可以为null
+         * @param index      索引信息，可以为null
+         * @return true：已经追加，false：追加失败，需要放入队列
+         */
+        private boolean spill(String file, ByteBuffer content, Durability durability, CompletableFuture<Void> persisted,
+                              IndexEntry index) {
+            try {
+                spill.append(file, content, durability, Objects.isNull(index) ? null : index.encode(), persisted);
+            } catch (IOException e) {
+                log.error("日志溢出到文件发生错误：{}", e.getMessage());
+                return false;
+            }
+            bufferPool.release(content);
+            spilledCounter.increment();
+            return true;
+        }
+
+        /**
+         * 追加溢出文件失败之后，等待已经溢出的记录全部读回，之后放入队列的记录才不会插队
+         *
+         * @return true：已经全部读回，false：写入线程已经停止
+         * @throws InterruptedException 等待被中断
+         */
+        private boolean awaitSpillDrained() throws InterruptedException {
+            while (!spill.awaitDrained(flushIntervalNanos)) {
+                if (!running) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 从溢出文件中按顺序读回记录，全部读完之后清空溢出文件
+         *
+         * @param pending  文件地址 -> 待写入的内容
+         * @param maxCount 最多读回的数量
+         * @return 读回的数量
+         */
+        private int replay(Map<String, FileBatch> pending, int maxCount) {
+            List<SpillFile.Spilled> spilled = new ArrayList<>(maxCount);
+            try {
+                spill.replay(spilled, maxCount);
+            } catch (IOException e) {
+                log.error("读回溢出的日志发生错误：{}", e.getMessage());
+                spill.discard();
+                return 0;
+            }
+            if (spilled.isEmpty()) {
+                spill.finishIfDrained();
+                return 0;
+            }
+            for (SpillFile.Spilled write : spilled) {
+                pending.computeIfAbsent(write.file, key -> new FileBatch())
+                        .add(new PendingWrite(write.file, write.content, write.durability, write.persisted,
+                                Objects.isNull(write.index) ? null : IndexEntry.decode(write.index)));
+            }
+            return spilled.size();
+        }
+
+        /**
+         * 按文件聚集写入，按照每个文件的持久化级别fsync
+         *
+         * @param pending 文件地址 -> 待写入的内容
+         * @return 是否有等待定时fsync的文件
+         */
+        private boolean flush(Map<String, FileBatch> pending) {
+            if (pending.isEmpty()) {
+                return false;
+            }
+            boolean unsynced = false;
+            long start = System.nanoTime();
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, FileBatch> entry : pending.entrySet()) {
+                String file = entry.getKey();
+                FileBatch batch = entry.getValue();
+                try {
+                    ChannelCache.OpenFile openFile = channelCache.get(file);
+                    //先滚动再写入，整批记录写入新的文件
+                    if (logRoller.shouldRoll(openFile, now)) {
+                        channelCache.close(file);
+                        channelCache.close(file + LogIndexer.SUFFIX);
+                        logRoller.roll(openFile.getPath());
+                        openFile = channelCache.get(file);
+                    }
+                    long offset = openFile.getSize();
+                    long[] lengths = batch.lengths();
+                    openFile.write(batch.contents.toArray(new ByteBuffer[0]));
+                    if (batch.indexed) {
+                        index(file, openFile, batch, offset, lengths);
+                    }
+                    if (batch.durability.forceOnWrite()) {
+                        openFile.force();
+                    } else if (batch.durability == Durability.INTERVAL) {
+                        openFile.markUnsynced();
+                        unsynced = true;
+                    }
+                    persistedCounter.increment(batch.contents.size());
+                    batch.complete(null);
+                } catch (IOException e) {
+                    log.error("向日志：{} 中写入数据发生错误：{}", file, e.getMessage());
+                    channelCache.close(file);
+                    batch.complete(e);
+                }
+                batch.contents.forEach(bufferPool::release);
+            }
+            pending.clear();
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return unsynced;
+        }
+
+        /**
+         * 写入这一批记录的索引，索引写入失败不影响记录
+         *
+         * @param file     文件地址
+         * @param openFile 打开的日志文件
+         * @param batch    这一批记录
+         * @param offset   第一条记录的偏移量
+         * @param lengths  每条记录的长度
+         */
+        private void index(String file, ChannelCache.OpenFile openFile, FileBatch batch, long offset, long[] lengths) {
+            long recordNumber = openFile.addRecords(lengths.length);
+            StringBuilder lines = new StringBuilder(lengths.length * 96);
+            for (int i = 0; i < lengths.length; i++) {
+                IndexEntry entry = batch.indexes.get(i);
+                if (Objects.nonNull(entry)) {
+                    logIndexer.append(lines, entry, offset, recordNumber + i);
+                }
+                offset += lengths[i];
+            }
+            String indexFile = file + LogIndexer.SUFFIX;
+            try {
+                channelCache.get(indexFile).write(new ByteBuffer[]{ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8))});
+            } catch (IOException e) {
+                log.error("向索引：{} 中写入数据发生错误：{}", indexFile, e.getMessage());
+                channelCache.close(indexFile);
+            }
+        }
+    }
+
+    /**
+     * 同一个文件在一次批量写入中的记录
+     */
+    private static final class FileBatch {
+        private final List<ByteBuffer> contents = new ArrayList<>();
+        /**
+         * 与记录一一对应的索引信息
+         */
+        private final List<IndexEntry> indexes = new ArrayList<>();
+        /**
+         * 是否有需要索引的记录
+         */
+        private boolean indexed;
+        /**
+         * 这一批记录中最高的持久化级别
+         */
+        private Durability durability = Durability.ASYNC;
+        /**
+         * 等待写入完成的调用，大多数时候为null
+         */
+        private List<CompletableFuture<Void>> waiters;
+
+        private void add(PendingWrite write) {
+            contents.add(write.content);
+            indexes.add(write.index);
+            indexed |= Objects.nonNull(write.index);
+            if (write.durability.compareTo(durability) > 0) {
+                durability = write.durability;
+            }
+            if (Objects.nonNull(write.persisted)) {
+                if (Objects.isNull(waiters)) {
+                    waiters = new ArrayList<>();
+                }
+                waiters.add(write.persisted);
+            }
+        }
+
+        /**
+         * 每条记录的长度，写入之前获取
+         *
+         * @return 长度
+         */
+        private long[] lengths() {
+            long[] lengths = new long[contents.size()];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = contents.get(i).remaining();
+            }
+            return lengths;
+        }
+
+        /**
+         * 通知等待的调用
+         *
+         * @param error 写入失败的原因，成功为null
+         */
+        private void complete(Throwable error) {
+            if (Objects.isNull(waiters)) {
+                return;
+            }
+            for (CompletableFuture<Void> waiter : waiters) {
+                if (Objects.isNull(error)) {
+                    waiter.complete(null);
+                } else {
+                    waiter.completeExceptionally(error);
+                }
+            }
+        }
+    }
+
+    /**
+     * 待写入的记录
+     */
+    private static final class PendingWrite {
+        private final String file;
+        private final ByteBuffer content;
+        private final Durability durability;
+        private final CompletableFuture<Void> persisted;
+        private final IndexEntry index;
+
+        private PendingWrite(String file, ByteBuffer content, Durability durability, CompletableFuture<Void> persisted,
+                             IndexEntry index) {
+            this.file = file;
+            this.content = content;
+            this.durability = durability;
+            this.persisted = persisted;
+            this.index = index;
+        }
+    }
+}
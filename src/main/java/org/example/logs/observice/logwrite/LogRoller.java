@@ -0,0 +1,190 @@
+package org.example.logs.observice.logwrite;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.index.LogIndexer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 日志文件滚动，按照文件大小和时间窗口滚动，滚动出来的文件在低优先级的后台线程中压缩
+ * <p>
+ * 正在写入的文件始终是 log.txt，滚动时按顺序重命名为 log-00001.txt、log-00002.txt ...，
+ * 压缩完成之后变为 log-00001.txt.gz，原文件删除
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class LogRoller {
+
+    /**
+     * 超过该大小滚动，0表示不按大小滚动
+     */
+    private final long maxSize;
+    /**
+     * 时间窗口（毫秒），跨越窗口滚动，0表示不按时间滚动
+     */
+    private final long windowMillis;
+    /**
+     * 是否压缩滚动出来的文件
+     */
+    private final boolean compress;
+
+    /**
+     * 压缩线程，只有一个低优先级的线程，写入线程从不等待压缩
+     */
+    private final ThreadPoolExecutor compressExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r, "log_compress:0");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    @Autowired
+    public LogRoller(LogConfig logConfig) {
+        this.maxSize = logConfig.getLong(LogConfig.LogConfigKey.rollingMaxSize, 0) * 1024 * 1024;
+        this.windowMillis = TimeUnit.MINUTES.toMillis(logConfig.getLong(LogConfig.LogConfigKey.rollingWindow, 0));
+        this.compress = logConfig.getBoolean(LogConfig.LogConfigKey.rollingCompress, true);
+    }
+
+    /**
+     * 是否需要滚动
+     *
+     * @param file 打开的文件
+     * @param now  当前时间
+     * @return true：需要滚动
+     */
+    public boolean shouldRoll(ChannelCache.OpenFile file, long now) {
+        if (file.getSize() <= 0) {
+            return false;
+        }
+        if (maxSize > 0 && file.getSize() >= maxSize) {
+            return true;
+        }
+        return windowMillis > 0 && window(file.getOpenedAt()) != window(now);
+    }
+
+    /**
+     * 滚动文件，调用之前需要关闭该文件
+     *
+     * @param path 正在写入的文件
+     */
+    public void roll(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        String suffix = dot > 0 ? name.substring(dot) : "";
+        Path target = path.resolveSibling(prefix + String.format("%05d", lastIndex(path.getParent(), prefix, suffix) + 1) + suffix);
+        try {
+            move(path, target);
+        } catch (IOException e) {
+            log.error("滚动日志文件：{} 失败：{}", path, e.getMessage());
+            return;
+        }
+        //索引文件随日志文件一起改名，压缩之后仍然按照解压后的偏移量查询
+        Path index = path.resolveSibling(name + LogIndexer.SUFFIX);
+        if (Files.exists(index)) {
+            try {
+                move(index, target.resolveSibling(target.getFileName() + LogIndexer.SUFFIX));
+            } catch (IOException e) {
+                log.error("滚动索引文件：{} 失败：{}", index, e.getMessage());
+            }
+        }
+        log.info("日志文件已滚动：{}", target);
+        if (compress) {
+            compressExecutor.execute(() -> gzip(target));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        compressExecutor.shutdown();
+        try {
+            compressExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 压缩文件，先写入临时文件，完成之后再改名，避免留下不完整的压缩文件
+     *
+     * @param file 需要压缩的文件
+     */
+    private void gzip(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".gz.tmp");
+        Path target = file.resolveSibling(file.getFileName() + ".gz");
+        try {
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+            }
+            move(temp, target);
+            Files.delete(file);
+        } catch (IOException e) {
+            log.error("压缩日志文件：{} 失败：{}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 已经存在的最大滚动编号，包括已经压缩的文件
+     */
+    private int lastIndex(Path directory, String prefix, String suffix) {
+        int last = 0;
+        File[] files = Objects.isNull(directory) ? null : directory.toFile().listFiles();
+        if (Objects.isNull(files)) {
+            return last;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            if (name.startsWith(prefix) && name.endsWith(suffix) && name.length() > prefix.length() + suffix.length()) {
+                try {
+                    last = Math.max(last, Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException ignored) {
+                    //不是滚动出来的文件
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 本地时区的时间窗口编号
+     */
+    private long window(long millis) {
+        return (millis + TimeZone.getDefault().getOffset(millis)) / windowMillis;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.logs.observice.logwrite;
 
+import org.example.logs.observice.LogEvent;
+
 /**
  * 持久化写入文本对象
  *
@@ -7,12 +9,17 @@ package org.example.logs.observice.logwrite;
  */
 public interface LogWrite {
 
-
     /**
-     * 持久化写入
+     * 按照配置的格式持久化一次方法调用
      *
-     * @param msg  需要写入的内容
-     * @param path 持久化地址
+     * @param event 日志事件
+     * @param path  持久化地址
+     */
+    void write(LogEvent event, String path);
+
+    /**
+     * 把内存中还没有写出的内容交给持久化阶段，关闭时在编码线程退出之后调用
      */
-    void write(String[] msg, String path);
+    default void flush() {
+    }
 }
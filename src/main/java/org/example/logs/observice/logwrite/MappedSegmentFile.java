@@ -0,0 +1,250 @@
+package org.example.logs.observice.logwrite;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * 使用内存映射分段写入的日志文件
+ * <p>
+ * 每个分段预先映射固定大小，写入只是一次内存复制，由操作系统负责回写；
+ * 分段写满之后切换到下一个分段，关闭时把最后一个分段截断为实际长度。
+ * 分段文件名为 log-00000.txt、log-00001.txt ...，重启之后从最大的编号之后继续
+ *
+ * @author 李昆城
+ */
+@Slf4j
+public class MappedSegmentFile {
+
+    /**
+     * 分段所在的目录
+     */
+    private final Path directory;
+    /**
+     * 分段文件名前缀
+     */
+    private final String prefix;
+    /**
+     * 分段文件名后缀
+     */
+    private final String suffix;
+    /**
+     * 每个分段的大小
+     */
+    private final int segmentSize;
+
+    /**
+     * 当前分段编号
+     */
+    private int segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean closed;
+
+    /**
+     * 最近一次写入的时间
+     */
+    private volatile long lastAccess;
+    /**
+     * 最近一次刷到磁盘的时间（纳秒）
+     */
+    private volatile long lastForce;
+    /**
+     * 是否有等待interval级别刷盘的写入
+     */
+    private volatile boolean dirty;
+
+    /**
+     * @param file        日志文件地址，分段文件按照它的文件名进行编号
+     * @param segmentSize 每个分段的大小
+     */
+    public MappedSegmentFile(String file, int segmentSize) {
+        Path path = Paths.get(file);
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.directory = Objects.isNull(path.getParent()) ? Paths.get(".") : path.getParent();
+        this.prefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        this.suffix = dot > 0 ? name.substring(dot) : "";
+        this.segmentSize = segmentSize;
+        this.segmentIndex = -1;
+        this.lastAccess = System.currentTimeMillis();
+        this.lastForce = System.nanoTime();
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param content 记录内容
+     * @return true：写入成功 false：该文件已经关闭，需要重新打开
+     * @throws IOException 映射分段失败
+     */
+    public synchronized boolean append(ByteBuffer content) throws IOException {
+        if (closed) {
+            return false;
+        }
+        lastAccess = System.currentTimeMillis();
+        if (Objects.isNull(buffer) || buffer.remaining() < content.remaining()) {
+            nextSegment(content.remaining());
+        }
+        buffer.put(content);
+        return true;
+    }
+
+    /**
+     * 关闭文件，最后一个分段截断为实际长度
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            log.error("关闭日志分段：{} 发生错误：{}", segmentPath(segmentIndex), e.getMessage());
+        }
+    }
+
+    /**
+     * 把当前分段的映射内存刷到磁盘，之前的分段在切换时已经刷盘
+     */
+    public synchronized void force() {
+        if (Objects.nonNull(buffer)) {
+            buffer.force();
+        }
+        dirty = false;
+        lastForce = System.nanoTime();
+    }
+
+    /**
+     * 标记有写入等待interval级别刷盘，由定时刷盘线程调用{@link #force()}
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public long getLastForce() {
+        return lastForce;
+    }
+
+    /**
+     * 切换到下一个分段
+     *
+     * @param minSize 需要写入的记录大小，超过分段大小时该分段单独扩大
+     * @throws IOException 映射失败
+     */
+    private void nextSegment(int minSize) throws IOException {
+        closeSegment();
+        if (segmentIndex < 0) {
+            Files.createDirectories(directory);
+            segmentIndex = lastSegmentIndex();
+        }
+        segmentIndex++;
+        channel = FileChannel.open(segmentPath(segmentIndex), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        } catch (IOException e) {
+            channel.close();
+            channel = null;
+            throw e;
+        }
+    }
+
+    /**
+     * 关闭当前分段，截断为实际写入的长度
+     *
+     * @throws IOException 截断失败
+     */
+    private void closeSegment() throws IOException {
+        if (Objects.isNull(channel)) {
+            return;
+        }
+        int length = buffer.position();
+        buffer.force();
+        unmap(buffer);
+        buffer = null;
+        try {
+            channel.truncate(length);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * 目录中已经存在的最大分段编号
+     *
+     * @return 最大编号，不存在返回-1
+     */
+    private int lastSegmentIndex() {
+        int last = -1;
+        File[] files = directory.toFile().listFiles();
+        if (Objects.isNull(files)) {
+            return last;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(suffix) && name.length() > prefix.length() + suffix.length()) {
+                try {
+                    last = Math.max(last, Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException ignored) {
+                    //不是分段文件
+                }
+            }
+        }
+        return last;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(prefix + String.format("%05d", index) + suffix);
+    }
+
+    /**
+     * 立即解除内存映射，否则在windows上无法截断文件。jdk没有公开的接口，只能尽力而为
+     *
+     * @param buffer 映射的内存
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            //jdk9及以上
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception ignored) {
+            //jdk8没有该方法
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (Objects.nonNull(cleaner)) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.debug("无法解除内存映射，等待垃圾回收：{}", e.getMessage());
+        }
+    }
+}
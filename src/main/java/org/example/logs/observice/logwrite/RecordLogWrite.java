@@ -0,0 +1,77 @@
+package org.example.logs.observice.logwrite;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.codec.LogCodec;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐条写入的日志持久化实现，按照配置的格式把每次调用编码为一条记录，具体怎么追加到文件由子类决定
+ *
+ * @author 李昆城
+ */
+@Slf4j
+public abstract class RecordLogWrite extends BaseLogWrite {
+
+    /**
+     * 编码并交给写入实现的耗时
+     */
+    private Timer writeTimer;
+
+    protected RecordLogWrite(LogConfig logConfig, Environment environment, List<LogCodec> logCodecs, LogMetrics logMetrics) {
+        super(logConfig, environment, logCodecs, logMetrics);
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        super.init();
+        writeTimer = logMetrics.writeTimer(sink);
+    }
+
+    /**
+     * 按照配置的格式持久化一次方法调用
+     *
+     * @param event 日志事件
+     * @param path  持久化地址
+     */
+    @Override
+    public void write(LogEvent event, String path) {
+        long start = System.nanoTime();
+        ResolvedPath resolvedPath = currentDay().resolve(path);
+        CompletableFuture<Void> persisted = event.getPersisted();
+        ByteBuffer content;
+        try {
+            content = logCodec.encode(event, resolvedPath.directory);
+        } catch (RuntimeException e) {
+            log.error("日志编码发生错误：{}", e.getMessage());
+            if (Objects.nonNull(persisted)) {
+                persisted.completeExceptionally(e);
+            }
+            return;
+        }
+        Durability eventDurability = Objects.isNull(event.getDurability()) ? durability : event.getDurability().orElse(durability);
+        append(resolvedPath.file, content, eventDurability, event);
+        writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 追加一条完整的记录，写入之后把记录内容归还到{@link org.example.logs.observice.buffer.BufferPool}
+     *
+     * @param file       文件地址
+     * @param content    记录内容
+     * @param durability 持久化级别
+     * @param event      日志事件，按照持久化级别写入之后完成其中的persisted
+     */
+    protected abstract void append(String file, ByteBuffer content, Durability durability, LogEvent event);
+}
@@ -0,0 +1,361 @@
+package org.example.logs.observice.logwrite;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.observice.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入队列积压时的溢出文件，已经编码好的记录顺序追加到本地文件，积压消失之后由写入线程按顺序读回
+ * <p>
+ * 每条记录为：文件地址长度(int) 文件地址(UTF-8) 持久化级别(byte) 索引长度(int) 索引(UTF-8) 记录长度(int) 记录内容，
+ * 追加由提交线程加锁完成，读取只由所属分片的写入线程完成，全部读完之后清空文件。
+ * 等待写入完成的记录在内存中按记录序号保存通知对象，读回时交还给写入线程。
+ * 进程退出时没有读完的记录保留在文件中，下次启动时继续写入
+ *
+ * @author 李昆城
+ */
+@Slf4j
+public class SpillFile {
+
+    /**
+     * 文件地址长度、持久化级别、索引长度、记录长度
+     */
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final BufferPool bufferPool;
+    /**
+     * 写入位置，只在锁内修改
+     */
+    private volatile long writePosition;
+    /**
+     * 读取位置，只由写入线程访问
+     */
+    private long readPosition;
+    /**
+     * 是否有没有读回的记录，之后提交的记录也要追加到文件，保证顺序
+     */
+    private volatile boolean active;
+    /**
+     * 追加的记录数量，只在锁内修改
+     */
+    private long appendedCount;
+    /**
+     * 读回的记录数量，只由写入线程访问
+     */
+    private long replayedCount;
+    /**
+     * 记录序号 -> 等待写入完成的调用
+     */
+    private final Map<Long, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param path       溢出文件地址
+     * @param bufferPool 读回的记录使用池中的缓冲区
+     * @throws IOException 打开文件失败
+     */
+    public SpillFile(Path path, BufferPool bufferPool) throws IOException {
+        Path parent = path.getParent();
+        if (Objects.nonNull(parent)) {
+            Files.createDirectories(parent);
+        }
+        this.path = path;
+        this.bufferPool = bufferPool;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.writePosition = recover();
+        this.active = writePosition > 0;
+        if (active) {
+            log.info("溢出文件：{} 中有上次没有写完的记录（{}字节），继续写入", path, writePosition);
+        }
+    }
+
+    /**
+     * 追加一条记录，调用之后记录内容可以归还
+     *
+     * @param file       文件地址
+     * @param content    记录内容
+     * @param durability 持久化级别
+     * @param index      编码之后的索引信息，可以为null
+     * @param persisted  按照持久化级别写入之后完成，可以为null
+     * @throws IOException 写入失败
+     */
+    public synchronized void append(String file, ByteBuffer content, Durability durability, String index,
+                                    CompletableFuture<Void> persisted) throws IOException {
+        byte[] fileBytes = file.getBytes(StandardCharsets.UTF_8);
+        byte[] indexBytes = Objects.isNull(index) ? new byte[0] : index.getBytes(StandardCharsets.UTF_8);
+        int length = content.remaining();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + fileBytes.length + indexBytes.length);
+        header.putInt(fileBytes.length).put(fileBytes).put((byte) durability.code())
+                .putInt(indexBytes.length).put(indexBytes).putInt(length).flip();
+        ByteBuffer[] buffers = {header, content.duplicate()};
+        channel.position(writePosition);
+        long written = 0;
+        long total = header.remaining() + length;
+        while (written < total) {
+            written += channel.write(buffers);
+        }
+        //写入位置更新之后写入线程才能读到该记录，通知对象要在之前放入
+        if (Objects.nonNull(persisted)) {
+            waiters.put(appendedCount, persisted);
+        }
+        appendedCount++;
+        writePosition += total;
+        active = true;
+    }
+
+    /**
+     * 按顺序读回记录，只由写入线程调用
+     *
+     * @param writes   读回的记录
+     * @param maxCount 最多读回的数量
+     * @return 读回的数量
+     * @throws IOException 读取失败
+     */
+    int replay(List<Spilled> writes, int maxCount) throws IOException {
+        long limit = writePosition;
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (count < maxCount && limit - readPosition >= HEADER_SIZE) {
+            header.clear();
+            readFully(header, readPosition);
+            int fileLength = header.getInt(0);
+            ByteBuffer rest = ByteBuffer.allocate(fileLength + 1 + 4);
+            readFully(rest, readPosition + 4);
+            int indexLength = rest.getInt(fileLength + 1);
+            ByteBuffer index = ByteBuffer.allocate(indexLength + 4);
+            readFully(index, readPosition + 4 + fileLength + 1 + 4);
+            int length = index.getInt(indexLength);
+            int headerLength = HEADER_SIZE + fileLength + indexLength;
+            if (limit - readPosition < headerLength + length) {
+                break;
+            }
+            Durability durability;
+            try {
+                durability = Durability.ofCode(rest.get(fileLength));
+            } catch (IllegalArgumentException e) {
+                //先交还已经读回的记录，下一次读取时再报告
+                if (count > 0) {
+                    break;
+                }
+                throw new IOException("溢出文件：" + path + " 中的记录无效：" + e.getMessage(), e);
+            }
+            String file = new String(rest.array(), 0, fileLength, StandardCharsets.UTF_8);
+            ByteBuffer content = bufferPool.acquire(length);
+            content.clear().limit(length);
+            readFully(content, readPosition + headerLength);
+            content.flip();
+            writes.add(new Spilled(file, content, durability,
+                    indexLength == 0 ? null : new String(index.array(), 0, indexLength, StandardCharsets.UTF_8),
+                    waiters.remove(replayedCount++)));
+            readPosition += headerLength + length;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 全部读完之后清空文件，之后提交的记录不再追加到文件
+     *
+     * @return true：已经全部读完
+     */
+    synchronized boolean finishIfDrained() {
+        if (readPosition < writePosition) {
+            return false;
+        }
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            log.error("清空溢出文件：{} 发生错误：{}", path, e.getMessage());
+        }
+        readPosition = 0;
+        writePosition = 0;
+        appendedCount = 0;
+        replayedCount = 0;
+        active = false;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * 等待全部读完，最多等待指定时间
+     *
+     * @param timeoutNanos 最长等待时间（纳秒）
+     * @return true：已经全部读完
+     * @throws InterruptedException 等待被中断
+     */
+    synchronized boolean awaitDrained(long timeoutNanos) throws InterruptedException {
+        if (active) {
+            TimeUnit.NANOSECONDS.timedWait(this, timeoutNanos);
+        }
+        return !active;
+    }
+
+    /**
+     * 读取失败时丢弃剩余的记录，避免写入线程反复读取同一个位置
+     */
+    synchronized void discard() {
+        log.error("丢弃溢出文件：{} 中没有读回的记录（{}字节）", path, writePosition - readPosition);
+        readPosition = writePosition;
+        failWaiters(new IOException("溢出文件读取失败，记录已经丢弃：" + path));
+        finishIfDrained();
+    }
+
+    /**
+     * 是否有没有读回的记录
+     *
+     * @return true：有
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 没有读回的字节数
+     *
+     * @return 字节数
+     */
+    public long size() {
+        return Math.max(0, writePosition - readPosition);
+    }
+
+    /**
+     * 关闭文件，没有读回的记录保留到下次启动
+     */
+    public synchronized void close() {
+        failWaiters(new IOException("关闭时还没有从溢出文件读回，保留到下次启动：" + path));
+        try {
+            if (readPosition > 0 && readPosition >= writePosition) {
+                channel.truncate(0);
+            } else if (readPosition > 0) {
+                //已经读回的部分不能再次写入，把剩余的记录移动到文件开头
+                compact();
+            }
+            channel.close();
+        } catch (IOException e) {
+            log.error("关闭溢出文件：{} 发生错误：{}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 通知所有还在等待的调用，记录没有按时写入
+     *
+     * @param error 原因
+     */
+    private void failWaiters(IOException error) {
+        for (CompletableFuture<Void> waiter : waiters.values()) {
+            waiter.completeExceptionally(error);
+        }
+        waiters.clear();
+    }
+
+    private void compact() throws IOException {
+        long remaining = writePosition - readPosition;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long from = readPosition;
+        long to = 0;
+        while (to < remaining) {
+            buffer.clear();
+            if (buffer.remaining() > remaining - to) {
+                buffer.limit((int) (remaining - to));
+            }
+            readFully(buffer, from);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                to += channel.write(buffer, to);
+            }
+            from = readPosition + to;
+        }
+        channel.truncate(remaining);
+        readPosition = 0;
+        writePosition = remaining;
+    }
+
+    /**
+     * 检查上次留下的记录，进程异常退出时末尾可能有写了一半的记录，截断到最后一条完整的记录
+     *
+     * @return 完整记录的结束位置
+     * @throws IOException 读取失败
+     */
+    private long recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (size - position >= HEADER_SIZE) {
+            header.clear();
+            readFully(header, position);
+            long fileLength = header.getInt(0);
+            if (fileLength < 0 || position + HEADER_SIZE + fileLength > size) {
+                break;
+            }
+            header.clear();
+            readFully(header, position + 4 + fileLength + 1);
+            long indexLength = header.getInt(0);
+            if (indexLength < 0 || position + HEADER_SIZE + fileLength + indexLength > size) {
+                break;
+            }
+            header.clear();
+            readFully(header, position + 4 + fileLength + 1 + 4 + indexLength);
+            long next = position + HEADER_SIZE + fileLength + indexLength + header.getInt(0);
+            if (next > size) {
+                break;
+            }
+            position = next;
+            appendedCount++;
+        }
+        if (position < size) {
+            log.warn("丢弃溢出文件：{} 末尾不完整的记录（{}字节）", path, size - position);
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("溢出文件不完整：" + path);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * 读回的一条记录
+     */
+    static final class Spilled {
+        final String file;
+        final ByteBuffer content;
+        final Durability durability;
+        /**
+         * 编码之后的索引信息，没有时为null
+         */
+        final String index;
+        /**
+         * 等待写入完成的调用，没有时为null
+         */
+        final CompletableFuture<Void> persisted;
+
+        private Spilled(String file, ByteBuffer content, Durability durability, String index,
+                        CompletableFuture<Void> persisted) {
+            this.file = file;
+            this.content = content;
+            this.durability = durability;
+            this.index = index;
+            this.persisted = persisted;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.logs.observice.logwrite.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Counter;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.buffer.BufferPool;
+import org.example.logs.observice.codec.LogCodec;
+import org.example.logs.observice.logwrite.RecordLogWrite;
+import org.example.logs.observice.logwrite.Durability;
+import org.example.logs.observice.logwrite.MappedSegmentFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存映射分段写入的请求日志，目录结构与{@link RequestLog}相同，
+ * 通过 log.params.writer=mappedSegmentLog 启用
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class MappedSegmentLog extends RecordLogWrite {
+
+    /**
+     * 文件地址 -> 分段文件
+     */
+    private final Map<String, MappedSegmentFile> files = new ConcurrentHashMap<>();
+    /**
+     * 每个分段的大小
+     */
+    private final int segmentSize;
+    /**
+     * 最多同时映射的文件数量
+     */
+    private final int maxOpenFiles;
+    /**
+     * interval级别fsync的间隔（纳秒）
+     */
+    private final long syncIntervalNanos;
+    /**
+     * 写入文件的数量
+     */
+    private Counter persistedCounter;
+    /**
+     * 写入之后归还记录缓冲区
+     */
+    private final BufferPool bufferPool;
+    /**
+     * interval级别的定时刷盘线程，写入停止之后也能在间隔内刷到磁盘
+     */
+    private final ScheduledThreadPoolExecutor forcer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "log_force:0");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public MappedSegmentLog(LogConfig logConfig, Environment environment,
+                            List<LogCodec> logCodecs, LogMetrics logMetrics, BufferPool bufferPool) {
+        super(logConfig, environment, logCodecs, logMetrics);
+        this.bufferPool = bufferPool;
+        this.segmentSize = logConfig.getInt(LogConfig.LogConfigKey.mappedSegmentSize, 64) * 1024 * 1024;
+        this.maxOpenFiles = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.writerMaxOpenFiles, 64));
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, logConfig.getLong(LogConfig.LogConfigKey.durabilityInterval, 1000)));
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        super.init();
+        persistedCounter = logMetrics.persistedCounter(sink);
+        forcer.scheduleWithFixedDelay(this::forceDirty, syncIntervalNanos, syncIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 复制到当前分段的映射内存中，按照持久化级别把映射内存刷到磁盘，
+     * interval级别在写入时检查距离上次刷盘是否超过间隔，没有超过的由定时刷盘线程处理
+     *
+     * @param file       文件地址
+     * @param content    记录内容
+     * @param durability 持久化级别
+     * @param event      日志事件
+     */
+    @Override
+    protected void append(String file, ByteBuffer content, Durability durability, LogEvent event) {
+        CompletableFuture<Void> persisted = event.getPersisted();
+        try {
+            while (true) {
+                MappedSegmentFile segmentFile = files.get(file);
+                if (Objects.isNull(segmentFile)) {
+                    segmentFile = files.computeIfAbsent(file, key -> new MappedSegmentFile(key, segmentSize));
+                    evictIdle();
+                }
+                if (segmentFile.append(content)) {
+                    if (durability.forceOnWrite()
+                            || (durability == Durability.INTERVAL && System.nanoTime() - segmentFile.getLastForce() >= syncIntervalNanos)) {
+                        segmentFile.force();
+                    } else if (durability == Durability.INTERVAL) {
+                        segmentFile.markDirty();
+                    }
+                    persistedCounter.increment();
+                    if (Objects.nonNull(persisted)) {
+                        persisted.complete(null);
+                    }
+                    return;
+                }
+                //已经被淘汰关闭，重新打开
+                files.remove(file, segmentFile);
+            }
+        } catch (IOException e) {
+            log.error("向日志：{} 中写入数据发生错误：{}", file, e.getMessage());
+            if (Objects.nonNull(persisted)) {
+                persisted.completeExceptionally(e);
+            }
+        } finally {
+            bufferPool.release(content);
+        }
+    }
+
+    /**
+     * 把有interval级别写入、并且距离上次刷盘超过间隔的文件刷到磁盘
+     */
+    private void forceDirty() {
+        long now = System.nanoTime();
+        for (MappedSegmentFile segmentFile : files.values()) {
+            if (segmentFile.isDirty() && now - segmentFile.getLastForce() >= syncIntervalNanos) {
+                try {
+                    segmentFile.force();
+                } catch (RuntimeException e) {
+                    log.error("定时刷盘发生错误：{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 打开的文件超过上限时，关闭最久没有写入的文件
+     */
+    private void evictIdle() {
+        while (files.size() > maxOpenFiles) {
+            Map.Entry<String, MappedSegmentFile> eldest = null;
+            for (Map.Entry<String, MappedSegmentFile> entry : files.entrySet()) {
+                if (Objects.isNull(eldest) || entry.getValue().getLastAccess() < eldest.getValue().getLastAccess()) {
+                    eldest = entry;
+                }
+            }
+            if (Objects.isNull(eldest) || !files.remove(eldest.getKey(), eldest.getValue())) {
+                return;
+            }
+            eldest.getValue().close();
+        }
+    }
+
+    /**
+     * 关闭所有文件，最后一个分段截断为实际长度
+     */
+    @PreDestroy
+    public void close() {
+        forcer.shutdownNow();
+        files.values().forEach(MappedSegmentFile::close);
+        files.clear();
+    }
+}
@@ -0,0 +1,280 @@
+package org.example.logs.observice.logwrite.impl;
+
+import com.alibaba.fastjson.JSON;
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.codec.LogCodec;
+import org.example.logs.observice.logwrite.BaseLogWrite;
+import org.example.logs.observice.logwrite.Durability;
+import org.example.logs.observice.logwrite.GroupCommitWriter;
+import org.example.logs.stats.LatencyHistogram;
+import org.example.logs.utils.DateUtils;
+import org.example.logs.utils.TimestampFormatter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间段汇总的请求日志，不写入单次调用，每个方法每个时间段在 rollup.txt 中写入一行json：
+ * 调用次数、异常次数、最小/平均/最大执行时间、百分位和执行时间直方图，执行时间单位为毫秒，保留3位小数。
+ * 通过 log.params.writer=rollupLog 启用，时间段长度为 log.params.rollupInterval
+ * <p>
+ * 编码线程只对所在时间段的直方图做原子自增（分段计数），不加锁；汇总线程在时间段结束之后写出并丢弃，
+ * 超过写出时间才到达的调用单独写出一行同一时间段的汇总。
+ * 关闭时由{@link org.example.logs.observice.PipelineShutdown}在排空写入队列之前调用{@link #drain()}写出最后的时间段
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class RollupLog extends BaseLogWrite {
+
+    /**
+     * 汇总文件名称
+     */
+    public static final String FILE_NAME = "rollup.txt";
+    /**
+     * 时间段结束之后等待采集和编码队列中的调用的时间（毫秒）
+     */
+    private static final long FLUSH_DELAY = 2000;
+    private static final TimestampFormatter TIME_FORMATTER = TimestampFormatter.of(DateUtils.NOW);
+
+    private final GroupCommitWriter groupCommitWriter;
+    /**
+     * 时间段长度（毫秒）
+     */
+    private final long intervalMillis;
+    /**
+     * 时间段开始时间 -> 时间段
+     */
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    /**
+     * 汇总线程
+     */
+    private final ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "log_rollup:0");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * 写出的汇总数量
+     */
+    private Counter persistedCounter;
+
+    @Autowired
+    public RollupLog(LogConfig logConfig, Environment environment, GroupCommitWriter groupCommitWriter,
+                     List<LogCodec> logCodecs, LogMetrics logMetrics) {
+        super(logConfig, environment, logCodecs, logMetrics);
+        this.groupCommitWriter = groupCommitWriter;
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, logConfig.getLong(LogConfig.LogConfigKey.rollupInterval, 60)));
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        super.init();
+        persistedCounter = logMetrics.persistedCounter(sink);
+        flusher.scheduleWithFixedDelay(() -> flush(System.currentTimeMillis() - FLUSH_DELAY), 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 计入调用所在时间段的汇总，不编码
+     *
+     * @param event 日志事件
+     * @param path  持久化地址
+     */
+    @Override
+    public void write(LogEvent event, String path) {
+        long startTime = Objects.isNull(event.getStartTime()) ? System.currentTimeMillis() : event.getStartTime();
+        long endTime = Objects.isNull(event.getEndTime()) ? startTime : event.getEndTime();
+        boolean error = Objects.nonNull(event.getErrorLocation()) && !event.getErrorLocation().isEmpty()
+                || Objects.nonNull(event.getErrorMsg()) && !event.getErrorMsg().isEmpty();
+        //没有测量值时（例如直接发布的事件）才用毫秒时间相减
+        long nanos = Objects.nonNull(event.getDurationNanos()) ? event.getDurationNanos()
+                : TimeUnit.MILLISECONDS.toNanos(endTime - startTime);
+        long bucketStart = startTime - Math.floorMod(startTime, intervalMillis);
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(bucketStart, Bucket::new);
+            if (bucket.record(path, event.getTargetAddress(), nanos, error)) {
+                break;
+            }
+            //已经被汇总线程取走，放入新的时间段对象
+            buckets.remove(bucketStart, bucket);
+        }
+        //汇总不写入单次调用，sync级别的调用不需要等待
+        if (Objects.nonNull(event.getPersisted())) {
+            event.getPersisted().complete(null);
+        }
+    }
+
+    /**
+     * 写出所有时间段，包括还没有结束的时间段
+     */
+    @Override
+    public void flush() {
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * 写出结束时间不晚于指定时间的时间段
+     *
+     * @param before 截止时间
+     */
+    private synchronized void flush(long before) {
+        for (Bucket bucket : new ArrayList<>(buckets.values())) {
+            if (bucket.start + intervalMillis > before) {
+                continue;
+            }
+            buckets.remove(bucket.start, bucket);
+            bucket.close();
+            try {
+                bucket.methods.forEach((key, histogram) -> append(bucket, key, histogram));
+            } catch (RuntimeException e) {
+                log.error("写出汇总日志发生错误：{}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void append(Bucket bucket, MethodKey key, LatencyHistogram histogram) {
+        long count = histogram.getCount();
+        if (count == 0) {
+            return;
+        }
+        Map<String, Object> line = new LinkedHashMap<>(32);
+        line.put("time", TIME_FORMATTER.format(bucket.start));
+        line.put("startTime", bucket.start);
+        line.put("interval", intervalMillis);
+        line.put("targetAddress", key.method);
+        line.put("count", count);
+        line.put("errors", histogram.getErrors());
+        line.put("min", millis(histogram.getMin()));
+        line.put("avg", millis(Math.round(histogram.getTotal() / (double) count)));
+        line.put("max", millis(histogram.getMax()));
+        line.put("p50", millis(histogram.percentile(50)));
+        line.put("p90", millis(histogram.percentile(90)));
+        line.put("p99", millis(histogram.percentile(99)));
+        //执行时间直方图：桶的上界（毫秒） -> 次数
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        histogram.buckets().forEach((upper, value) -> distribution.merge(String.valueOf(millis(upper)), value, Long::sum));
+        line.put("histogram", distribution);
+        String file = directoryOf(key.path, Instant.ofEpochMilli(bucket.start).atZone(ZoneId.systemDefault()).toLocalDate())
+                + (prod ? "/" : "\\") + FILE_NAME;
+        byte[] content = (JSON.toJSONString(line) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        groupCommitWriter.submit(file, ByteBuffer.wrap(content), durability, null, null);
+        persistedCounter.increment();
+    }
+
+    /**
+     * 纳秒转换为毫秒，保留3位小数
+     */
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * 停止汇总线程，写出所有时间段，必须在{@link GroupCommitWriter#drain(long)}之前调用
+     */
+    public void drain() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    @PreDestroy
+    public void stop() {
+        drain();
+    }
+
+    /**
+     * 持久化地址和方法地址
+     */
+    private static final class MethodKey {
+        private final String path;
+        private final String method;
+
+        private MethodKey(String path, String method) {
+            this.path = path;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey that = (MethodKey) o;
+            return Objects.equals(path, that.path) && Objects.equals(method, that.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, method);
+        }
+    }
+
+    /**
+     * 一个时间段内每个方法的直方图
+     */
+    private static final class Bucket {
+        private final long start;
+        private final Map<MethodKey, LatencyHistogram> methods = new ConcurrentHashMap<>();
+        /**
+         * 正在计入的调用数量，汇总线程等待归零之后再读取
+         */
+        private final LongAdder writers = new LongAdder();
+        private volatile boolean closed;
+
+        private Bucket(long start) {
+            this.start = start;
+        }
+
+        /**
+         * 计入一次调用
+         *
+         * @return false：已经被汇总线程取走
+         */
+        private boolean record(String path, String method, long nanos, boolean error) {
+            writers.increment();
+            try {
+                if (closed) {
+                    return false;
+                }
+                methods.computeIfAbsent(new MethodKey(path, method), key -> new LatencyHistogram()).record(nanos, error);
+                return true;
+            } finally {
+                writers.decrement();
+            }
+        }
+
+        /**
+         * 不再计入新的调用，等待正在计入的调用完成
+         */
+        private void close() {
+            closed = true;
+            while (writers.sum() != 0) {
+                Thread.yield();
+            }
+        }
+    }
+}
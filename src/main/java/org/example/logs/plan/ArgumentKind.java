@@ -0,0 +1,91 @@
+package org.example.logs.plan;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 参数槽位类型，启动时根据方法声明的参数类型确定
+ *
+ * @author 李昆城
+ */
+public enum ArgumentKind {
+
+    /**
+     * 普通参数，直接序列化
+     */
+    VALUE(null),
+    /**
+     * 请求对象，使用占位符代替
+     */
+    REQUEST("request"),
+    /**
+     * 响应对象，使用占位符代替
+     */
+    RESPONSE("response"),
+    /**
+     * 上传文件，使用占位符代替
+     */
+    MULTIPART_FILE("multipartFile"),
+    /**
+     * 声明类型过于宽泛（例如Object），只能在运行时判断实际类型
+     */
+    DYNAMIC(null);
+
+    /**
+     * 代替参数值的占位符
+     */
+    private final String placeholder;
+
+    ArgumentKind(String placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * 根据声明的参数类型确定槽位类型
+     *
+     * @param type 声明的参数类型
+     * @return 槽位类型
+     */
+    public static ArgumentKind ofDeclaredType(Class<?> type) {
+        if (HttpServletRequest.class.isAssignableFrom(type)) {
+            return REQUEST;
+        }
+        if (HttpServletResponse.class.isAssignableFrom(type)) {
+            return RESPONSE;
+        }
+        if (MultipartFile.class.isAssignableFrom(type)) {
+            return MULTIPART_FILE;
+        }
+        //Object、ServletRequest之类的父类型在运行时才能知道具体是什么
+        if (type.isAssignableFrom(HttpServletRequest.class) || type.isAssignableFrom(HttpServletResponse.class)
+                || type.isAssignableFrom(MultipartFile.class)) {
+            return DYNAMIC;
+        }
+        return VALUE;
+    }
+
+    /**
+     * 运行时判断参数的槽位类型，只有{@link #DYNAMIC}才需要调用
+     *
+     * @param value 参数值
+     * @return 槽位类型
+     */
+    public static ArgumentKind ofValue(Object value) {
+        if (value instanceof HttpServletRequest) {
+            return REQUEST;
+        }
+        if (value instanceof HttpServletResponse) {
+            return RESPONSE;
+        }
+        if (value instanceof MultipartFile) {
+            return MULTIPART_FILE;
+        }
+        return VALUE;
+    }
+}
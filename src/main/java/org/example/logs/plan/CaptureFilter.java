@@ -0,0 +1,31 @@
+package org.example.logs.plan;
+
+/**
+ * 方法执行完成之后按执行时间和是否发生异常决定是否采集，没有采集的调用只计入方法统计，不持有参数和返回值
+ *
+ * @author 李昆城
+ */
+public enum CaptureFilter {
+
+    /**
+     * 全部采集
+     */
+    ALL,
+    /**
+     * 只采集执行时间不小于 slowThreshold 的调用
+     */
+    SLOW,
+    /**
+     * 只采集发生异常的调用
+     */
+    ERROR,
+    /**
+     * 采集执行时间不小于 slowThreshold 或者发生异常的调用
+     */
+    SLOW_OR_ERROR,
+    /**
+     * 每个时间窗口只采集最慢的 topN 次调用：比当前窗口内第N慢的调用更慢时才采集，
+     * 采集到的是最慢的N次调用的超集
+     */
+    TOP_N
+}
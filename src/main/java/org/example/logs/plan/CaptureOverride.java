@@ -0,0 +1,133 @@
+package org.example.logs.plan;
+
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.LogConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 运行时覆盖注解上的采集配置，为null的项使用注解上的值，创建之后不可变
+ *
+ * @author 李昆城
+ */
+@Getter
+public final class CaptureOverride {
+
+    /**
+     * 是否采集，false时只执行方法
+     */
+    private final Boolean enabled;
+    private final Boolean param;
+    private final Boolean result;
+    private final Boolean timestamp;
+    private final Boolean dataPersistence;
+    private final Double sampleRate;
+    private final String path;
+
+    public CaptureOverride(Boolean enabled, Boolean param, Boolean result, Boolean timestamp, Boolean dataPersistence,
+                           Double sampleRate, String path) {
+        if (Objects.nonNull(sampleRate) && (sampleRate < 0 || sampleRate > 1)) {
+            throw new IllegalArgumentException("采样比例必须在0到1之间：" + sampleRate);
+        }
+        this.enabled = enabled;
+        this.param = param;
+        this.result = result;
+        this.timestamp = timestamp;
+        this.dataPersistence = dataPersistence;
+        this.sampleRate = sampleRate;
+        this.path = path;
+    }
+
+    /**
+     * 解析配置文件中的写法，例如 enabled=false,param=false,sampleRate=0.1
+     *
+     * @param text 逗号分隔的 名称=值
+     * @return 覆盖配置
+     */
+    public static CaptureOverride parse(String text) {
+        Map<String, String> values = new LinkedHashMap<>(8);
+        for (String item : StringUtils.split(StringUtils.defaultString(text), ',')) {
+            int index = item.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("无效的采集配置：" + item);
+            }
+            values.put(item.substring(0, index).trim(), item.substring(index + 1).trim());
+        }
+        for (String key : values.keySet()) {
+            if (!StringUtils.equalsAny(key, "enabled", "param", "result", "timestamp", "dataPersistence", "sampleRate", "path")) {
+                throw new IllegalArgumentException("不存在的采集配置：" + key);
+            }
+        }
+        String sampleRate = values.get("sampleRate");
+        return new CaptureOverride(bool(values.get("enabled")), bool(values.get("param")), bool(values.get("result")),
+                bool(values.get("timestamp")), bool(values.get("dataPersistence")),
+                Objects.isNull(sampleRate) ? null : Double.valueOf(sampleRate), values.get("path"));
+    }
+
+    /**
+     * 校验持久化地址，只能是日志的持久化地址（log.params.path）或者它的子目录，
+     * 避免通过运行时修改把调用参数写到任意目录
+     *
+     * @param logConfig 日志配置
+     * @throws IllegalArgumentException 地址不在持久化地址之下
+     */
+    public void checkPath(LogConfig logConfig) {
+        if (Objects.nonNull(path) && !logConfig.isUnderPath(path)) {
+            throw new IllegalArgumentException("持久化地址不在日志持久化地址之下：" + path);
+        }
+    }
+
+    private static Boolean bool(String value) {
+        return Objects.isNull(value) ? null : Boolean.valueOf(value);
+    }
+
+    /**
+     * 合并另一个覆盖配置，另一个中不为null的项优先
+     *
+     * @param other 优先的覆盖配置，可以为null
+     * @return 合并之后的覆盖配置
+     */
+    public CaptureOverride merge(CaptureOverride other) {
+        if (Objects.isNull(other)) {
+            return this;
+        }
+        return new CaptureOverride(first(other.enabled, enabled), first(other.param, param), first(other.result, result),
+                first(other.timestamp, timestamp), first(other.dataPersistence, dataPersistence),
+                first(other.sampleRate, sampleRate), first(other.path, path));
+    }
+
+    private static <T> T first(T value, T fallback) {
+        return Objects.nonNull(value) ? value : fallback;
+    }
+
+    /**
+     * 不为null的项
+     *
+     * @return 名称 -> 值
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> values = new LinkedHashMap<>(8);
+        put(values, "enabled", enabled);
+        put(values, "param", param);
+        put(values, "result", result);
+        put(values, "timestamp", timestamp);
+        put(values, "dataPersistence", dataPersistence);
+        put(values, "sampleRate", sampleRate);
+        put(values, "path", path);
+        return values;
+    }
+
+    private static void put(Map<String, Object> values, String key, Object value) {
+        if (Objects.nonNull(value)) {
+            values.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
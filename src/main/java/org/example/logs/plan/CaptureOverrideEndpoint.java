@@ -0,0 +1,78 @@
+package org.example.logs.plan;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 运行时修改采集配置，target为类名或者完整方法地址，方法上的配置优先
+ * <pre>
+ * GET    /actuator/capture          所有覆盖配置
+ * GET    /actuator/capture/{target} 单个目标的覆盖配置
+ * POST   /actuator/capture/{target} 修改，json中可以包含enabled、param、result、timestamp、dataPersistence、sampleRate、path
+ * DELETE /actuator/capture/{target} 删除单个目标的覆盖配置
+ * DELETE /actuator/capture          恢复为配置文件中的覆盖配置
+ * </pre>
+ * path只能是日志的持久化地址或者它的子目录，无效的配置返回400。
+ * 可以打开任意方法的参数采集，默认不暴露，需要加入 management.endpoints.web.exposure.include，
+ * 并且放在鉴权或者单独的管理端口之后
+ *
+ * @author 李昆城
+ */
+@Component
+@Endpoint(id = "capture")
+public class CaptureOverrideEndpoint {
+
+    private final CaptureOverrideRegistry captureOverrideRegistry;
+
+    @Autowired
+    public CaptureOverrideEndpoint(CaptureOverrideRegistry captureOverrideRegistry) {
+        this.captureOverrideRegistry = captureOverrideRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> overrides() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        captureOverrideRegistry.getCurrent().getOverrides().forEach((target, override) -> result.put(target, override.toMap()));
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> target(@Selector String target) {
+        CaptureOverride override = captureOverrideRegistry.getCurrent().getOverrides().get(target);
+        return Objects.isNull(override) ? null : override.toMap();
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Selector String target, @Nullable Boolean enabled, @Nullable Boolean param,
+                                      @Nullable Boolean result, @Nullable Boolean timestamp,
+                                      @Nullable Boolean dataPersistence, @Nullable Double sampleRate,
+                                      @Nullable String path) {
+        try {
+            return captureOverrideRegistry.update(target,
+                    new CaptureOverride(enabled, param, result, timestamp, dataPersistence, sampleRate, path)).toMap();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    @DeleteOperation
+    public void remove(@Selector String target) {
+        captureOverrideRegistry.remove(target);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        captureOverrideRegistry.reset();
+    }
+}
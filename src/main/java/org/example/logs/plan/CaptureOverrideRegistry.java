@@ -0,0 +1,106 @@
+package org.example.logs.plan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 采集配置的运行时覆盖，启动时从 log.capture 加载，运行期间通过 /actuator/capture 修改
+ * <p>
+ * 覆盖配置保存在不可变快照中，修改时整体替换；调用时只需要一次volatile读取快照，
+ * 每个方法缓存自己在当前快照下的采集计划，快照没有变化时直接使用
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class CaptureOverrideRegistry {
+
+    /**
+     * 配置文件中的覆盖配置，重置时恢复
+     */
+    private final CaptureOverrides configured;
+    private final LogConfig logConfig;
+    private volatile CaptureOverrides current;
+
+    @Autowired
+    public CaptureOverrideRegistry(LogConfig logConfig) {
+        this.logConfig = logConfig;
+        Map<String, CaptureOverride> overrides = new LinkedHashMap<>(16);
+        if (Objects.nonNull(logConfig.getCapture())) {
+            logConfig.getCapture().forEach((target, text) -> {
+                try {
+                    CaptureOverride override = CaptureOverride.parse(text);
+                    override.checkPath(logConfig);
+                    overrides.put(target, override);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("log.capture中 " + target + " 的配置无效：" + e.getMessage(), e);
+                }
+            });
+        }
+        this.configured = new CaptureOverrides(overrides);
+        this.current = configured;
+        if (!overrides.isEmpty()) {
+            log.info("采集配置覆盖：{}", overrides);
+        }
+    }
+
+    /**
+     * 计算方法当前生效的采集计划
+     *
+     * @param base 注解上的采集计划，可以为null
+     * @return 生效的采集计划
+     */
+    public CapturePlan resolve(CapturePlan base) {
+        return Objects.isNull(base) ? null : base.resolve(current);
+    }
+
+    /**
+     * 当前的覆盖配置
+     *
+     * @return 快照
+     */
+    public CaptureOverrides getCurrent() {
+        return current;
+    }
+
+    /**
+     * 合并一个目标的覆盖配置
+     *
+     * @param target   类名或者完整方法地址
+     * @param override 覆盖配置，不为null的项替换原来的值
+     * @return 合并之后的覆盖配置
+     * @throws IllegalArgumentException 持久化地址不在日志持久化地址之下
+     */
+    public synchronized CaptureOverride update(String target, CaptureOverride override) {
+        override.checkPath(logConfig);
+        CaptureOverride existing = current.getOverrides().get(target);
+        CaptureOverride merged = Objects.isNull(existing) ? override : existing.merge(override);
+        current = current.with(target, merged);
+        log.info("采集配置已修改：{} -> {}", target, merged);
+        return merged;
+    }
+
+    /**
+     * 删除一个目标的覆盖配置
+     *
+     * @param target 类名或者完整方法地址
+     */
+    public synchronized void remove(String target) {
+        current = current.with(target, null);
+        log.info("采集配置已删除：{}", target);
+    }
+
+    /**
+     * 恢复为配置文件中的覆盖配置
+     */
+    public synchronized void reset() {
+        current = configured;
+        log.info("采集配置已恢复为配置文件中的覆盖配置");
+    }
+}
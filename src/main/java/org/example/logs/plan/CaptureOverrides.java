@@ -0,0 +1,75 @@
+package org.example.logs.plan;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 所有运行时覆盖配置的不可变快照，修改时整体替换
+ *
+ * @author 李昆城
+ */
+public final class CaptureOverrides {
+
+    /**
+     * 没有任何覆盖配置
+     */
+    public static final CaptureOverrides EMPTY = new CaptureOverrides(Collections.emptyMap());
+
+    /**
+     * 类名或者完整方法地址 -> 覆盖配置
+     */
+    private final Map<String, CaptureOverride> overrides;
+
+    public CaptureOverrides(Map<String, CaptureOverride> overrides) {
+        this.overrides = Collections.unmodifiableMap(new LinkedHashMap<>(overrides));
+    }
+
+    /**
+     * 所有覆盖配置
+     *
+     * @return 类名或者完整方法地址 -> 覆盖配置
+     */
+    public Map<String, CaptureOverride> getOverrides() {
+        return overrides;
+    }
+
+    /**
+     * 替换一个目标的覆盖配置
+     *
+     * @param target   类名或者完整方法地址
+     * @param override 覆盖配置，为null时删除
+     * @return 新的快照
+     */
+    public CaptureOverrides with(String target, CaptureOverride override) {
+        Map<String, CaptureOverride> copy = new LinkedHashMap<>(overrides);
+        if (Objects.isNull(override)) {
+            copy.remove(target);
+        } else {
+            copy.put(target, override);
+        }
+        return new CaptureOverrides(copy);
+    }
+
+    /**
+     * 计算方法在该快照下的采集计划，方法上的覆盖配置优先于类上的覆盖配置
+     *
+     * @param base 注解上的采集计划
+     * @return 覆盖之后的采集计划，没有覆盖配置时为原计划
+     */
+    CapturePlan apply(CapturePlan base) {
+        if (overrides.isEmpty()) {
+            return base;
+        }
+        String method = base.getFullMethodPath();
+        int index = method.lastIndexOf('.');
+        CaptureOverride classOverride = index > 0 ? overrides.get(method.substring(0, index)) : null;
+        CaptureOverride methodOverride = overrides.get(method);
+        if (Objects.isNull(classOverride) && Objects.isNull(methodOverride)) {
+            return base;
+        }
+        CaptureOverride override = Objects.isNull(classOverride) ? methodOverride : classOverride.merge(methodOverride);
+        return new CapturePlan(base, override);
+    }
+}
@@ -0,0 +1,235 @@
+package org.example.logs.plan;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.example.logs.ShowParam;
+import org.example.logs.observice.logwrite.Durability;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个方法的采集计划，启动时构建，运行期间除了限流的令牌桶和最慢调用的堆之外不可变。
+ * 运行时的覆盖配置（{@link CaptureOverrides}）生成新的计划，与原计划共用令牌桶和最慢调用的堆
+ *
+ * @author 李昆城
+ */
+@Getter
+public final class CapturePlan {
+
+    /**
+     * 执行方法的完整方法地址
+     */
+    private final String fullMethodPath;
+    /**
+     * 是否采集，只能通过覆盖配置关闭
+     */
+    private final boolean enabled;
+    /**
+     * 是否打印参数
+     */
+    private final boolean param;
+    /**
+     * 是否打印返回值
+     */
+    private final boolean result;
+    /**
+     * 是否持久化
+     */
+    private final boolean dataPersistence;
+    /**
+     * 持久化地址
+     */
+    private final String path;
+    /**
+     * 是否打印执行时间
+     */
+    private final boolean timestamp;
+    /**
+     * 采样比例，大于等于1全部采集
+     */
+    private final double sampleRate;
+    /**
+     * 持久化级别，INHERIT表示使用全局配置
+     */
+    private final Durability durability;
+    /**
+     * 执行完成之后的过滤方式
+     */
+    private final CaptureFilter captureFilter;
+    /**
+     * SLOW、SLOW_OR_ERROR的执行时间门槛（纳秒）
+     */
+    @Getter(AccessLevel.NONE)
+    private final long slowThresholdNanos;
+    /**
+     * TOP_N当前窗口内最慢的调用，其他过滤方式为null
+     */
+    @Getter(AccessLevel.NONE)
+    private final SlowestCalls slowestCalls;
+    /**
+     * 每秒最多采集的次数，没有限制时为null
+     */
+    @Getter(AccessLevel.NONE)
+    private final TokenBucket tokenBucket;
+    /**
+     * 参数名称列表
+     */
+    @Getter(AccessLevel.NONE)
+    private final String[] parameterNames;
+    /**
+     * 参数槽位类型列表，与参数名称一一对应
+     */
+    @Getter(AccessLevel.NONE)
+    private final ArgumentKind[] argumentKinds;
+    /**
+     * 在最近一次使用的覆盖配置快照下的采集计划
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile Resolved resolved;
+
+    public CapturePlan(String fullMethodPath, ShowParam annotation, String[] parameterNames, ArgumentKind[] argumentKinds) {
+        this.fullMethodPath = fullMethodPath;
+        this.enabled = true;
+        this.param = annotation.param();
+        this.result = annotation.result();
+        this.dataPersistence = annotation.dataPersistence();
+        this.path = annotation.path();
+        this.timestamp = annotation.timestamp();
+        this.sampleRate = annotation.sampleRate();
+        this.durability = annotation.durability();
+        this.tokenBucket = annotation.maxPerSecond() > 0 ? new TokenBucket(annotation.maxPerSecond()) : null;
+        this.captureFilter = annotation.capture();
+        if ((captureFilter == CaptureFilter.SLOW || captureFilter == CaptureFilter.SLOW_OR_ERROR) && annotation.slowThreshold() <= 0) {
+            throw new IllegalStateException(fullMethodPath + " 使用" + captureFilter + "时slowThreshold必须大于0");
+        }
+        if (captureFilter == CaptureFilter.TOP_N && annotation.topN() <= 0) {
+            throw new IllegalStateException(fullMethodPath + " 使用TOP_N时topN必须大于0");
+        }
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(annotation.slowThreshold());
+        this.slowestCalls = captureFilter == CaptureFilter.TOP_N ? new SlowestCalls(annotation.topN(), annotation.topWindow()) : null;
+        this.parameterNames = parameterNames;
+        this.argumentKinds = argumentKinds;
+    }
+
+    /**
+     * 使用覆盖配置生成新的计划
+     *
+     * @param base     注解上的采集计划
+     * @param override 覆盖配置
+     */
+    CapturePlan(CapturePlan base, CaptureOverride override) {
+        this.fullMethodPath = base.fullMethodPath;
+        this.enabled = first(override.getEnabled(), base.enabled);
+        this.param = first(override.getParam(), base.param);
+        this.result = first(override.getResult(), base.result);
+        this.dataPersistence = first(override.getDataPersistence(), base.dataPersistence);
+        this.path = first(override.getPath(), base.path);
+        this.timestamp = first(override.getTimestamp(), base.timestamp);
+        this.sampleRate = first(override.getSampleRate(), base.sampleRate);
+        this.durability = base.durability;
+        this.captureFilter = base.captureFilter;
+        this.slowThresholdNanos = base.slowThresholdNanos;
+        this.slowestCalls = base.slowestCalls;
+        this.tokenBucket = base.tokenBucket;
+        this.parameterNames = base.parameterNames;
+        this.argumentKinds = base.argumentKinds;
+    }
+
+    private static <T> T first(T value, T fallback) {
+        return Objects.nonNull(value) ? value : fallback;
+    }
+
+    /**
+     * 在覆盖配置快照下生效的采集计划，快照没有变化时直接使用上一次的结果
+     *
+     * @param overrides 覆盖配置快照
+     * @return 生效的采集计划
+     */
+    CapturePlan resolve(CaptureOverrides overrides) {
+        Resolved current = resolved;
+        if (Objects.nonNull(current) && current.overrides == overrides) {
+            return current.plan;
+        }
+        CapturePlan plan = overrides.apply(this);
+        resolved = new Resolved(overrides, plan);
+        return plan;
+    }
+
+    /**
+     * 本次调用是否需要采集，先按比例采样，再按每秒次数限流
+     *
+     * @return true：需要采集
+     */
+    public boolean sample() {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        return Objects.isNull(tokenBucket) || tokenBucket.tryAcquire();
+    }
+
+    /**
+     * 方法执行完成之后是否需要采集，在调用线程中执行，不需要采集时不再持有参数和返回值
+     *
+     * @param durationNanos 执行时间（纳秒）
+     * @param error         是否发生异常
+     * @return true：需要采集
+     */
+    public boolean capture(long durationNanos, boolean error) {
+        switch (captureFilter) {
+            case SLOW:
+                return durationNanos >= slowThresholdNanos;
+            case ERROR:
+                return error;
+            case SLOW_OR_ERROR:
+                return error || durationNanos >= slowThresholdNanos;
+            case TOP_N:
+                return slowestCalls.offer(durationNanos);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 参数个数
+     *
+     * @return 参数个数
+     */
+    public int parameterCount() {
+        return parameterNames.length;
+    }
+
+    /**
+     * 获取参数名称
+     *
+     * @param index 参数下标
+     * @return 参数名称
+     */
+    public String parameterName(int index) {
+        return parameterNames[index];
+    }
+
+    /**
+     * 获取参数槽位类型
+     *
+     * @param index 参数下标
+     * @return 参数槽位类型
+     */
+    public ArgumentKind argumentKind(int index) {
+        return argumentKinds[index];
+    }
+
+    /**
+     * 覆盖配置快照和对应的采集计划
+     */
+    private static final class Resolved {
+        private final CaptureOverrides overrides;
+        private final CapturePlan plan;
+
+        private Resolved(CaptureOverrides overrides, CapturePlan plan) {
+            this.overrides = overrides;
+            this.plan = plan;
+        }
+    }
+}
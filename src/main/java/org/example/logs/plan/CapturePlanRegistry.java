@@ -0,0 +1,156 @@
+package org.example.logs.plan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.ShowParam;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 采集计划注册表，启动时扫描所有使用了{@link ShowParam}的bean，为每个方法构建一份采集计划，
+ * 运行时只需要查表，不再需要反射
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class CapturePlanRegistry implements BeanPostProcessor {
+
+    /**
+     * 参数名称解析器
+     */
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    /**
+     * 目标类 -> (方法 -> 采集计划)
+     */
+    private final Map<Class<?>, Map<Method, CapturePlan>> plans = new ConcurrentHashMap<>();
+
+    /**
+     * bean初始化完成之后，如果该bean使用了注解，则构建它的采集计划
+     *
+     * @param bean     bean对象，可能是代理对象
+     * @param beanName bean名称
+     * @return 原bean对象
+     * @throws BeansException 不会抛出
+     */
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        Class<?> targetClass = ClassUtils.getUserClass(AopUtils.getTargetClass(bean));
+        if (plans.containsKey(targetClass) || !isAnnotated(targetClass)) {
+            return bean;
+        }
+        Map<Method, CapturePlan> methodPlans = new ConcurrentHashMap<>(16);
+        for (Method method : targetClass.getMethods()) {
+            CapturePlan plan = buildPlan(targetClass, method);
+            if (Objects.nonNull(plan)) {
+                methodPlans.put(method, plan);
+            }
+        }
+        plans.put(targetClass, methodPlans);
+        log.info("{} 采集计划构建完成，共 {} 个方法", targetClass.getName(), methodPlans.size());
+        return bean;
+    }
+
+    /**
+     * 获取方法的采集计划，正常情况下只是查表。启动时没有扫描到的方法（例如原型bean、接口方法）会在第一次调用时构建并缓存
+     *
+     * @param targetClass 目标对象class
+     * @param method      执行的方法
+     * @return 采集计划，如果该方法没有注解则返回null
+     */
+    public CapturePlan find(Class<?> targetClass, Method method) {
+        Map<Method, CapturePlan> methodPlans = plans.get(targetClass);
+        if (Objects.nonNull(methodPlans)) {
+            CapturePlan plan = methodPlans.get(method);
+            if (Objects.nonNull(plan)) {
+                return plan;
+            }
+        } else {
+            methodPlans = plans.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>(16));
+        }
+        CapturePlan plan = buildPlan(targetClass, ClassUtils.getMostSpecificMethod(method, targetClass));
+        if (Objects.nonNull(plan)) {
+            methodPlans.put(method, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 注解上配置的所有持久化地址
+     *
+     * @return 不为空的持久化地址
+     */
+    public Set<String> paths() {
+        Set<String> paths = new HashSet<>();
+        for (Map<Method, CapturePlan> methodPlans : plans.values()) {
+            for (CapturePlan plan : methodPlans.values()) {
+                if (Objects.nonNull(plan.getPath()) && !plan.getPath().trim().isEmpty()) {
+                    paths.add(plan.getPath());
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * 判断该类上面或者方法上面是否使用了注解
+     *
+     * @param targetClass 目标类
+     * @return true：使用了注解
+     */
+    private boolean isAnnotated(Class<?> targetClass) {
+        if (targetClass.isAnnotationPresent(ShowParam.class)) {
+            return true;
+        }
+        for (Method method : targetClass.getMethods()) {
+            if (method.isAnnotationPresent(ShowParam.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 构建单个方法的采集计划
+     *
+     * @param targetClass 目标类
+     * @param method      方法
+     * @return 采集计划，如果方法和类上面都没有注解则返回null
+     */
+    private CapturePlan buildPlan(Class<?> targetClass, Method method) {
+        //方法上面的注解优先级大于类上面的注解
+        ShowParam annotation = method.getAnnotation(ShowParam.class);
+        if (Objects.isNull(annotation)) {
+            annotation = targetClass.getAnnotation(ShowParam.class);
+        }
+        if (Objects.isNull(annotation)) {
+            return null;
+        }
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+        if (Objects.isNull(parameterNames) || parameterNames.length != parameterTypes.length) {
+            //没有编译调试信息时使用参数下标作为名称
+            parameterNames = new String[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterNames[i] = "arg" + i;
+            }
+        }
+        ArgumentKind[] argumentKinds = new ArgumentKind[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            argumentKinds[i] = ArgumentKind.ofDeclaredType(parameterTypes[i]);
+        }
+        return new CapturePlan(targetClass.getName() + "." + method.getName(), annotation, parameterNames, argumentKinds);
+    }
+}
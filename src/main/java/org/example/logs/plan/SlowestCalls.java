@@ -0,0 +1,109 @@
+package org.example.logs.plan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个方法在当前时间窗口内最慢的N次执行时间，使用有界的小顶堆，窗口结束之后清空
+ * <p>
+ * 堆满之后堆顶就是采集的门槛，不比门槛慢的调用只有一次时间读取和两次volatile读，不加锁
+ *
+ * @author 李昆城
+ */
+public final class SlowestCalls {
+
+    /**
+     * 窗口长度（纳秒）
+     */
+    private final long windowNanos;
+    /**
+     * 小顶堆
+     */
+    private final long[] heap;
+    private int size;
+    /**
+     * 当前窗口的结束时间（纳秒计时）
+     */
+    private volatile long windowEnd;
+    /**
+     * 采集门槛，堆没有满时为-1
+     */
+    private volatile long threshold = -1;
+
+    /**
+     * @param capacity      保留的数量，必须大于0
+     * @param windowSeconds 窗口长度（秒）
+     */
+    public SlowestCalls(int capacity, long windowSeconds) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("保留的数量必须大于0：" + capacity);
+        }
+        this.heap = new long[capacity];
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds));
+        this.windowEnd = System.nanoTime() + windowNanos;
+    }
+
+    /**
+     * 尝试放入一次执行时间
+     *
+     * @param nanos 执行时间（纳秒）
+     * @return true：是当前窗口内最慢的N次之一，需要采集
+     */
+    public boolean offer(long nanos) {
+        long now = System.nanoTime();
+        if (now - windowEnd < 0 && nanos <= threshold) {
+            return false;
+        }
+        synchronized (this) {
+            if (now - windowEnd >= 0) {
+                size = 0;
+                threshold = -1;
+                windowEnd = now + windowNanos;
+            }
+            if (size < heap.length) {
+                siftUp(size++, nanos);
+                if (size == heap.length) {
+                    threshold = heap[0];
+                }
+                return true;
+            }
+            if (nanos <= heap[0]) {
+                return false;
+            }
+            siftDown(nanos);
+            threshold = heap[0];
+            return true;
+        }
+    }
+
+    private void siftUp(int index, long value) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    /**
+     * 替换堆顶
+     */
+    private void siftDown(long value) {
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
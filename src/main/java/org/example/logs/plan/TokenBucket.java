@@ -0,0 +1,60 @@
+package org.example.logs.plan;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的令牌桶，每秒生成固定数量的令牌，最多积攒一秒的令牌
+ * <p>
+ * 只保存下一个令牌的理论生成时间，获取令牌是一次时间读取加一次CAS，没有令牌时只有时间读取和一次volatile读
+ *
+ * @author 李昆城
+ */
+public final class TokenBucket {
+
+    /**
+     * 生成一个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+    /**
+     * 最多可以提前消耗的时间，即桶的容量
+     */
+    private final long burstNanos;
+    /**
+     * 下一个令牌的理论生成时间
+     */
+    private final AtomicLong nextTokenTime;
+
+    /**
+     * @param permitsPerSecond 每秒生成的令牌数量，必须大于0
+     */
+    public TokenBucket(int permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("每秒令牌数量必须大于0：" + permitsPerSecond);
+        }
+        this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+        this.nextTokenTime = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * 尝试获取一个令牌，不会等待
+     *
+     * @return true：获取成功
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long next = nextTokenTime.get();
+            //空闲之后最多只积攒一秒的令牌
+            long base = next - now < -burstNanos ? now - burstNanos : next;
+            long updated = base + intervalNanos;
+            if (updated - now > 0) {
+                return false;
+            }
+            if (nextTokenTime.compareAndSet(next, updated)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.example.logs.serialize;
+
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import org.example.logs.LogConfig;
+import org.example.logs.observice.buffer.RecordOutput;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 有长度上限的json序列化
+ * <p>
+ * 集合、数组、map只保留前N个元素；输出超过字节上限时立即停止序列化，已经输出的内容后面加上截断标记。
+ * 持久化时直接按UTF-8写入记录缓冲区，fastjson内部复用线程本地的字符缓冲区
+ *
+ * @author 李昆城
+ */
+@Component
+public class BoundedJsonSerializer {
+
+    /**
+     * 截断标记
+     */
+    public static final String TRUNCATED = "...(已截断)";
+
+    /**
+     * 输出的最大字节数（UTF-8），0表示不限制
+     */
+    private final int maxBytes;
+    /**
+     * 集合、数组、map最多保留的元素数量，0表示不限制
+     */
+    private final int maxElements;
+
+    @Autowired
+    public BoundedJsonSerializer(LogConfig logConfig) {
+        this.maxBytes = Math.max(0, logConfig.getInt(LogConfig.LogConfigKey.serializeMaxBytes, 8192));
+        this.maxElements = Math.max(0, logConfig.getInt(LogConfig.LogConfigKey.serializeMaxElements, 100));
+    }
+
+    /**
+     * 序列化为json
+     *
+     * @param value 需要序列化的对象
+     * @return json，超过上限时为截断之后的内容加上截断标记
+     */
+    public String toJson(Object value) {
+        StringOutput output = new StringOutput(maxBytes <= 0 ? Integer.MAX_VALUE : maxBytes);
+        write(value, output);
+        return output.exceeded ? output.content.append(TRUNCATED).toString() : output.content.toString();
+    }
+
+    /**
+     * 序列化为json，按UTF-8直接写入记录缓冲区，不产生中间的字符串
+     *
+     * @param value  需要序列化的对象
+     * @param output 记录缓冲区
+     */
+    public void writeJson(Object value, RecordOutput output) {
+        RecordWriter writer = new RecordWriter(maxBytes <= 0 ? Integer.MAX_VALUE : maxBytes, output);
+        write(value, writer);
+        output.endUtf8();
+        if (writer.exceeded) {
+            output.writeUtf8(TRUNCATED);
+        }
+    }
+
+    /**
+     * 打印和持久化共用的序列化入口，先按元素上限截断，再由fastjson按块写入，超过上限时输出抛出异常，序列化立即停止
+     * <p>
+     * 关闭时fastjson把剩余的内容写入输出之后才归还线程本地的字符缓冲区，
+     * 所以关闭之前切换为不再抛出异常、直接丢弃超出的内容，否则每次截断都会重新分配缓冲区
+     */
+    private void write(Object value, BoundedWriter writer) {
+        SerializeWriter out = new SerializeWriter(writer);
+        try {
+            new JSONSerializer(out).write(limitElements(value));
+        } catch (JSONException e) {
+            if (!writer.exceeded) {
+                throw e;
+            }
+        } finally {
+            writer.closing = true;
+            out.close();
+        }
+    }
+
+    /**
+     * 集合、数组、map超过元素上限时只保留前面的元素，只处理最外层
+     *
+     * @param value 对象
+     * @return 原对象或者截断之后的副本
+     */
+    public Object limitElements(Object value) {
+        if (maxElements <= 0 || Objects.isNull(value)) {
+            return value;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            if (collection.size() <= maxElements) {
+                return value;
+            }
+            List<Object> limited = new ArrayList<>(maxElements + 1);
+            Iterator<?> iterator = collection.iterator();
+            while (limited.size() < maxElements && iterator.hasNext()) {
+                limited.add(iterator.next());
+            }
+            limited.add(truncatedMarker(collection.size()));
+            return limited;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (map.size() <= maxElements) {
+                return value;
+            }
+            Map<Object, Object> limited = new LinkedHashMap<>(maxElements * 2);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (limited.size() >= maxElements) {
+                    break;
+                }
+                limited.put(entry.getKey(), entry.getValue());
+            }
+            limited.put(TRUNCATED, map.size());
+            return limited;
+        }
+        if (value.getClass().isArray() && !(value instanceof byte[]) && !(value instanceof char[])) {
+            int length = Array.getLength(value);
+            if (length <= maxElements) {
+                return value;
+            }
+            List<Object> limited = new ArrayList<>(maxElements + 1);
+            for (int i = 0; i < maxElements; i++) {
+                limited.add(Array.get(value, i));
+            }
+            limited.add(truncatedMarker(length));
+            return limited;
+        }
+        return value;
+    }
+
+    private static String truncatedMarker(int size) {
+        return TRUNCATED + "共" + size + "个";
+    }
+
+    /**
+     * 超过字节上限就抛出异常的输出，让序列化立即停止；关闭时只丢弃超出的内容
+     */
+    private abstract static class BoundedWriter extends Writer {
+
+        private int remaining;
+        /**
+         * 上一个字符是高位代理字符，已经按4个字节计算
+         */
+        private boolean afterHighSurrogate;
+        boolean exceeded;
+        /**
+         * fastjson正在关闭，不能再抛出异常
+         */
+        boolean closing;
+
+        private BoundedWriter(int maxBytes) {
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            if (exceeded) {
+                if (closing) {
+                    return;
+                }
+                throw new IOException("超过序列化长度上限");
+            }
+            for (int i = off; i < off + len; i++) {
+                char c = buf[i];
+                //代理对在高位字符处按4个字节计算，不成对的低位字符写为问号
+                int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4
+                        : Character.isLowSurrogate(c) ? (afterHighSurrogate ? 0 : 1) : 3;
+                if (bytes > remaining) {
+                    exceeded = true;
+                    if (closing) {
+                        return;
+                    }
+                    throw new IOException("超过序列化长度上限");
+                }
+                remaining -= bytes;
+                afterHighSurrogate = Character.isHighSurrogate(c);
+                put(c);
+            }
+        }
+
+        /**
+         * 输出一个字符
+         */
+        abstract void put(char c);
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 输出到字符串
+     */
+    private static final class StringOutput extends BoundedWriter {
+
+        private final StringBuilder content = new StringBuilder(256);
+
+        private StringOutput(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        void put(char c) {
+            content.append(c);
+        }
+    }
+
+    /**
+     * 按UTF-8输出到记录缓冲区
+     */
+    private static final class RecordWriter extends BoundedWriter {
+
+        private final RecordOutput output;
+
+        private RecordWriter(int maxBytes, RecordOutput output) {
+            super(maxBytes);
+            this.output = output;
+        }
+
+        @Override
+        void put(char c) {
+            output.writeUtf8(c);
+        }
+    }
+}
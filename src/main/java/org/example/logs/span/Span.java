@@ -0,0 +1,48 @@
+package org.example.logs.span;
+
+/**
+ * 调用链中的一次方法调用，只由所在线程访问
+ *
+ * @author 李昆城
+ */
+final class Span {
+
+    /**
+     * 在调用链中的序号，按进入的顺序从0开始
+     */
+    final int id;
+    final Span parent;
+    final int depth;
+    final String method;
+    final long startNanos;
+    /**
+     * 执行时间（纳秒）
+     */
+    long totalNanos;
+    /**
+     * 直接子调用的执行时间之和（纳秒）
+     */
+    long childNanos;
+    boolean error;
+    /**
+     * 是否为异步返回值，执行时间只到方法返回为止
+     */
+    boolean async;
+
+    Span(int id, Span parent, String method, long startNanos) {
+        this.id = id;
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.method = method;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 自身执行时间，不包括子调用
+     *
+     * @return 纳秒
+     */
+    long selfNanos() {
+        return Math.max(0, totalNanos - childNanos);
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.logs.span;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.logwrite.Durability;
+import org.example.logs.observice.logwrite.GroupCommitWriter;
+import org.example.logs.observice.logwrite.impl.RequestLog;
+import org.example.logs.utils.DateUtils;
+import org.example.logs.utils.TimestampFormatter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 调用链记录，调用线程只把调用链放入有界队列，由记录线程序列化之后在当天目录的 trace.txt 中写入一行json，
+ * 队列满了直接丢弃，不阻塞调用线程
+ * <p>
+ * trace.txt 只有json文本一种格式，总是通过{@link GroupCommitWriter}写入，与 log.params.writer 和 log.params.format 无关：
+ * 使用mappedSegmentLog时调用链仍然是普通文件，使用binary编码时调用链仍然是文本，使用rollupLog时仍然记录每一条调用链。
+ * 关闭时由{@link org.example.logs.observice.PipelineShutdown}在排空写入队列之前调用{@link #drain(long)}
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class SpanRecorder {
+
+    /**
+     * 调用链文件名称
+     */
+    public static final String FILE_NAME = "trace.txt";
+    private static final int QUEUE_SIZE = 4096;
+    private static final TimestampFormatter TIME_FORMATTER = TimestampFormatter.of(DateUtils.NOW);
+
+    private final RequestLog requestLog;
+    private final GroupCommitWriter groupCommitWriter;
+    private final Environment environment;
+    /**
+     * 全局持久化级别
+     */
+    private final Durability durability;
+    private final BlockingQueue<SpanTree> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    /**
+     * 队列满了丢弃的数量
+     */
+    private final LongAdder droppedCount = new LongAdder();
+    private Thread recorder;
+    private boolean prod;
+    private volatile boolean running;
+
+    @Autowired
+    public SpanRecorder(RequestLog requestLog, GroupCommitWriter groupCommitWriter, Environment environment,
+                        LogConfig logConfig, LogMetrics logMetrics) {
+        this.requestLog = requestLog;
+        this.groupCommitWriter = groupCommitWriter;
+        this.environment = environment;
+        this.durability = Durability.of(logConfig.get(LogConfig.LogConfigKey.durability, "async")).orElse(Durability.ASYNC);
+        logMetrics.span(this, queue);
+    }
+
+    @PostConstruct
+    public void start() {
+        prod = "prod".equals(environment.getProperty("spring.profiles.active"));
+        running = true;
+        recorder = new Thread(this::run, "log_span:0");
+        recorder.setDaemon(true);
+        recorder.start();
+    }
+
+    /**
+     * 放入一条调用链，队列满了直接丢弃
+     *
+     * @param tree 调用链
+     */
+    void record(SpanTree tree) {
+        if (!running || !queue.offer(tree)) {
+            droppedCount.increment();
+        }
+    }
+
+    private void run() {
+        List<SpanTree> batch = new ArrayList<>(64);
+        while (running || !queue.isEmpty()) {
+            try {
+                SpanTree first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, 63);
+            for (SpanTree tree : batch) {
+                try {
+                    write(tree);
+                } catch (RuntimeException e) {
+                    log.error("写入调用链发生错误：{}", e.getMessage(), e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(SpanTree tree) {
+        Span root = tree.spans.get(0);
+        Map<String, Object> line = new LinkedHashMap<>(16);
+        line.put("requestId", tree.requestId);
+        line.put("time", TIME_FORMATTER.format(tree.startTime));
+        line.put("startTime", tree.startTime);
+        line.put("targetAddress", root.method);
+        line.put("total", millis(root.totalNanos));
+        List<Map<String, Object>> spans = new ArrayList<>(tree.spans.size());
+        for (Span span : tree.spans) {
+            Map<String, Object> item = new LinkedHashMap<>(16);
+            item.put("id", span.id);
+            item.put("parentId", Objects.isNull(span.parent) ? -1 : span.parent.id);
+            item.put("depth", span.depth);
+            item.put("targetAddress", span.method);
+            //相对最外层调用开始的偏移
+            item.put("offset", millis(span.startNanos - root.startNanos));
+            item.put("total", millis(span.totalNanos));
+            item.put("self", millis(span.selfNanos()));
+            item.put("error", span.error);
+            if (span.async) {
+                item.put("async", true);
+            }
+            spans.add(item);
+        }
+        line.put("spans", spans);
+        if (tree.omitted > 0) {
+            line.put("omitted", tree.omitted);
+        }
+        String file = requestLog.directoryOf(tree.path, Instant.ofEpochMilli(tree.startTime).atZone(ZoneId.systemDefault()).toLocalDate())
+                + (prod ? "/" : "\\") + FILE_NAME;
+        byte[] content = (JSON.toJSONString(line) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        groupCommitWriter.submit(file, ByteBuffer.wrap(content), durability, null, null);
+    }
+
+    /**
+     * 纳秒转换为毫秒，保留3位小数
+     */
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * 队列满了丢弃的数量
+     *
+     * @return 丢弃的数量
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 不再接收新的调用链，等待记录线程写完队列中剩余的调用链，最多等到截止时间，
+     * 必须在{@link GroupCommitWriter#drain(long)}之前调用
+     *
+     * @param deadline 截止时间（{@link System#nanoTime()}）
+     */
+    public void drain(long deadline) {
+        running = false;
+        try {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(recorder, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("调用链记录线程没有在关闭之前写完，剩余：{}", queue.size());
+        }
+    }
+
+    /**
+     * 写完队列中剩余的调用链之后退出
+     */
+    @PreDestroy
+    public void stop() {
+        drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+    }
+}
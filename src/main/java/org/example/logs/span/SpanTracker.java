@@ -0,0 +1,102 @@
+package org.example.logs.span;
+
+import org.example.logs.LogConfig;
+import org.example.logs.plan.CapturePlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同一个线程中嵌套的{@link org.example.logs.ShowParam}调用组成调用链，最外层调用完成时整体交给{@link SpanRecorder}
+ * <p>
+ * 每个线程保存当前的调用，进入和退出只是线程变量的读写，没有嵌套的调用不产生调用链记录。
+ * 每次调用计算总执行时间和不包括子调用的自身执行时间
+ *
+ * @author 李昆城
+ */
+@Component
+public class SpanTracker {
+
+    /**
+     * 一条调用链最多记录的调用数量
+     */
+    private static final int MAX_SPANS = 256;
+
+    private final boolean enabled;
+    private final SpanRecorder spanRecorder;
+    private final AtomicLong requestIds = new AtomicLong();
+    private final ThreadLocal<Context> contexts = ThreadLocal.withInitial(Context::new);
+
+    @Autowired
+    public SpanTracker(LogConfig logConfig, SpanRecorder spanRecorder) {
+        this.enabled = logConfig.getBoolean(LogConfig.LogConfigKey.span, true);
+        this.spanRecorder = spanRecorder;
+    }
+
+    /**
+     * 进入一次调用
+     *
+     * @param plan       采集计划
+     * @param startTime  开始时间
+     * @param startNanos 开始计时
+     * @return 调用，没有开启或者超过最大数量时为null
+     */
+    public Object enter(CapturePlan plan, long startTime, long startNanos) {
+        if (!enabled) {
+            return null;
+        }
+        Context context = contexts.get();
+        Span parent = context.current;
+        if (Objects.isNull(parent)) {
+            context.tree = new SpanTree(requestIds.incrementAndGet(), startTime, plan.getPath());
+        } else if (context.tree.spans.size() >= MAX_SPANS) {
+            context.tree.omitted++;
+            return null;
+        }
+        Span span = new Span(context.tree.spans.size(), parent, plan.getFullMethodPath(), startNanos);
+        context.tree.spans.add(span);
+        context.current = span;
+        return span;
+    }
+
+    /**
+     * 退出一次调用，最外层调用退出时记录整个调用链
+     *
+     * @param handle        {@link #enter}的返回值
+     * @param durationNanos 执行时间（纳秒）
+     * @param error         是否发生异常
+     * @param async         是否为异步返回值
+     * @param record        最外层调用是否需要记录，没有通过采集过滤时为false
+     */
+    public void exit(Object handle, long durationNanos, boolean error, boolean async, boolean record) {
+        if (Objects.isNull(handle)) {
+            return;
+        }
+        Span span = (Span) handle;
+        span.totalNanos = durationNanos;
+        span.error = error;
+        span.async = async;
+        Context context = contexts.get();
+        //异常情况下没有配对退出的子调用一起出栈
+        context.current = span.parent;
+        if (Objects.nonNull(span.parent)) {
+            span.parent.childNanos += durationNanos;
+            return;
+        }
+        SpanTree tree = context.tree;
+        context.tree = null;
+        if (record && tree.spans.size() > 1) {
+            spanRecorder.record(tree);
+        }
+    }
+
+    /**
+     * 线程的当前调用
+     */
+    private static final class Context {
+        private SpanTree tree;
+        private Span current;
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.logs.span;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次最外层调用产生的完整调用链
+ *
+ * @author 李昆城
+ */
+final class SpanTree {
+
+    /**
+     * 单调递增的请求编号
+     */
+    final long requestId;
+    final long startTime;
+    /**
+     * 最外层方法的持久化地址
+     */
+    final String path;
+    /**
+     * 按进入顺序排列的调用
+     */
+    final List<Span> spans = new ArrayList<>();
+    /**
+     * 超过最大数量没有记录的调用数量
+     */
+    int omitted;
+
+    SpanTree(long requestId, long startTime, String path) {
+        this.requestId = requestId;
+        this.startTime = startTime;
+        this.path = path;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.logs.stats;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 方法执行时间百分位
+ * <pre>
+ * GET    /actuator/latency          所有方法
+ * GET    /actuator/latency/{method} 单个方法，method为完整方法地址
+ * DELETE /actuator/latency          清空统计
+ * </pre>
+ *
+ * @author 李昆城
+ */
+@Component
+@Endpoint(id = "latency")
+public class LatencyEndpoint {
+
+    private final LatencyRegistry latencyRegistry;
+
+    @Autowired
+    public LatencyEndpoint(LatencyRegistry latencyRegistry) {
+        this.latencyRegistry = latencyRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, LatencySnapshot>> latency() {
+        return latencyRegistry.snapshot();
+    }
+
+    @ReadOperation
+    public Map<String, LatencySnapshot> method(@Selector String method) {
+        return latencyRegistry.snapshot(method);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        latencyRegistry.reset();
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.logs.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的执行时间直方图，对数分桶，每个2的幂区间再均分为32个桶，相对误差约3%
+ * <p>
+ * 记录是一次桶计数的原子自增，读取百分位时遍历所有桶
+ *
+ * @author 李昆城
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 每个2的幂区间均分的位数
+     */
+    private static final int PRECISION_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+    private static final int BUCKETS = (64 - PRECISION_BITS) * SUB_BUCKETS;
+
+    /**
+     * 每个桶的计数
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /**
+     * 调用次数
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * 发生异常的次数
+     */
+    private final LongAdder errors = new LongAdder();
+    /**
+     * 执行时间总和（纳秒）
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * 最大执行时间（纳秒）
+     */
+    private final AtomicLong max = new AtomicLong();
+    /**
+     * 最小执行时间（纳秒）
+     */
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * 记录一次调用
+     *
+     * @param nanos 执行时间（纳秒）
+     * @param error 是否发生异常
+     */
+    public void record(long nanos, boolean error) {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(index(nanos));
+        count.increment();
+        total.add(nanos);
+        if (error) {
+            errors.increment();
+        }
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+        current = min.get();
+        while (nanos < current && !min.compareAndSet(current, nanos)) {
+            current = min.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 最小执行时间
+     *
+     * @return 纳秒，没有数据返回0
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * 有数据的桶
+     *
+     * @return 桶的上界（纳秒） -> 计数，按上界升序
+     */
+    public Map<Long, Long> buckets() {
+        Map<Long, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = counts.get(i);
+            if (value > 0) {
+                buckets.put(highestEquivalent(i), value);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * 百分位执行时间
+     *
+     * @param percentile 百分位，例如99
+     * @return 执行时间（纳秒），返回桶的上界，不超过最大值；没有数据返回0
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            sum += snapshot[i];
+        }
+        if (sum == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * sum));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 执行时间所在的桶
+     */
+    static int index(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int mantissa = (int) (nanos >>> (exponent - PRECISION_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - PRECISION_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * 桶的上界
+     */
+    static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + PRECISION_BITS - 1;
+        int mantissa = index % SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + mantissa) << (exponent - PRECISION_BITS);
+        return lowest + (1L << (exponent - PRECISION_BITS)) - 1;
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.logs.stats;
+
+import org.example.logs.LogConfig;
+import org.example.logs.plan.CapturePlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个方法的执行时间直方图，通过 /actuator/latency 查看百分位
+ *
+ * @author 李昆城
+ */
+@Component
+public class LatencyRegistry {
+
+    /**
+     * 窗口长度（纳秒）
+     */
+    private final long windowNanos;
+    /**
+     * 方法地址 -> 执行时间统计
+     */
+    private final Map<String, MethodLatency> methods = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LatencyRegistry(LogConfig logConfig) {
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, logConfig.getLong(LogConfig.LogConfigKey.latencyWindow, 60)));
+    }
+
+    /**
+     * 记录一次方法调用
+     *
+     * @param plan  采集计划
+     * @param nanos 执行时间（纳秒）
+     * @param error 是否发生异常
+     */
+    public void record(CapturePlan plan, long nanos, boolean error) {
+        String method = plan.getFullMethodPath();
+        MethodLatency latency = methods.get(method);
+        if (Objects.isNull(latency)) {
+            latency = methods.computeIfAbsent(method, key -> new MethodLatency(windowNanos));
+        }
+        latency.record(nanos, error);
+    }
+
+    /**
+     * 所有方法的统计结果
+     *
+     * @return 方法地址 -> 当前窗口和上一个窗口的统计结果
+     */
+    public Map<String, Map<String, LatencySnapshot>> snapshot() {
+        Map<String, Map<String, LatencySnapshot>> result = new TreeMap<>();
+        methods.forEach((method, latency) -> result.put(method, snapshot(latency)));
+        return result;
+    }
+
+    /**
+     * 单个方法的统计结果
+     *
+     * @param method 方法地址
+     * @return 当前窗口和上一个窗口的统计结果，没有记录返回null
+     */
+    public Map<String, LatencySnapshot> snapshot(String method) {
+        MethodLatency latency = methods.get(method);
+        return Objects.isNull(latency) ? null : snapshot(latency);
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        methods.values().forEach(MethodLatency::reset);
+    }
+
+    private Map<String, LatencySnapshot> snapshot(MethodLatency latency) {
+        long now = System.nanoTime();
+        MethodLatency.Window current = latency.getCurrent();
+        MethodLatency.Window previous = latency.getPrevious();
+        Map<String, LatencySnapshot> result = new LinkedHashMap<>(4);
+        if (now - current.getStartNanos() >= windowNanos) {
+            //窗口已经结束，但是之后没有新的调用，还没有切换
+            result.put("previous", new LatencySnapshot(current, current.getStartNanos() + windowNanos));
+            return result;
+        }
+        result.put("current", new LatencySnapshot(current, now));
+        if (Objects.nonNull(previous)) {
+            result.put("previous", new LatencySnapshot(previous, current.getStartNanos()));
+        }
+        return result;
+    }
+}
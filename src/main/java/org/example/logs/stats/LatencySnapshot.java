@@ -0,0 +1,65 @@
+package org.example.logs.stats;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个时间窗口的统计结果，时间单位为毫秒
+ *
+ * @author 李昆城
+ */
+@Getter
+public final class LatencySnapshot {
+
+    /**
+     * 窗口开始时间
+     */
+    private final long startTime;
+    /**
+     * 窗口已经经过的秒数
+     */
+    private final double seconds;
+    /**
+     * 调用次数
+     */
+    private final long count;
+    /**
+     * 发生异常的次数
+     */
+    private final long errors;
+    /**
+     * 每秒调用次数
+     */
+    private final double throughput;
+    private final double mean;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+    private final double max;
+
+    LatencySnapshot(MethodLatency.Window window, long endNanos) {
+        LatencyHistogram histogram = window.getHistogram();
+        this.startTime = window.getStartTime();
+        this.seconds = round((endNanos - window.getStartNanos()) / (double) TimeUnit.SECONDS.toNanos(1));
+        this.count = histogram.getCount();
+        this.errors = histogram.getErrors();
+        this.throughput = seconds > 0 ? round(count / seconds) : 0;
+        this.mean = count > 0 ? millis(histogram.getTotal() / count) : 0;
+        this.p50 = millis(histogram.percentile(50));
+        this.p90 = millis(histogram.percentile(90));
+        this.p99 = millis(histogram.percentile(99));
+        this.max = millis(histogram.getMax());
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * 保留3位小数
+     */
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.logs.stats;
+
+import lombok.Getter;
+
+/**
+ * 单个方法的执行时间统计，按时间窗口统计，窗口结束之后整体替换，保留上一个完整的窗口
+ *
+ * @author 李昆城
+ */
+public final class MethodLatency {
+
+    /**
+     * 窗口长度（纳秒）
+     */
+    private final long windowNanos;
+    /**
+     * 当前窗口
+     */
+    private volatile Window current;
+    /**
+     * 上一个完整的窗口
+     */
+    private volatile Window previous;
+
+    MethodLatency(long windowNanos) {
+        this.windowNanos = windowNanos;
+        this.current = new Window(System.nanoTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次调用，超过窗口时由记录线程切换窗口
+     *
+     * @param nanos 执行时间（纳秒）
+     * @param error 是否发生异常
+     */
+    void record(long nanos, boolean error) {
+        Window window = current;
+        long now = System.nanoTime();
+        if (now - window.startNanos >= windowNanos) {
+            window = rotate(window, now);
+        }
+        window.histogram.record(nanos, error);
+    }
+
+    /**
+     * 清空统计
+     */
+    void reset() {
+        current = new Window(System.nanoTime(), System.currentTimeMillis());
+        previous = null;
+    }
+
+    public Window getCurrent() {
+        return current;
+    }
+
+    public Window getPrevious() {
+        return previous;
+    }
+
+    /**
+     * 切换窗口，同时只有一个线程能切换成功
+     */
+    private synchronized Window rotate(Window expired, long now) {
+        if (current != expired) {
+            return current;
+        }
+        Window window = new Window(now, System.currentTimeMillis());
+        previous = expired;
+        current = window;
+        return window;
+    }
+
+    /**
+     * 一个时间窗口
+     */
+    @Getter
+    public static final class Window {
+        /**
+         * 窗口开始时间（纳秒计时）
+         */
+        private final long startNanos;
+        /**
+         * 窗口开始时间
+         */
+        private final long startTime;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Window(long startNanos, long startTime) {
+            this.startNanos = startNanos;
+            this.startTime = startTime;
+        }
+    }
+}
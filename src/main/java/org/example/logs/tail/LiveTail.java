@@ -0,0 +1,257 @@
+package org.example.logs.tail;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.example.logs.LogConfig;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.LogEvent;
+import org.example.logs.serialize.BoundedJsonSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实时日志，编码阶段把日志事件放入内存中的环形缓冲区，每个订阅者由发送线程按自己的读取位置推送
+ * <p>
+ * 放入缓冲区时在编码线程中序列化为json，缓冲区不引用参数和返回值对象，发送线程只负责推送；
+ * 放入缓冲区从不等待订阅者，订阅者落后超过缓冲区容量时跳过被覆盖的部分，
+ * 推送一条gap事件说明跳过的数量。没有订阅者时不序列化，也不放入缓冲区
+ *
+ * @author 李昆城
+ */
+@Slf4j
+@Component
+public class LiveTail {
+
+    /**
+     * 每次最多读取的数量
+     */
+    private static final int BATCH_SIZE = 256;
+    /**
+     * 发送间隔（毫秒）
+     */
+    private static final long SEND_INTERVAL = 100;
+    /**
+     * 没有数据时发送心跳的间隔，用于发现已经断开的订阅者
+     */
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    /**
+     * 环形缓冲区，没有开启时为null
+     */
+    private final TailRing<TailRecord> ring;
+    /**
+     * 最多同时订阅的数量
+     */
+    private final int maxSubscribers;
+    /**
+     * 订阅的超时时间（毫秒），0为不超时
+     */
+    private final long timeout;
+    private final BoundedJsonSerializer boundedJsonSerializer;
+    private final Set<TailSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    /**
+     * 已经占用的订阅名额，订阅之前先占用，取消订阅时释放，保证并发订阅时不超过最大数量
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+    /**
+     * 订阅者落后而跳过的数量
+     */
+    private final AtomicLong skippedCount = new AtomicLong();
+    /**
+     * 发送线程，一个订阅者的网络阻塞只影响和它共用线程的订阅者，不影响编码线程
+     */
+    private final ScheduledThreadPoolExecutor sender;
+
+    @Autowired
+    public LiveTail(LogConfig logConfig, BoundedJsonSerializer boundedJsonSerializer, LogMetrics logMetrics) {
+        int capacity = logConfig.getInt(LogConfig.LogConfigKey.tailCapacity, 4096);
+        this.ring = capacity > 0 ? new TailRing<>(Math.max(2, capacity)) : null;
+        this.maxSubscribers = Math.max(1, logConfig.getInt(LogConfig.LogConfigKey.tailMaxSubscribers, 8));
+        this.timeout = Math.max(0, logConfig.getLong(LogConfig.LogConfigKey.tailTimeout, 1800000));
+        this.boundedJsonSerializer = boundedJsonSerializer;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = new ScheduledThreadPoolExecutor(2, r -> {
+            Thread thread = new Thread(r, "log_tail:" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.setRemoveOnCancelPolicy(true);
+        logMetrics.tail(this);
+    }
+
+    /**
+     * 放入一个日志事件，由编码线程调用，没有订阅者时直接返回
+     *
+     * @param event 日志事件
+     */
+    public void offer(LogEvent event) {
+        if (Objects.nonNull(ring) && !subscriptions.isEmpty()) {
+            Long runTime = Objects.nonNull(event.getStartTime()) && Objects.nonNull(event.getEndTime())
+                    ? event.getEndTime() - event.getStartTime() : null;
+            ring.offer(new TailRecord(event.getTargetAddress(), runTime,
+                    !StringUtils.isAllEmpty(event.getErrorMsg(), event.getErrorLocation()), json(event, runTime)));
+        }
+    }
+
+    /**
+     * 订阅实时日志，从订阅之后产生的日志开始推送
+     *
+     * @param method      方法地址或者方法名，为空不过滤
+     * @param minDuration 最小执行时间（毫秒），为空不过滤
+     * @param errorOnly   是否只推送发生异常的调用
+     * @return SSE连接
+     * @throws IllegalStateException 没有开启或者订阅数量已满
+     */
+    public SseEmitter subscribe(String method, Long minDuration, boolean errorOnly) {
+        if (Objects.isNull(ring)) {
+            throw new IllegalStateException("没有开启实时日志，log.params.tailCapacity为0");
+        }
+        if (!reserve()) {
+            throw new IllegalStateException("实时日志订阅数量已满：" + maxSubscribers);
+        }
+        SseEmitter emitter = new SseEmitter(timeout);
+        TailSubscription subscription = new TailSubscription(method, minDuration, errorOnly, emitter, ring.position());
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        subscriptions.add(subscription);
+        try {
+            subscription.task = sender.scheduleWithFixedDelay(() -> send(subscription), 0, SEND_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            unsubscribe(subscription);
+            throw e;
+        }
+        log.info("实时日志订阅：method={}，minDuration={}，errorOnly={}，当前订阅数量：{}", method, minDuration, errorOnly, subscriptions.size());
+        return emitter;
+    }
+
+    /**
+     * 推送订阅者读取位置之后的日志，一直读到追上写入位置
+     */
+    private void send(TailSubscription subscription) {
+        List<TailRecord> events = new ArrayList<>(BATCH_SIZE);
+        try {
+            do {
+                events.clear();
+                long next = ring.read(subscription.cursor, events, BATCH_SIZE);
+                long skipped = next - subscription.cursor - events.size();
+                subscription.cursor = next;
+                if (skipped > 0) {
+                    skippedCount.addAndGet(skipped);
+                    subscription.emitter.send(SseEmitter.event().name("gap").data("{\"skipped\":" + skipped + "}"));
+                    subscription.lastSend = System.nanoTime();
+                }
+                for (TailRecord event : events) {
+                    if (subscription.matches(event)) {
+                        subscription.emitter.send(SseEmitter.event().name("log").data(event.json));
+                        subscription.lastSend = System.nanoTime();
+                    }
+                }
+            } while (events.size() == BATCH_SIZE);
+            if (System.nanoTime() - subscription.lastSend >= HEARTBEAT_NANOS) {
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+                subscription.lastSend = System.nanoTime();
+            }
+        } catch (IOException | IllegalStateException e) {
+            //订阅者已经断开
+            log.debug("实时日志订阅者已经断开：{}", e.getMessage());
+            subscription.emitter.completeWithError(e);
+            unsubscribe(subscription);
+        } catch (RuntimeException e) {
+            log.error("推送实时日志发生错误：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 转换为json，字段与 /actuator/logquery 返回的记录相同
+     */
+    private String json(LogEvent event, Long runTime) {
+        Map<String, Object> record = new LinkedHashMap<>(16);
+        record.put("targetAddress", event.getTargetAddress());
+        record.put("startTime", event.getStartTime());
+        record.put("endTime", event.getEndTime());
+        if (Objects.nonNull(runTime)) {
+            record.put("runTime", runTime);
+        }
+        record.put("param", Objects.nonNull(event.getParamValue())
+                ? boundedJsonSerializer.toJson(event.getParamValue()) : event.getParam());
+        record.put("result", Objects.nonNull(event.getResultValue())
+                ? boundedJsonSerializer.toJson(event.getResultValue()) : event.getResult());
+        record.put("errorMsg", event.getErrorMsg());
+        record.put("errorLocation", event.getErrorLocation());
+        return JSON.toJSONString(record);
+    }
+
+    /**
+     * 占用一个订阅名额
+     *
+     * @return 是否占用成功，订阅数量已满时返回false
+     */
+    private boolean reserve() {
+        while (true) {
+            int current = reserved.get();
+            if (current >= maxSubscribers) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void unsubscribe(TailSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        reserved.decrementAndGet();
+        if (Objects.nonNull(subscription.task)) {
+            subscription.task.cancel(false);
+        }
+        log.info("实时日志取消订阅，当前订阅数量：{}", subscriptions.size());
+    }
+
+    /**
+     * 当前订阅数量
+     *
+     * @return 订阅数量
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 订阅者落后而跳过的数量
+     *
+     * @return 跳过的数量
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * 关闭所有订阅
+     */
+    @PreDestroy
+    public void stop() {
+        for (TailSubscription subscription : subscriptions) {
+            subscription.emitter.complete();
+            unsubscribe(subscription);
+        }
+        sender.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.logs.tail;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 实时日志，server-sent events
+ * <pre>
+ * GET /actuator/logtail?method=&minDuration=&errorOnly=
+ * </pre>
+ * log事件为一次调用，字段与 /actuator/logquery 相同；gap事件为订阅者落后而跳过的数量。
+ * 推送的内容包含调用参数，默认不暴露，需要加入 management.endpoints.web.exposure.include，
+ * 并且放在鉴权或者单独的管理端口之后
+ *
+ * @author 李昆城
+ */
+@Component
+@RestControllerEndpoint(id = "logtail")
+public class LiveTailEndpoint {
+
+    private final LiveTail liveTail;
+
+    @Autowired
+    public LiveTailEndpoint(LiveTail liveTail) {
+        this.liveTail = liveTail;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter tail(@RequestParam(required = false) String method,
+                           @RequestParam(required = false) Long minDuration,
+                           @RequestParam(defaultValue = "false") boolean errorOnly) {
+        try {
+            return liveTail.subscribe(method, minDuration, errorOnly);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.logs.tail;
+
+/**
+ * 放入环形缓冲区的一次调用，在编码阶段序列化完成，不再引用参数和返回值对象
+ *
+ * @author 李昆城
+ */
+final class TailRecord {
+
+    /**
+     * 目标方法
+     */
+    final String targetAddress;
+    /**
+     * 执行时间（毫秒），没有开始或者截止时间时为null
+     */
+    final Long runTime;
+    /**
+     * 是否发生异常
+     */
+    final boolean error;
+    /**
+     * 推送的json，字段与 /actuator/logquery 返回的记录相同
+     */
+    final String json;
+
+    TailRecord(String targetAddress, Long runTime, boolean error, String json) {
+        this.targetAddress = targetAddress;
+        this.runTime = runTime;
+        this.error = error;
+        this.json = json;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.logs.tail;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界、无锁的广播环形缓冲区，写入从不等待读取，满了之后直接覆盖最旧的数据
+ * <p>
+ * 每个读取方自己维护读取位置，读取位置落后超过一圈时说明中间的数据已经被覆盖，跳到最旧的可读位置
+ *
+ * @param <E> 数据类型
+ * @author 李昆城
+ */
+public class TailRing<E> {
+
+    /**
+     * 槽位，序号和数据一起写入，读取时用序号判断槽位是否已经被覆盖
+     */
+    private final AtomicReferenceArray<Slot<E>> slots;
+    /**
+     * 容量-1，用于取模
+     */
+    private final int mask;
+    /**
+     * 下一个写入位置
+     */
+    private final AtomicLong position = new AtomicLong();
+
+    /**
+     * 创建环形缓冲区
+     *
+     * @param capacity 容量，会向上取整为2的幂
+     */
+    public TailRing(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("环形缓冲区容量不能小于2：" + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 写入一条数据
+     *
+     * @param value 数据
+     */
+    public void offer(E value) {
+        long sequence = position.getAndIncrement();
+        slots.lazySet((int) (sequence & mask), new Slot<>(sequence, value));
+    }
+
+    /**
+     * 下一个写入位置，新的读取方从这里开始
+     *
+     * @return 写入位置
+     */
+    public long position() {
+        return position.get();
+    }
+
+    /**
+     * 从读取位置开始读取
+     *
+     * @param from     读取位置
+     * @param values   读取到的数据
+     * @param maxCount 最多读取的数量
+     * @return 下一次的读取位置；落后超过一圈时跳过被覆盖的部分，返回值减去from再减去读取数量就是跳过的数量
+     */
+    public long read(long from, List<E> values, int maxCount) {
+        long oldest = position.get() - mask - 1;
+        long sequence = Math.max(from, oldest);
+        for (int count = 0; count < maxCount; count++) {
+            Slot<E> slot = slots.get((int) (sequence & mask));
+            if (slot == null || slot.sequence < sequence) {
+                //已经申请但是还没有写入
+                break;
+            }
+            if (slot.sequence > sequence) {
+                //读取期间被覆盖，跳到最旧的可读位置
+                sequence = Math.max(sequence + 1, position.get() - mask - 1);
+                continue;
+            }
+            values.add(slot.value);
+            sequence++;
+        }
+        return sequence;
+    }
+
+    private static final class Slot<E> {
+        private final long sequence;
+        private final E value;
+
+        private Slot(long sequence, E value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+}
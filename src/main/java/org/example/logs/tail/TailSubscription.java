@@ -0,0 +1,72 @@
+package org.example.logs.tail;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 一个实时日志订阅，保存过滤条件和自己的读取位置，只由发送线程访问
+ *
+ * @author 李昆城
+ */
+class TailSubscription {
+
+    /**
+     * 方法地址，完整地址或者以 .方法名 结尾，为空不过滤
+     */
+    private final String method;
+    /**
+     * 最小执行时间（毫秒），为空不过滤
+     */
+    private final Long minDuration;
+    /**
+     * 是否只推送发生异常的调用
+     */
+    private final boolean errorOnly;
+    final SseEmitter emitter;
+    /**
+     * 在环形缓冲区中的读取位置
+     */
+    long cursor;
+    /**
+     * 上一次发送的时间（纳秒）
+     */
+    long lastSend;
+    /**
+     * 发送任务
+     */
+    volatile ScheduledFuture<?> task;
+
+    TailSubscription(String method, Long minDuration, boolean errorOnly, SseEmitter emitter, long cursor) {
+        this.method = method;
+        this.minDuration = minDuration;
+        this.errorOnly = errorOnly;
+        this.emitter = emitter;
+        this.cursor = cursor;
+        this.lastSend = System.nanoTime();
+    }
+
+    /**
+     * 是否满足过滤条件
+     *
+     * @param record 一次调用
+     * @return true：推送
+     */
+    boolean matches(TailRecord record) {
+        if (StringUtils.isNotEmpty(method)) {
+            String target = record.targetAddress;
+            if (Objects.isNull(target) || !(target.equals(method) || target.endsWith("." + method))) {
+                return false;
+            }
+        }
+        if (errorOnly && !record.error) {
+            return false;
+        }
+        if (Objects.nonNull(minDuration)) {
+            return Objects.nonNull(record.runTime) && record.runTime >= minDuration;
+        }
+        return true;
+    }
+}
@@ -10,12 +10,18 @@ import org.springframework.util.StringUtils;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Objects;
 
 /**
- * 时间工具类
+ * 时间工具类，线程安全。格式仍然按照{@link SimpleDateFormat}的规则解释，
+ * 与java.time输出相同的格式（包括本类中的所有格式常量）使用缓存的{@link TimestampFormatter}，其余格式每次新建SimpleDateFormat
  *
  * @author 李昆城
  */
@@ -38,9 +44,26 @@ public class DateUtils {
      */
     public static final long ONE_DAY_MILLIS = 24 * 60 * 60 * 1000L;
 
-
+    /**
+     * 多个线程共用会互相覆盖，本类已经不再使用，只为兼容保留
+     *
+     * @deprecated 使用{@link #getCurDate()}
+     */
+    @Deprecated
     public Date date = new Date();
+    /**
+     * 多个线程共用会互相覆盖，本类已经不再使用，只为兼容保留
+     *
+     * @deprecated 使用{@link #parseDateFormat(Date, String)}或者{@link #dateToString(Date, String)}
+     */
+    @Deprecated
     public SimpleDateFormat simpleDateFormat = new SimpleDateFormat();
+    /**
+     * 多个线程共用会互相覆盖，本类已经不再使用，只为兼容保留
+     *
+     * @deprecated 使用{@link Calendar#getInstance()}
+     */
+    @Deprecated
     public Calendar calendar;
 
 
@@ -140,8 +163,7 @@ public class DateUtils {
             if (date == null || StringUtils.isEmpty(parse)) {
                 throw new RuntimeException("请传递正确的时间或者需要转换的类型");
             }
-            simpleDateFormat.applyPattern(parse);
-            return simpleDateFormat.format(date);
+            return format(date.getTime(), parse);
         } catch (Exception e) {
             throw new RuntimeException("转换时间发生致命错误：" + e.getMessage());
         }
@@ -156,11 +178,7 @@ public class DateUtils {
      */
     public String getTimeByParse(String parse) {
         try {
-            long currentTimeMillis = System.currentTimeMillis();
-            date.setTime(currentTimeMillis);
-            simpleDateFormat.applyPattern(parse);
-            String format = simpleDateFormat.format(date);
-            return format;
+            return format(System.currentTimeMillis(), parse);
         } catch (Exception e) {
             throw new RuntimeException("请正确传递需要转换的时间格式");
         }
@@ -177,6 +195,7 @@ public class DateUtils {
             if (args.length <= 0) {
                 throw new RuntimeException("错误的时间类型参数，请按照：年 月 日 时 分 秒 的顺序进行传递参数");
             }
+            Calendar calendar = Calendar.getInstance();
             for (int i = 0; i < args.length; i++) {
                 if (i == 0) {
                     calendar.set(Calendar.YEAR, args[i]);
@@ -209,32 +228,33 @@ public class DateUtils {
     public Object getDateNum(String type) {
         try {
             Assert.hasLength(type, "关键参数不能为空");
-            calendar = Calendar.getInstance();
+            long currentTimeMillis = System.currentTimeMillis();
+            LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(currentTimeMillis), ZoneId.systemDefault());
             Object number;
             switch (type) {
                 case "year":
-                    number = calendar.get(Calendar.YEAR);
+                    number = now.getYear();
                     break;
                 case "month":
-                    number = calendar.get(Calendar.MONTH) + 1;
+                    number = now.getMonthValue();
                     break;
                 case "day":
-                    number = calendar.get(Calendar.DAY_OF_MONTH);
+                    number = now.getDayOfMonth();
                     break;
                 case "hour":
-                    number = calendar.get(Calendar.HOUR_OF_DAY);
+                    number = now.getHour();
                     break;
                 case "minute":
-                    number = calendar.get(Calendar.MINUTE);
+                    number = now.getMinute();
                     break;
                 case "second":
-                    number = calendar.get(Calendar.SECOND);
+                    number = now.getSecond();
                     break;
                 case "currentTimeMillis":
-                    number = calendar.getTimeInMillis();
+                    number = currentTimeMillis;
                     break;
                 case "date":
-                    number = calendar.getTime();
+                    number = new Date(currentTimeMillis);
                     break;
                 default:
                     throw new IllegalStateException("无效的类型: " + type);
@@ -251,7 +271,7 @@ public class DateUtils {
      * @return 年数
      */
     public int getYear() {
-        return (int) getDateNum("year");
+        return LocalDate.now().getYear();
     }
 
     /**
@@ -260,35 +280,35 @@ public class DateUtils {
      * @return 得到月份
      */
     public int getMonth() {
-        return (int) getDateNum("month");
+        return LocalDate.now().getMonthValue();
     }
 
     /**
      * 得到天数
      */
     public int getDay() {
-        return (int) getDateNum("day");
+        return LocalDate.now().getDayOfMonth();
     }
 
     /**
      * 得到小时
      */
     public int getHour() {
-        return (int) getDateNum("hour");
+        return LocalTime.now().getHour();
     }
 
     /**
      * 得到分钟
      */
     public int getMinute() {
-        return (int) getDateNum("minute");
+        return LocalTime.now().getMinute();
     }
 
     /**
      * 得到秒数
      */
     public int getSecond() {
-        return (int) getDateNum("second");
+        return LocalTime.now().getSecond();
     }
 
     /**
@@ -297,7 +317,7 @@ public class DateUtils {
      * @return date类型系统时间
      */
     public Date getDate() {
-        return (Date) getDateNum("date");
+        return new Date();
     }
 
     /**
@@ -306,15 +326,14 @@ public class DateUtils {
      * @return 系统时间date
      */
     public Date getCurDate() {
-        date.setTime(System.currentTimeMillis());
-        return date;
+        return new Date();
     }
 
     /**
      * 得到当前系统时间毫秒数
      */
     public long getCurTimeMillis() {
-        return (long) getDateNum("currentTimeMillis");
+        return System.currentTimeMillis();
     }
 
     /**
@@ -325,8 +344,7 @@ public class DateUtils {
      * @return 字符串时间
      */
     public String dateToDateString(Date date, String format) {
-        simpleDateFormat.applyPattern(format);
-        return simpleDateFormat.format(date);
+        return format(date.getTime(), format);
     }
 
     /**
@@ -471,8 +489,7 @@ public class DateUtils {
         if (Objects.isNull(date) || org.apache.commons.lang3.StringUtils.isBlank(pattern)) {
             throw new IllegalArgumentException("请传递正确的参数");
         }
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
-        return simpleDateFormat.format(date);
+        return format(date.getTime(), pattern);
     }
 
     /**
@@ -485,4 +502,18 @@ public class DateUtils {
         return dateToString(date, DEFAULT_PATTERN);
     }
 
+    /**
+     * 按照SimpleDateFormat的规则格式化时间
+     *
+     * @param millis  毫秒时间戳
+     * @param pattern 时间格式
+     * @return 时间字符串
+     */
+    private static String format(long millis, String pattern) {
+        if (TimestampFormatter.isSimpleDateFormatCompatible(pattern)) {
+            return TimestampFormatter.of(pattern).format(millis);
+        }
+        return new SimpleDateFormat(pattern).format(new Date(millis));
+    }
+
 }
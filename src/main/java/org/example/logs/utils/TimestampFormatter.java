@@ -0,0 +1,115 @@
+package org.example.logs.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 线程安全的时间格式化，基于java.time
+ * <p>
+ * 格式中不包含毫秒时，缓存当前这一秒格式化的结果，同一秒内的调用直接返回缓存的字符串，不再重新格式化
+ *
+ * @author 李昆城
+ */
+public final class TimestampFormatter {
+
+    /**
+     * 格式 -> 格式化对象
+     */
+    private static final Map<String, TimestampFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    /**
+     * 格式化对象，本身是线程安全的
+     */
+    private final DateTimeFormatter formatter;
+    /**
+     * 是否可以按秒缓存，格式中包含毫秒时不能缓存
+     */
+    private final boolean cacheable;
+    /**
+     * 最近一秒的格式化结果，整体替换
+     */
+    private volatile Cached cached;
+
+    private TimestampFormatter(String pattern) {
+        this.formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+        this.cacheable = pattern.indexOf('S') < 0 && pattern.indexOf('n') < 0 && pattern.indexOf('N') < 0 && pattern.indexOf('A') < 0;
+    }
+
+    /**
+     * 获取指定格式的格式化对象，相同的格式共用一个对象
+     *
+     * @param pattern 时间格式，例如yyyy-MM-dd HH:mm:ss
+     * @return 格式化对象
+     * @throws IllegalArgumentException 无效的时间格式
+     */
+    public static TimestampFormatter of(String pattern) {
+        TimestampFormatter formatter = FORMATTERS.get(pattern);
+        return Objects.nonNull(formatter) ? formatter : FORMATTERS.computeIfAbsent(pattern, TimestampFormatter::new);
+    }
+
+    /**
+     * 格式是否与{@link java.text.SimpleDateFormat}的输出完全相同：只包含数字形式的年（y、yy、yyyy）、
+     * 月、日、时、分、秒（1到2位）以及常用的分隔符（- / : . 空格）和汉字，例如yyyy-MM-dd HH:mm:ss、yyyy年MM月dd日。
+     * 其他字符（例如 [ ] { } #）在{@link java.time.format.DateTimeFormatter}中是保留字符，交给SimpleDateFormat处理
+     *
+     * @param pattern 时间格式
+     * @return true：可以代替SimpleDateFormat使用
+     */
+    public static boolean isSimpleDateFormatCompatible(String pattern) {
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int count = 1;
+            while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                count++;
+            }
+            i += count;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                boolean numeric = c == 'y' ? count == 1 || count == 2 || count == 4 : "MdHms".indexOf(c) >= 0 && count <= 2;
+                if (!numeric) {
+                    return false;
+                }
+            } else if ("-/:. ".indexOf(c) < 0 && Character.UnicodeScript.of(c) != Character.UnicodeScript.HAN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 格式化时间
+     *
+     * @param millis 毫秒时间戳
+     * @return 格式化之后的时间
+     */
+    public String format(long millis) {
+        if (!cacheable) {
+            return formatter.format(Instant.ofEpochMilli(millis));
+        }
+        long second = Math.floorDiv(millis, 1000L);
+        Cached current = cached;
+        if (Objects.nonNull(current) && current.second == second) {
+            return current.text;
+        }
+        String text = formatter.format(Instant.ofEpochSecond(second));
+        cached = new Cached(second, text);
+        return text;
+    }
+
+    /**
+     * 某一秒的格式化结果
+     */
+    private static final class Cached {
+        private final long second;
+        private final String text;
+
+        private Cached(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
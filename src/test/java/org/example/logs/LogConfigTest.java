@@ -0,0 +1,52 @@
+package org.example.logs;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 管理端点传入地址的根目录校验
+ *
+ * @author 李昆城
+ */
+public class LogConfigTest {
+
+    @Test
+    public void pathsUnderRootAreAccepted() {
+        LogConfig logConfig = config("/data/logs");
+        assertTrue(logConfig.isUnderPath("/data/logs"));
+        assertTrue(logConfig.isUnderPath("/data/logs/"));
+        assertTrue(logConfig.isUnderPath("/data/logs/audit"));
+        assertTrue(logConfig.isUnderPath("/data/logs/audit/../order"));
+    }
+
+    @Test
+    public void pathsOutsideRootAreRejected() {
+        LogConfig logConfig = config("/data/logs");
+        assertFalse(logConfig.isUnderPath("/data/logs/../secret"));
+        assertFalse(logConfig.isUnderPath("/data/logs-other"));
+        assertFalse(logConfig.isUnderPath("/etc"));
+        assertFalse(logConfig.isUnderPath("/data"));
+        assertFalse(logConfig.isUnderPath(null));
+        assertFalse(logConfig.isUnderPath("/data/logs/\u0000"));
+    }
+
+    @Test
+    public void relativePathsResolveAgainstWorkingDirectory() {
+        assertTrue(LogConfig.isUnder("logs/audit", "logs"));
+        assertTrue(LogConfig.isUnder("./logs/audit", "logs"));
+        assertFalse(LogConfig.isUnder("logs/../../audit", "logs"));
+    }
+
+    private static LogConfig config(String path) {
+        Map<LogConfig.LogConfigKey, String> params = new EnumMap<>(LogConfig.LogConfigKey.class);
+        params.put(LogConfig.LogConfigKey.path, path);
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(params);
+        return logConfig;
+    }
+}
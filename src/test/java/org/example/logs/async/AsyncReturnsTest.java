@@ -0,0 +1,125 @@
+package org.example.logs.async;
+
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 异步返回值在完成时记录，reactor类型每次订阅单独记录
+ *
+ * @author 李昆城
+ */
+public class AsyncReturnsTest {
+
+    private final AsyncReturns asyncReturns = new AsyncReturns();
+    private final List<Completed> completed = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void completableFutureRecordsOnCompletion() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        assertTrue(asyncReturns.isAsync(future));
+        assertSame(future, attach(future));
+        assertTrue(completed.isEmpty());
+        future.complete("done");
+        assertEquals(1, completed.size());
+        assertEquals("done", completed.get(0).result);
+        assertNull(completed.get(0).throwable);
+        assertTrue(completed.get(0).durationNanos >= 0);
+    }
+
+    @Test
+    public void completableFutureUnwrapsCompletionException() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        IllegalStateException error = new IllegalStateException("失败");
+        //依赖的阶段收到的异常被包装为CompletionException
+        attach(future.thenApply(value -> value));
+        future.completeExceptionally(error);
+        assertEquals(1, completed.size());
+        assertSame(error, completed.get(0).throwable);
+    }
+
+    @Test
+    public void monoRecordsEachSubscriptionSeparately() throws InterruptedException {
+        @SuppressWarnings("unchecked")
+        Mono<String> mono = (Mono<String>) attach(Mono.delay(Duration.ofMillis(200)).map(tick -> "value"));
+        CountDownLatch done = new CountDownLatch(2);
+        mono.subscribe(value -> done.countDown());
+        Thread.sleep(100);
+        //第二个订阅在第一个完成之前开始
+        mono.subscribe(value -> done.countDown());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        awaitCompleted(2);
+        assertEquals("value", completed.get(0).result);
+        assertEquals("value", completed.get(1).result);
+        //第一个订阅的执行时间从自己的订阅开始，没有被第二个订阅覆盖
+        long first = Math.max(completed.get(0).durationNanos, completed.get(1).durationNanos);
+        assertTrue(first >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void fluxCountsElementsPerSubscription() throws InterruptedException {
+        @SuppressWarnings("unchecked")
+        Flux<Integer> flux = (Flux<Integer>) attach(Flux.range(1, 3).delayElements(Duration.ofMillis(50)));
+        CountDownLatch done = new CountDownLatch(2);
+        flux.subscribe(value -> { }, error -> { }, done::countDown);
+        Thread.sleep(60);
+        flux.subscribe(value -> { }, error -> { }, done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        awaitCompleted(2);
+        assertEquals("Flux(3)", completed.get(0).result);
+        assertEquals("Flux(3)", completed.get(1).result);
+    }
+
+    @Test
+    public void monoErrorAndCancel() throws InterruptedException {
+        IllegalStateException error = new IllegalStateException("失败");
+        ((Mono<?>) attach(Mono.error(error))).subscribe(value -> { }, e -> { });
+        assertEquals(1, completed.size());
+        assertSame(error, completed.get(0).throwable);
+
+        Disposable disposable = ((Mono<?>) attach(Mono.never())).subscribe();
+        disposable.dispose();
+        awaitCompleted(2);
+        assertTrue(completed.get(1).throwable instanceof CancellationException);
+    }
+
+    private Object attach(Object value) {
+        return asyncReturns.attach(value, System.currentTimeMillis(), System.nanoTime(),
+                (result, throwable, startTime, durationNanos) -> completed.add(new Completed(result, throwable, durationNanos)));
+    }
+
+    private void awaitCompleted(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (completed.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, completed.size());
+    }
+
+    private static final class Completed {
+        private final Object result;
+        private final Throwable throwable;
+        private final long durationNanos;
+
+        private Completed(Object result, Throwable throwable, long durationNanos) {
+            this.result = result;
+            this.throwable = throwable;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.logs.collect;
+
+import org.example.logs.LogConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 采集队列满了之后各个溢出策略的行为和丢弃计数
+ * <p>
+ * 唯一的采集线程阻塞在第一条数据上，之后发布的数据都留在队列中，用开始时间标记每条数据。
+ * 正在处理的数据仍然占用槽位，所以容量为N的队列此时只能再放入N-1条
+ *
+ * @author 李昆城
+ */
+public class CaptureCollectorTest {
+
+    private final List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CaptureCollector collector;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (collector != null) {
+            collector.drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    public void dropNewestRejectsWhenFull() throws Exception {
+        start("drop_newest", 4, 10);
+        fill(3);
+        assertFalse(publish(4));
+        assertEquals(1, collector.getDroppedCount());
+        assertEquals(4, collector.getPublishedCount());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), finish(4));
+    }
+
+    @Test
+    public void dropOldestKeepsQueueWhenOldestSlotIsBusy() throws Exception {
+        //队列已满时需要的槽位正在被采集线程处理，丢弃队列中的数据腾不出位置，只能丢弃新的数据而不是阻塞
+        start("drop_oldest", 4, 10);
+        fill(3);
+        assertFalse(publish(4));
+        assertEquals(1, collector.getDroppedCount());
+        assertEquals(3, collector.getQueueSize());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), finish(4));
+    }
+
+    @Test
+    public void sampleKeepsEveryNthAboveWatermark() throws Exception {
+        //容量16，水位线12，超过水位线之后每2条保留1条
+        start("sample", 16, 2);
+        fill(11);
+        assertTrue(publish(12));
+        assertTrue(publish(13));
+        assertFalse(publish(14));
+        assertTrue(publish(15));
+        assertFalse(publish(16));
+        assertEquals(2, collector.getDroppedCount());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 15L), finish(15));
+    }
+
+    @Test
+    public void blockWaitsForFreeSlot() throws Exception {
+        start("block", 2, 10);
+        fill(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> blocked = executor.submit(() -> publish(2));
+            try {
+                blocked.get(200, TimeUnit.MILLISECONDS);
+                fail("队列已满时应该阻塞调用线程");
+            } catch (TimeoutException expected) {
+                //仍在等待空闲槽位
+            }
+            release.countDown();
+            assertTrue(blocked.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, collector.getDroppedCount());
+        assertEquals(Arrays.asList(0L, 1L, 2L), finish(3));
+    }
+
+    @Test
+    public void rejectsAfterDrain() {
+        start("block", 2, 10);
+        release.countDown();
+        collector.drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+        assertFalse(publish(1));
+        assertEquals(1, collector.getDroppedCount());
+    }
+
+    @Test
+    public void drainAccountsForEveryConcurrentPublish() throws Exception {
+        //每次发布要么被处理，要么计入丢弃，关闭时正在发布的数据不会留在队列中
+        start("block", 64, 10);
+        release.countDown();
+        int producers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch started = new CountDownLatch(producers);
+        List<Future<Long>> attempts = new ArrayList<>();
+        try {
+            for (int i = 0; i < producers; i++) {
+                attempts.add(executor.submit(() -> {
+                    started.countDown();
+                    long count = 0;
+                    boolean published = true;
+                    //关闭之后再多尝试一次，确认被拒绝
+                    while (published || count < 1000) {
+                        published = publish(count++);
+                    }
+                    return count;
+                }));
+            }
+            started.await();
+            Thread.sleep(50);
+            collector.drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+            long total = 0;
+            for (Future<Long> attempt : attempts) {
+                total += attempt.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(0, collector.getQueueSize());
+            assertEquals(total, handled.size() + collector.getDroppedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void start(String policy, int capacity, int sampleRate) {
+        Map<LogConfig.LogConfigKey, String> params = new EnumMap<>(LogConfig.LogConfigKey.class);
+        params.put(LogConfig.LogConfigKey.collectorOverflowPolicy, policy);
+        params.put(LogConfig.LogConfigKey.collectorBufferSize, String.valueOf(capacity));
+        params.put(LogConfig.LogConfigKey.collectorSampleRate, String.valueOf(sampleRate));
+        params.put(LogConfig.LogConfigKey.collectorThreads, "1");
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(params);
+        collector = new CaptureCollector(logConfig);
+        collector.start(event -> {
+            handled.add(event.getStartTime());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * 发布第0条并等待采集线程阻塞在这条数据上，再发布count条
+     */
+    private void fill(int count) throws InterruptedException {
+        assertTrue(publish(0));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (collector.getActiveCount() == 0) {
+            assertTrue("采集线程没有开始处理", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        for (int i = 1; i <= count; i++) {
+            assertTrue(publish(i));
+        }
+        assertEquals(count, collector.getQueueSize());
+    }
+
+    private boolean publish(long marker) {
+        return collector.publish(null, null, null, null, marker, 0);
+    }
+
+    private List<Long> finish(int expected) throws InterruptedException {
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handled.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        synchronized (handled) {
+            return new ArrayList<>(handled);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.logs.collect;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 环形队列的申请、发布、读取和归还
+ *
+ * @author 李昆城
+ */
+public class RingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        AtomicInteger created = new AtomicInteger();
+        RingBuffer<Object> ringBuffer = new RingBuffer<>(5, () -> {
+            created.incrementAndGet();
+            return new Object();
+        });
+        assertEquals(8, ringBuffer.capacity());
+        assertEquals(8, created.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooSmallCapacity() {
+        new RingBuffer<>(1, Object::new);
+    }
+
+    @Test
+    public void claimFailsWhenFullAndSlotsAreReused() {
+        RingBuffer<Object> ringBuffer = new RingBuffer<>(2, Object::new);
+        long first = ringBuffer.tryClaim();
+        long second = ringBuffer.tryClaim();
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(-1, ringBuffer.tryClaim());
+        //未发布的槽位不能读取
+        assertEquals(-1, ringBuffer.tryTake());
+        ringBuffer.publish(first);
+        ringBuffer.publish(second);
+        assertEquals(2, ringBuffer.size());
+
+        long taken = ringBuffer.tryTake();
+        assertEquals(first, taken);
+        //读取之后、归还之前仍然不能写入
+        assertEquals(-1, ringBuffer.tryClaim());
+        ringBuffer.release(taken);
+        long third = ringBuffer.tryClaim();
+        assertEquals(2, third);
+        assertSame(ringBuffer.get(first), ringBuffer.get(third));
+        assertTrue(ringBuffer.size() <= ringBuffer.capacity());
+    }
+}
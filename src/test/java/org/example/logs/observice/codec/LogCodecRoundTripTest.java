@@ -0,0 +1,207 @@
+package org.example.logs.observice.codec;
+
+import com.alibaba.fastjson.JSON;
+import org.example.logs.LogConfig;
+import org.example.logs.observice.LogEvent;
+import org.example.logs.observice.buffer.BufferPool;
+import org.example.logs.observice.buffer.RecordOutput;
+import org.example.logs.serialize.BoundedJsonSerializer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 文本、二进制格式编码之后通过{@link LogDecoder}还原，包括代理对和不成对的代理字符
+ *
+ * @author 李昆城
+ */
+public class LogCodecRoundTripTest {
+
+    private static final String EMOJI = "😀";
+    private static final String LONE_HIGH = "\uD83D";
+    private static final String LONE_LOW = "\uDE00";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BufferPool bufferPool;
+    private TextLogCodec textLogCodec;
+    private BinaryLogCodec binaryLogCodec;
+    private String directory;
+
+    @Before
+    public void setUp() {
+        Map<LogConfig.LogConfigKey, String> params = new EnumMap<>(LogConfig.LogConfigKey.class);
+        params.put(LogConfig.LogConfigKey.serializeMaxBytes, "0");
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(params);
+        bufferPool = new BufferPool(logConfig);
+        BoundedJsonSerializer serializer = new BoundedJsonSerializer(logConfig);
+        textLogCodec = new TextLogCodec(bufferPool, serializer);
+        binaryLogCodec = new BinaryLogCodec(bufferPool, serializer);
+        directory = folder.getRoot().getAbsolutePath();
+    }
+
+    @Test
+    public void utf8LengthMatchesWrittenBytes() {
+        for (String value : new String[]{"abc", "中文", EMOJI, LONE_HIGH, LONE_LOW, "a" + LONE_HIGH + "b", LONE_LOW + LONE_HIGH,
+                LONE_HIGH + LONE_HIGH + LONE_LOW, "x" + LONE_HIGH, EMOJI + LONE_LOW + "é"}) {
+            byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+            assertEquals(value, expected.length, RecordOutput.utf8Length(value));
+            RecordOutput output = new RecordOutput(bufferPool);
+            output.writeUtf8(value);
+            assertArrayEquals(value, expected, bytes(output.finish(0)));
+        }
+    }
+
+    @Test
+    public void pendingHighSurrogateDoesNotJoinNextString() {
+        RecordOutput output = new RecordOutput(bufferPool);
+        output.writeUtf8("a" + LONE_HIGH);
+        output.writeUtf8(LONE_LOW + "b");
+        assertEquals("a??b", new String(bytes(output.finish(0)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        List<LogEvent> events = events();
+        Path file = writeBinary(events);
+        Map<Integer, String> methods = MethodDictionary.read(folder.getRoot().toPath().resolve(MethodDictionary.FILE_NAME));
+        try (InputStream in = Files.newInputStream(file)) {
+            for (LogEvent event : events) {
+                Map<String, Object> record = LogDecoder.readRecord(LogDecoder.readBody(in), methods);
+                assertEquals(event.getTargetAddress(), record.get("targetAddress"));
+                assertEquals(event.getStartTime(), record.get("startTime"));
+                assertEquals(event.getEndTime(), record.get("endTime"));
+                assertEquals(expected(event.getParam(), event.getParamValue()), record.get("param"));
+                assertEquals(expected(event.getResult(), event.getResultValue()), record.get("result"));
+                assertEquals(utf8(event.getErrorMsg()), record.get("errorMsg"));
+                assertEquals(utf8(event.getErrorLocation()), record.get("errorLocation"));
+            }
+            assertNull(LogDecoder.readBody(in));
+        }
+    }
+
+    @Test
+    public void decodedTextMatchesTextFormat() throws Exception {
+        List<LogEvent> events = events();
+        Path file = writeBinary(events);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (LogEvent event : events) {
+            text.write(bytes(textLogCodec.encode(event, directory)));
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        new LogDecoder(false, new PrintStream(decoded, true, "UTF-8")).decode(file);
+        assertEquals(new String(text.toByteArray(), StandardCharsets.UTF_8), new String(decoded.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decodedJsonKeepsFields() throws Exception {
+        List<LogEvent> events = events();
+        Path file = writeBinary(events);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        new LogDecoder(true, new PrintStream(decoded, true, "UTF-8")).decode(file);
+        String[] lines = new String(decoded.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n");
+        assertEquals(events.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            Map<String, Object> record = JSON.parseObject(lines[i]);
+            assertEquals(events.get(i).getTargetAddress(), record.get("targetAddress"));
+            assertEquals(expected(events.get(i).getResult(), events.get(i).getResultValue()), record.get("result"));
+        }
+    }
+
+    @Test
+    public void evictedDictionaryReloadsWithoutReusingIds() throws Exception {
+        Path first = folder.newFolder("first").toPath();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes(binaryLogCodec.encode(event("org.example.A.call", "{}", null, "null", null, "", ""), first.toString())));
+        out.write(bytes(binaryLogCodec.encode(event("org.example.B.call", "{}", null, "null", null, "", ""), first.toString())));
+        //写入足够多的其他目录，淘汰第一个目录的字典
+        for (int i = 0; i < BinaryLogCodec.MAX_DICTIONARIES; i++) {
+            binaryLogCodec.encode(event("org.example.Other.call", "{}", null, "null", null, "", ""),
+                    folder.getRoot().toPath().resolve("other-" + i).toString());
+        }
+        out.write(bytes(binaryLogCodec.encode(event("org.example.C.call", "{}", null, "null", null, "", ""), first.toString())));
+        out.write(bytes(binaryLogCodec.encode(event("org.example.A.call", "{}", null, "null", null, "", ""), first.toString())));
+
+        Map<Integer, String> methods = MethodDictionary.read(first.resolve(MethodDictionary.FILE_NAME));
+        assertEquals(3, methods.size());
+        try (InputStream in = new ByteArrayInputStream(out.toByteArray())) {
+            for (String method : new String[]{"org.example.A.call", "org.example.B.call", "org.example.C.call", "org.example.A.call"}) {
+                assertEquals(method, LogDecoder.readRecord(LogDecoder.readBody(in), methods).get("targetAddress"));
+            }
+        }
+    }
+
+    private List<LogEvent> events() {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append(i % 100 == 0 ? EMOJI : "中");
+        }
+        List<LogEvent> events = new ArrayList<>();
+        events.add(event("org.example.Plain.call", "{\"a\":1}", null, "\"ok\"", null, "", ""));
+        events.add(event("org.example.Emoji.call", null, Collections.singletonMap("name", "hi" + EMOJI), null,
+                Arrays.asList(EMOJI, "é"), "", ""));
+        //错误消息以高位代理字符结束，错误位置以低位代理字符开始
+        events.add(event("org.example.Lone.call", null, Collections.singletonMap("value", "a" + LONE_LOW + "b" + LONE_HIGH),
+                "x" + LONE_HIGH, null, "boom" + LONE_HIGH, LONE_LOW + "at Lone.java:1"));
+        //长度需要3个字节的varint，序列化之后需要移动内容
+        events.add(event("org.example.Large.call", null, null, null, large.toString(), "", ""));
+        events.add(event("org.example.Plain.call", "{}", null, "null", null, "", ""));
+        return events;
+    }
+
+    private static LogEvent event(String method, String param, Object paramValue, String result, Object resultValue,
+                                  String errorMsg, String errorLocation) {
+        long startTime = 1577934245678L;
+        return new LogEvent(method).targetAddress(method).param(param).paramValue(paramValue).result(result)
+                .resultValue(resultValue).errorMsg(errorMsg).errorLocation(errorLocation).startTime(startTime).endTime(startTime + 12);
+    }
+
+    private Path writeBinary(List<LogEvent> events) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(binaryLogCodec.fileName());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (LogEvent event : events) {
+            out.write(bytes(binaryLogCodec.encode(event, directory)));
+        }
+        Files.write(file, out.toByteArray());
+        return file;
+    }
+
+    private static String expected(String text, Object value) {
+        return utf8(value == null ? text : JSON.toJSONString(value));
+    }
+
+    /**
+     * 按UTF-8编码再解码，不成对的代理字符变为问号
+     */
+    private static String utf8(String value) {
+        return value == null ? null : new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
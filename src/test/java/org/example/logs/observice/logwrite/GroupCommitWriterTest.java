@@ -0,0 +1,86 @@
+package org.example.logs.observice.logwrite;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.logs.LogConfig;
+import org.example.logs.collect.CaptureCollector;
+import org.example.logs.index.LogIndexer;
+import org.example.logs.metrics.LogMetrics;
+import org.example.logs.observice.buffer.BufferPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 批量提交写入器在溢出时保持同一个文件的记录顺序
+ *
+ * @author 李昆城
+ */
+public class GroupCommitWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void syncRecordsDoNotOvertakeSpilledRecords() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Path spillPath = root.resolve(".spill");
+        Map<LogConfig.LogConfigKey, String> params = new EnumMap<>(LogConfig.LogConfigKey.class);
+        params.put(LogConfig.LogConfigKey.path, root.toString());
+        params.put(LogConfig.LogConfigKey.writerShards, "1");
+        params.put(LogConfig.LogConfigKey.writerSpill, "true");
+        params.put(LogConfig.LogConfigKey.writerSpillPath, spillPath.toString());
+        params.put(LogConfig.LogConfigKey.writerBatchSize, "16");
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(params);
+        BufferPool bufferPool = new BufferPool(logConfig);
+        String file = root.resolve("app").resolve("log.txt").toString();
+
+        //上次退出时溢出文件中留下的记录，启动之后提交的记录都要排在它们后面
+        SpillFile previous = new SpillFile(spillPath.resolve("shard-0.spill"), bufferPool);
+        for (int i = 0; i < 100; i++) {
+            previous.append(file, line(i), Durability.ASYNC, null, null);
+        }
+        previous.close();
+
+        GroupCommitWriter writer = new GroupCommitWriter(logConfig, new LogRoller(logConfig),
+                new LogMetrics(new SimpleMeterRegistry(), new CaptureCollector(logConfig)), bufferPool, new LogIndexer(logConfig));
+        writer.start();
+        List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        for (int i = 100; i < 300; i++) {
+            if (i % 3 == 0 || i == 299) {
+                CompletableFuture<Void> persisted = new CompletableFuture<>();
+                waiters.add(persisted);
+                writer.submit(file, line(i), Durability.SYNC, persisted, null);
+            } else {
+                writer.submit(file, line(i), Durability.ASYNC, null, null);
+            }
+        }
+        for (CompletableFuture<Void> waiter : waiters) {
+            waiter.get(10, TimeUnit.SECONDS);
+        }
+        writer.drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+        List<String> lines = Files.readAllLines(root.resolve("app").resolve("log.txt"), StandardCharsets.UTF_8);
+        assertEquals(300, lines.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals("record-" + i, lines.get(i));
+        }
+    }
+
+    private static ByteBuffer line(int i) {
+        return ByteBuffer.wrap(("record-" + i + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
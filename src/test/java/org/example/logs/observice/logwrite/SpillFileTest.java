@@ -0,0 +1,177 @@
+package org.example.logs.observice.logwrite;
+
+import org.example.logs.LogConfig;
+import org.example.logs.observice.buffer.BufferPool;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 溢出文件的追加、读回和重启恢复
+ *
+ * @author 李昆城
+ */
+public class SpillFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BufferPool bufferPool;
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(new EnumMap<>(LogConfig.LogConfigKey.class));
+        bufferPool = new BufferPool(logConfig);
+        path = folder.getRoot().toPath().resolve("spill").resolve("shard-0.spill");
+    }
+
+    @Test
+    public void replaysInAppendOrder() throws IOException {
+        SpillFile spillFile = new SpillFile(path, bufferPool);
+        assertFalse(spillFile.isActive());
+        CompletableFuture<Void> persisted = new CompletableFuture<>();
+        spillFile.append("a.txt", record("first"), Durability.ASYNC, null, null);
+        spillFile.append("b.txt", record("second"), Durability.SYNC, "index", persisted);
+        spillFile.append("a.txt", record("third"), Durability.INTERVAL, null, null);
+        assertTrue(spillFile.isActive());
+
+        List<SpillFile.Spilled> spilled = new ArrayList<>();
+        assertEquals(2, spillFile.replay(spilled, 2));
+        assertEquals(1, spillFile.replay(spilled, 2));
+        assertEquals(0, spillFile.replay(spilled, 2));
+        assertEquals("first", content(spilled.get(0)));
+        assertEquals("second", content(spilled.get(1)));
+        assertEquals("third", content(spilled.get(2)));
+        assertEquals("b.txt", spilled.get(1).file);
+        assertEquals(Durability.SYNC, spilled.get(1).durability);
+        assertEquals("index", spilled.get(1).index);
+        assertNull(spilled.get(0).index);
+        //等待写入完成的调用交还给写入线程
+        assertSame(persisted, spilled.get(1).persisted);
+        assertNull(spilled.get(0).persisted);
+        assertFalse(persisted.isDone());
+
+        assertTrue(spillFile.finishIfDrained());
+        assertFalse(spillFile.isActive());
+        assertEquals(0, spillFile.size());
+        //清空之后序号重新开始，通知对象仍然对应正确的记录
+        CompletableFuture<Void> next = new CompletableFuture<>();
+        spillFile.append("a.txt", record("fourth"), Durability.SYNC, null, next);
+        spilled.clear();
+        spillFile.replay(spilled, 10);
+        assertSame(next, spilled.get(0).persisted);
+        spillFile.close();
+    }
+
+    @Test
+    public void recoverDropsTornTail() throws IOException {
+        SpillFile spillFile = new SpillFile(path, bufferPool);
+        spillFile.append("a.txt", record("first"), Durability.ASYNC, null, null);
+        spillFile.append("a.txt", record("second"), Durability.ASYNC, "index", null);
+        long complete = spillFile.size();
+        spillFile.append("a.txt", record("third"), Durability.ASYNC, null, null);
+        spillFile.close();
+        //模拟进程在追加第三条记录时退出
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        SpillFile recovered = new SpillFile(path, bufferPool);
+        assertTrue(recovered.isActive());
+        assertEquals(complete, recovered.size());
+        assertEquals(complete, path.toFile().length());
+        List<SpillFile.Spilled> spilled = new ArrayList<>();
+        assertEquals(2, recovered.replay(spilled, 10));
+        assertEquals("first", content(spilled.get(0)));
+        assertEquals("second", content(spilled.get(1)));
+        assertTrue(recovered.finishIfDrained());
+        recovered.close();
+    }
+
+    @Test
+    public void closeKeepsRecordsNotReplayed() throws IOException {
+        SpillFile spillFile = new SpillFile(path, bufferPool);
+        CompletableFuture<Void> persisted = new CompletableFuture<>();
+        spillFile.append("a.txt", record("first"), Durability.ASYNC, null, null);
+        spillFile.append("a.txt", record("second"), Durability.ASYNC, null, null);
+        spillFile.append("a.txt", record("third"), Durability.SYNC, null, persisted);
+        List<SpillFile.Spilled> spilled = new ArrayList<>();
+        spillFile.replay(spilled, 1);
+        spillFile.close();
+        //关闭时还没有读回的记录不能让调用一直等待
+        assertTrue(persisted.isCompletedExceptionally());
+
+        SpillFile reopened = new SpillFile(path, bufferPool);
+        spilled.clear();
+        assertEquals(2, reopened.replay(spilled, 10));
+        assertEquals("second", content(spilled.get(0)));
+        assertEquals("third", content(spilled.get(1)));
+        reopened.close();
+    }
+
+    @Test
+    public void rejectsUnknownDurabilityCode() throws IOException {
+        SpillFile spillFile = new SpillFile(path, bufferPool);
+        spillFile.append("a.txt", record("first"), Durability.SYNC, null, null);
+        long second = spillFile.size();
+        spillFile.append("a.txt", record("second"), Durability.BATCH, null, null);
+        //文件长度4字节，之后是持久化级别
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{99}), second + 4 + "a.txt".length());
+        }
+
+        List<SpillFile.Spilled> spilled = new ArrayList<>();
+        assertEquals(1, spillFile.replay(spilled, 10));
+        assertEquals(Durability.SYNC, spilled.get(0).durability);
+        try {
+            spillFile.replay(spilled, 10);
+            fail("未知的持久化级别编号应该读取失败");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("99"));
+        }
+        spillFile.close();
+    }
+
+    @Test
+    public void discardFailsWaiters() throws IOException {
+        SpillFile spillFile = new SpillFile(path, bufferPool);
+        CompletableFuture<Void> persisted = new CompletableFuture<>();
+        spillFile.append("a.txt", record("first"), Durability.SYNC, null, persisted);
+        spillFile.discard();
+        assertTrue(persisted.isCompletedExceptionally());
+        assertFalse(spillFile.isActive());
+        assertEquals(0, spillFile.size());
+        spillFile.close();
+    }
+
+    private static ByteBuffer record(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String content(SpillFile.Spilled spilled) {
+        byte[] bytes = new byte[spilled.content.remaining()];
+        spilled.content.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
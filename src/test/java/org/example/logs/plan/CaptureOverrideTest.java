@@ -0,0 +1,157 @@
+package org.example.logs.plan;
+
+import org.example.logs.LogConfig;
+import org.example.logs.ShowParam;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 覆盖配置的解析、合并、地址校验，以及方法上的覆盖配置优先于类上的覆盖配置
+ *
+ * @author 李昆城
+ */
+public class CaptureOverrideTest {
+
+    private static final String CLASS = Sample.class.getName();
+    private static final String METHOD = CLASS + ".call";
+
+    @Test
+    public void parse() {
+        CaptureOverride override = CaptureOverride.parse("enabled=false, param=false ,sampleRate=0.1,path=/data/logs/audit");
+        assertEquals(Boolean.FALSE, override.getEnabled());
+        assertEquals(Boolean.FALSE, override.getParam());
+        assertEquals(Double.valueOf(0.1), override.getSampleRate());
+        assertEquals("/data/logs/audit", override.getPath());
+        assertNull(override.getResult());
+        assertNull(override.getTimestamp());
+        assertNull(override.getDataPersistence());
+        assertTrue(CaptureOverride.parse("").toMap().isEmpty());
+    }
+
+    @Test
+    public void parseRejectsInvalidText() {
+        for (String text : new String[]{"unknown=1", "enabled", "=false", "sampleRate=2", "sampleRate=-0.1"}) {
+            try {
+                CaptureOverride.parse(text);
+                fail(text);
+            } catch (IllegalArgumentException expected) {
+                //无效的配置
+            }
+        }
+    }
+
+    @Test
+    public void mergePrefersNonNullValuesOfOther() {
+        CaptureOverride base = CaptureOverride.parse("param=false,result=false,sampleRate=0.5");
+        CaptureOverride merged = base.merge(CaptureOverride.parse("param=true,path=/data/logs/a"));
+        assertEquals(Boolean.TRUE, merged.getParam());
+        assertEquals(Boolean.FALSE, merged.getResult());
+        assertEquals(Double.valueOf(0.5), merged.getSampleRate());
+        assertEquals("/data/logs/a", merged.getPath());
+        assertSame(base, base.merge(null));
+    }
+
+    @Test
+    public void methodOverrideTakesPrecedenceOverClassOverride() {
+        CapturePlan base = plan();
+        Map<String, CaptureOverride> overrides = new LinkedHashMap<>();
+        overrides.put(CLASS, CaptureOverride.parse("param=false,result=false,path=/data/logs/class"));
+        overrides.put(METHOD, CaptureOverride.parse("param=true,sampleRate=0.25"));
+        CapturePlan plan = base.resolve(new CaptureOverrides(overrides));
+        assertTrue(plan.isParam());
+        assertFalse(plan.isResult());
+        assertEquals("/data/logs/class", plan.getPath());
+        assertEquals(0.25, plan.getSampleRate(), 0);
+        //没有覆盖的项使用注解上的值
+        assertFalse(plan.isTimestamp());
+        assertTrue(plan.isDataPersistence());
+
+        //只有类上的覆盖配置
+        CapturePlan classOnly = base.resolve(new CaptureOverrides(Collections.singletonMap(CLASS, CaptureOverride.parse("enabled=false"))));
+        assertFalse(classOnly.isEnabled());
+        //其他类的覆盖配置不生效
+        assertSame(base, base.resolve(new CaptureOverrides(Collections.singletonMap(CLASS + "Other", CaptureOverride.parse("enabled=false")))));
+    }
+
+    @Test
+    public void resolveIsCachedPerSnapshot() {
+        CapturePlan base = plan();
+        CaptureOverrides snapshot = new CaptureOverrides(Collections.singletonMap(METHOD, CaptureOverride.parse("param=false")));
+        CapturePlan first = base.resolve(snapshot);
+        assertSame(first, base.resolve(snapshot));
+        CaptureOverrides changed = snapshot.with(METHOD, CaptureOverride.parse("param=true"));
+        assertTrue(base.resolve(changed).isParam());
+        assertSame(base, base.resolve(changed.with(METHOD, null)));
+    }
+
+    @Test
+    public void pathMustBeUnderLogPath() {
+        LogConfig logConfig = config(Collections.emptyMap());
+        CaptureOverride.parse("path=/data/logs/audit").checkPath(logConfig);
+        CaptureOverride.parse("param=false").checkPath(logConfig);
+        for (String path : new String[]{"/etc/cron.d", "/data/logs/../app", "/data/logs-other"}) {
+            try {
+                CaptureOverride.parse("path=" + path).checkPath(logConfig);
+                fail(path);
+            } catch (IllegalArgumentException expected) {
+                //不在持久化地址之下
+            }
+        }
+    }
+
+    @Test
+    public void registryRejectsPathOutsideLogPath() {
+        CaptureOverrideRegistry registry = new CaptureOverrideRegistry(config(Collections.emptyMap()));
+        registry.update(METHOD, CaptureOverride.parse("param=false"));
+        CaptureOverrides before = registry.getCurrent();
+        try {
+            registry.update(METHOD, CaptureOverride.parse("path=/tmp/elsewhere"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            //修改失败时快照不变
+        }
+        assertSame(before, registry.getCurrent());
+
+        try {
+            new CaptureOverrideRegistry(config(Collections.singletonMap(METHOD, "path=/tmp/elsewhere")));
+            fail();
+        } catch (IllegalStateException expected) {
+            //配置文件中的地址同样校验
+        }
+    }
+
+    private static CapturePlan plan() {
+        try {
+            ShowParam annotation = Sample.class.getMethod("call").getAnnotation(ShowParam.class);
+            return new CapturePlan(METHOD, annotation, new String[0], new ArgumentKind[0]);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LogConfig config(Map<String, String> capture) {
+        Map<LogConfig.LogConfigKey, String> params = new EnumMap<>(LogConfig.LogConfigKey.class);
+        params.put(LogConfig.LogConfigKey.path, "/data/logs");
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(params);
+        logConfig.setCapture(capture);
+        return logConfig;
+    }
+
+    public static class Sample {
+        @ShowParam(timestamp = false)
+        public void call() {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.logs.plan;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 时间窗口内最慢的N次调用
+ *
+ * @author 李昆城
+ */
+public class SlowestCallsTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        new SlowestCalls(0, 60);
+    }
+
+    @Test
+    public void keepsTheSlowestN() {
+        SlowestCalls slowestCalls = new SlowestCalls(3, 3600);
+        assertTrue(slowestCalls.offer(5));
+        assertTrue(slowestCalls.offer(3));
+        assertTrue(slowestCalls.offer(8));
+        //堆已满，门槛为3
+        assertFalse(slowestCalls.offer(1));
+        assertFalse(slowestCalls.offer(3));
+        assertTrue(slowestCalls.offer(4));
+        //门槛变为4
+        assertFalse(slowestCalls.offer(4));
+        assertTrue(slowestCalls.offer(10));
+        //保留5、8、10
+        assertFalse(slowestCalls.offer(5));
+        assertTrue(slowestCalls.offer(6));
+    }
+
+    @Test
+    public void matchesReferenceHeap() {
+        Random random = new Random(42);
+        int capacity = 16;
+        SlowestCalls slowestCalls = new SlowestCalls(capacity, 3600);
+        PriorityQueue<Long> reference = new PriorityQueue<>();
+        for (int i = 0; i < 10000; i++) {
+            long nanos = random.nextInt(100000);
+            boolean expected = reference.size() < capacity || nanos > reference.peek();
+            if (expected) {
+                reference.offer(nanos);
+                if (reference.size() > capacity) {
+                    reference.poll();
+                }
+            }
+            assertEquals("第" + i + "次：" + nanos, expected, slowestCalls.offer(nanos));
+        }
+    }
+
+    @Test
+    public void resetsAfterWindow() throws InterruptedException {
+        SlowestCalls slowestCalls = new SlowestCalls(1, 1);
+        assertTrue(slowestCalls.offer(100));
+        assertFalse(slowestCalls.offer(50));
+        Thread.sleep(1100);
+        assertTrue(slowestCalls.offer(50));
+        assertFalse(slowestCalls.offer(10));
+    }
+}
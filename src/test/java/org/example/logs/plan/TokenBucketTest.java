@@ -0,0 +1,87 @@
+package org.example.logs.plan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 令牌桶的容量、补充和并发获取
+ *
+ * @author 李昆城
+ */
+public class TokenBucketTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveRate() {
+        new TokenBucket(0);
+    }
+
+    @Test
+    public void burstIsCappedAtOneSecond() {
+        TokenBucket tokenBucket = new TokenBucket(10);
+        int acquired = 0;
+        while (tokenBucket.tryAcquire()) {
+            acquired++;
+            assertTrue("桶中的令牌不应该超过一秒的数量", acquired <= 11);
+        }
+        //获取的同时可能刚好生成了一个新的令牌
+        assertTrue(acquired >= 10);
+        assertFalse(tokenBucket.tryAcquire());
+    }
+
+    @Test
+    public void refillsOverTime() throws InterruptedException {
+        TokenBucket tokenBucket = new TokenBucket(10);
+        while (tokenBucket.tryAcquire()) {
+            //取完初始的令牌
+        }
+        Thread.sleep(250);
+        int acquired = 0;
+        while (tokenBucket.tryAcquire()) {
+            acquired++;
+        }
+        assertTrue("250毫秒应该生成2个左右的令牌：" + acquired, acquired >= 1 && acquired <= 4);
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsRate() throws InterruptedException {
+        int permitsPerSecond = 1000;
+        TokenBucket tokenBucket = new TokenBucket(permitsPerSecond);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 100000; j++) {
+                    if (tokenBucket.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        //初始的一秒令牌加上运行期间生成的令牌
+        assertTrue(acquired.get() + " > " + (permitsPerSecond + elapsedMillis + 1),
+                acquired.get() <= permitsPerSecond + elapsedMillis + 1);
+        assertTrue(acquired.get() >= permitsPerSecond);
+    }
+}
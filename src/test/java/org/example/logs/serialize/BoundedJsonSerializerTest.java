@@ -0,0 +1,105 @@
+package org.example.logs.serialize;
+
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import org.example.logs.LogConfig;
+import org.example.logs.observice.buffer.BufferPool;
+import org.example.logs.observice.buffer.RecordOutput;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 有长度上限的json序列化
+ *
+ * @author 李昆城
+ */
+public class BoundedJsonSerializerTest {
+
+    @Test
+    public void truncatesAtByteLimit() {
+        BoundedJsonSerializer serializer = serializer(64, 0);
+        String json = serializer.toJson(Collections.singletonMap("value", repeat('a', 1000)));
+        assertTrue(json, json.endsWith(BoundedJsonSerializer.TRUNCATED));
+        assertEquals(64, json.length() - BoundedJsonSerializer.TRUNCATED.length());
+    }
+
+    @Test
+    public void returnsFastjsonBufferAfterTruncation() throws Exception {
+        BoundedJsonSerializer serializer = serializer(64, 0);
+        //输出大于fastjson的字符缓冲区，序列化过程中和关闭时都会超过上限
+        Map<String, String> large = Collections.singletonMap("value", repeat('a', 10000));
+        //输出小于字符缓冲区，只在关闭时才超过上限
+        Map<String, String> small = Collections.singletonMap("value", repeat('b', 500));
+        serializer.toJson(large);
+        char[] buffer = threadLocalBuffer();
+        assertNotNull("截断之后fastjson没有归还线程本地的缓冲区", buffer);
+        serializer.toJson(large);
+        assertSame(buffer, threadLocalBuffer());
+        serializer.toJson(small);
+        assertSame(buffer, threadLocalBuffer());
+    }
+
+    @Test
+    public void printAndPersistLimitElementsTheSameWay() {
+        List<Integer> list = new ArrayList<>();
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+            map.put("k" + i, i);
+        }
+        Object[] values = {list, map, list.toArray(new Integer[0]), new int[]{1, 2, 3, 4, 5}, "text", null};
+        for (int maxBytes : new int[]{0, 8192, 20}) {
+            BoundedJsonSerializer serializer = serializer(maxBytes, 3);
+            for (Object value : values) {
+                String printed = serializer.toJson(value);
+                assertEquals(printed, persisted(serializer, value));
+            }
+        }
+        assertEquals("[0,1,2,\"" + BoundedJsonSerializer.TRUNCATED + "共10个\"]", serializer(0, 3).toJson(list));
+        assertEquals("{\"k0\":0,\"k1\":1,\"k2\":2,\"" + BoundedJsonSerializer.TRUNCATED + "\":10}", serializer(0, 3).toJson(map));
+    }
+
+    private static String persisted(BoundedJsonSerializer serializer, Object value) {
+        RecordOutput output = new RecordOutput(new BufferPool(new LogConfig()));
+        serializer.writeJson(value, output);
+        ByteBuffer buffer = output.finish(0);
+        return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static char[] threadLocalBuffer() throws Exception {
+        Field field = SerializeWriter.class.getDeclaredField("bufLocal");
+        field.setAccessible(true);
+        return ((ThreadLocal<char[]>) field.get(null)).get();
+    }
+
+    private static BoundedJsonSerializer serializer(int maxBytes, int maxElements) {
+        Map<LogConfig.LogConfigKey, String> params = new EnumMap<>(LogConfig.LogConfigKey.class);
+        params.put(LogConfig.LogConfigKey.serializeMaxBytes, String.valueOf(maxBytes));
+        params.put(LogConfig.LogConfigKey.serializeMaxElements, String.valueOf(maxElements));
+        LogConfig logConfig = new LogConfig();
+        logConfig.setParams(params);
+        return new BoundedJsonSerializer(logConfig);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
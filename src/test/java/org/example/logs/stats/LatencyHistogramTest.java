@@ -0,0 +1,132 @@
+package org.example.logs.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 执行时间直方图的分桶和百分位
+ *
+ * @author 李昆城
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveOwnBucket() {
+        for (int nanos = 0; nanos < 32; nanos++) {
+            assertEquals(nanos, LatencyHistogram.index(nanos));
+            assertEquals(nanos, LatencyHistogram.highestEquivalent(nanos));
+        }
+        assertEquals(32, LatencyHistogram.index(32));
+        assertEquals(32, LatencyHistogram.highestEquivalent(32));
+        //64之后每个桶包含2个值
+        assertEquals(LatencyHistogram.index(64), LatencyHistogram.index(65));
+        assertEquals(65, LatencyHistogram.highestEquivalent(LatencyHistogram.index(64)));
+    }
+
+    @Test
+    public void bucketsCoverEveryValueWithinRelativeError() {
+        Random random = new Random(7);
+        List<Long> values = new ArrayList<>();
+        for (int shift = 0; shift < 63; shift++) {
+            long base = 1L << shift;
+            values.add(base - 1);
+            values.add(base);
+            values.add(base + 1);
+            values.add(base + (long) (random.nextDouble() * base));
+        }
+        values.add(Long.MAX_VALUE);
+        for (long nanos : values) {
+            int index = LatencyHistogram.index(nanos);
+            long highest = LatencyHistogram.highestEquivalent(index);
+            assertTrue(nanos + " 超过桶的上界 " + highest, nanos <= highest);
+            if (index > 0) {
+                //上一个桶的上界小于该值，桶之间没有空隙
+                assertTrue(nanos + "", LatencyHistogram.highestEquivalent(index - 1) < nanos);
+            }
+            assertTrue(nanos + " 的误差 " + (highest - nanos), highest - nanos <= nanos / 32);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestEquivalent(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void indexIsMonotonic() {
+        int previous = -1;
+        for (long nanos = 0; nanos < 1_000_000; nanos += 7) {
+            int index = LatencyHistogram.index(nanos);
+            assertTrue(index >= previous);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1000, nanos % 10 == 0);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(10_000, histogram.getErrors());
+        assertEquals(1000, histogram.getMin());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(100_000L * 100_001 / 2 * 1000, histogram.getTotal());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(percentile / 100 * 100_000) * 1000;
+            long value = histogram.percentile(percentile);
+            assertTrue(percentile + "：" + value + " < " + exact, value >= exact);
+            assertTrue(percentile + "：" + value + " 误差超过1/32", value - exact <= exact / 32);
+        }
+        assertEquals(histogram.getMax(), histogram.percentile(100));
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001, false);
+        assertEquals(1_000_001, histogram.percentile(50));
+        assertEquals(1_000_001, histogram.percentile(99));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertTrue(histogram.buckets().isEmpty());
+    }
+
+    @Test
+    public void negativeDurationsCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5, false);
+        assertEquals(0, histogram.getMin());
+        assertEquals(Long.valueOf(1), histogram.buckets().get(0L));
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i, false);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(40_000, histogram.buckets().values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(9_999, histogram.getMax());
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.logs.tail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 广播环形缓冲区的读取和落后时的跳过
+ *
+ * @author 李昆城
+ */
+public class TailRingTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        TailRing<Integer> ring = new TailRing<>(5);
+        for (int i = 0; i < 8; i++) {
+            ring.offer(i);
+        }
+        List<Integer> values = new ArrayList<>();
+        long next = ring.read(0, values, 16);
+        assertEquals(8, next);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), values);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooSmallCapacity() {
+        new TailRing<>(1);
+    }
+
+    @Test
+    public void readerResumesFromItsCursor() {
+        TailRing<Integer> ring = new TailRing<>(8);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(i);
+        }
+        List<Integer> values = new ArrayList<>();
+        long next = ring.read(0, values, 3);
+        assertEquals(3, next);
+        assertEquals(Arrays.asList(0, 1, 2), values);
+
+        values.clear();
+        next = ring.read(next, values, 16);
+        assertEquals(5, next);
+        assertEquals(Arrays.asList(3, 4), values);
+
+        values.clear();
+        assertEquals(5, ring.read(next, values, 16));
+        assertTrue(values.isEmpty());
+    }
+
+    @Test
+    public void lappedReaderSkipsOverwrittenValuesAndReportsGap() {
+        TailRing<Integer> ring = new TailRing<>(4);
+        long cursor = ring.position();
+        for (int i = 0; i < 10; i++) {
+            ring.offer(i);
+        }
+        List<Integer> values = new ArrayList<>();
+        long next = ring.read(cursor, values, 16);
+        //容量为4，只剩最后4条，前6条已经被覆盖
+        assertEquals(Arrays.asList(6, 7, 8, 9), values);
+        assertEquals(10, next);
+        assertEquals(6, next - cursor - values.size());
+    }
+
+    @Test
+    public void lappedReaderWithSmallBatchStillReportsGapOnce() {
+        TailRing<Integer> ring = new TailRing<>(4);
+        for (int i = 0; i < 7; i++) {
+            ring.offer(i);
+        }
+        List<Integer> values = new ArrayList<>();
+        long next = ring.read(1, values, 2);
+        assertEquals(Arrays.asList(3, 4), values);
+        assertEquals(2, next - 1 - values.size());
+
+        values.clear();
+        long after = ring.read(next, values, 2);
+        assertEquals(Arrays.asList(5, 6), values);
+        assertEquals(0, after - next - values.size());
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.logs.utils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 时间格式仍然按照SimpleDateFormat的规则解释
+ *
+ * @author 李昆城
+ */
+public class DateUtilsTest {
+
+    private static final Date DATE = new Date(1577934245678L);
+
+    @Test
+    public void constantsUseCachedFormatter() {
+        for (String pattern : new String[]{DateUtils.NOW, DateUtils.NOW_H, DateUtils.DATE, DateUtils.TIME, DateUtils.NOW_SLASH,
+                DateUtils.DATE_SLASH, DateUtils.TIME_SLASH, DateUtils.NOW_STRING_CHINA}) {
+            assertTrue(pattern, TimestampFormatter.isSimpleDateFormatCompatible(pattern));
+            assertEquals(pattern, new SimpleDateFormat(pattern).format(DATE), DateUtils.dateToString(DATE, pattern));
+        }
+    }
+
+    @Test
+    public void otherPatternsKeepSimpleDateFormatSemantics() {
+        //Y、u、Z、引号在java.time中的含义不同，[ ] { } #在java.time中是保留字符
+        for (String pattern : new String[]{"YYYY-ww", "u", "yyyy-MM-dd'T'HH:mm:ss.SSSZ", "EEE, d MMM yyyy", "hh:mm a", "yyy",
+                "[yyyy-MM-dd]", "yyyy#MM", "yyyy{MM}"}) {
+            assertFalse(pattern, TimestampFormatter.isSimpleDateFormatCompatible(pattern));
+            assertEquals(pattern, new SimpleDateFormat(pattern).format(DATE), DateUtils.dateToString(DATE, pattern));
+            assertEquals(pattern, new SimpleDateFormat(pattern).format(DATE), new DateUtils().parseDateFormat(DATE, pattern));
+        }
+    }
+}